@@ -0,0 +1,109 @@
+package hse.antiplagiat.gateway;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "eureka.client.enabled=false",
+        "spring.cloud.discovery.client.simple.instances.file-storage-service[0].service-id=file-storage-service"
+})
+class ContentCacheRouteTest {
+    private static final byte[] CONTENT = "The whole content of the file.".getBytes(StandardCharsets.UTF_8);
+    private static final HttpServer STORAGE = startStorage();
+
+    @Autowired
+    private WebTestClient client;
+
+    @DynamicPropertySource
+    static void storageInstance(DynamicPropertyRegistry registry) {
+        registry.add("spring.cloud.discovery.client.simple.instances.file-storage-service[0].uri",
+                () -> "http://127.0.0.1:" + STORAGE.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopStorage() {
+        STORAGE.stop(0);
+    }
+
+    @Test
+    void rangedRequestAfterFullRequestGetsTheRange() {
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/api/files/660e8400-e29b-41d4-a716-446655440000")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(byte[].class).isEqualTo(CONTENT);
+        }
+
+        client.get().uri("/api/files/660e8400-e29b-41d4-a716-446655440000")
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectBody(byte[].class).isEqualTo(Arrays.copyOf(CONTENT, 4));
+    }
+
+    @Test
+    void fullRequestAfterRangedRequestGetsTheWholeContent() {
+        client.get().uri("/api/files/550e8400-e29b-41d4-a716-446655440000")
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectBody(byte[].class).isEqualTo(Arrays.copyOf(CONTENT, 4));
+
+        for (int i = 0; i < 2; i++) {
+            client.get().uri("/api/files/550e8400-e29b-41d4-a716-446655440000")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody(byte[].class).isEqualTo(CONTENT);
+        }
+    }
+
+    /**
+     * Answers {@code bytes=start-end} ranges with 206 and everything else with the whole content, both
+     * publicly cacheable, so only the routes keep the cache from mixing them up.
+     */
+    private static HttpServer startStorage() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/api/files/", exchange -> {
+                String range = exchange.getRequestHeaders().getFirst(HttpHeaders.RANGE);
+                byte[] body = CONTENT;
+                int status = 200;
+                if (range != null) {
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    int start = Integer.parseInt(bounds[0]);
+                    int end = Integer.parseInt(bounds[1]);
+                    body = Arrays.copyOfRange(CONTENT, start, end + 1);
+                    status = 206;
+                    exchange.getResponseHeaders().set(HttpHeaders.CONTENT_RANGE,
+                            "bytes " + start + "-" + end + "/" + CONTENT.length);
+                }
+                exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "text/plain;charset=UTF-8");
+                exchange.getResponseHeaders().set(HttpHeaders.CACHE_CONTROL, "max-age=3600, public");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
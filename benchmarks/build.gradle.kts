@@ -0,0 +1,47 @@
+plugins {
+    id("io.spring.dependency-management") version "1.1.5"
+    id("me.champeau.jmh") version "0.7.2"
+    java
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmh(project(":file-analysis-service"))
+    jmh(project(":file-storage-service"))
+    jmh("com.fasterxml.jackson.core:jackson-databind")
+    jmh("org.springframework:spring-web")
+    jmh("org.springframework.data:spring-data-commons")
+    jmh("org.springframework.data:spring-data-jpa")
+    jmh("org.postgresql:postgresql")
+    jmh("io.zonky.test:embedded-postgres:2.0.7")
+    jmh(enforcedPlatform("io.zonky.test.postgres:embedded-postgres-binaries-bom:16.2.0"))
+}
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:3.2.5")
+        mavenBom("org.springframework.cloud:spring-cloud-dependencies:2023.0.2")
+    }
+}
+
+// ./gradlew :benchmarks:jmh -Pjmh.results=<name> writes build/results/jmh/<name>.json, e.g. one file per commit.
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file(
+        providers.gradleProperty("jmh.results").map { "results/jmh/$it.json" }.orElse("results/jmh/results.json")))
+    providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
@@ -0,0 +1,75 @@
+package hse.antiplagiat.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates reproducible plain-text documents: paragraphs of sentences built from a fixed vocabulary,
+ * separated by blank lines. Russian text is two bytes per letter in UTF-8, so the same byte size
+ * holds about half as many characters as English text.
+ */
+public enum Corpus {
+    ENGLISH(new String[]{
+            "the", "of", "and", "to", "in", "is", "that", "for", "it", "as", "was", "with", "be", "by", "on",
+            "analysis", "document", "student", "research", "results", "method", "system", "network", "model",
+            "data", "structure", "algorithm", "language", "history", "development", "theory", "process",
+            "university", "experiment", "significant", "approach", "information", "knowledge", "evaluation"}),
+    RUSSIAN(new String[]{
+            "и", "в", "не", "на", "что", "с", "по", "как", "это", "для", "из", "к", "от", "о", "при",
+            "анализ", "документ", "студент", "исследование", "результаты", "метод", "система", "сеть", "модель",
+            "данные", "структура", "алгоритм", "язык", "история", "развитие", "теория", "процесс",
+            "университет", "эксперимент", "значительный", "подход", "информация", "знание", "оценка"});
+
+    private static final long SEED = 42;
+
+    private final String[] vocabulary;
+
+    Corpus(String[] vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    public String generate(int sizeBytes) {
+        return generate(sizeBytes, SEED);
+    }
+
+    /**
+     * Same as {@link #generate(int)} with another seed, for a corpus of distinct documents.
+     */
+    public String generate(int sizeBytes, long seed) {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder(sizeBytes);
+        int bytes = 0;
+        int wordsInSentence = 0;
+        int sentencesInParagraph = 0;
+
+        while (bytes < sizeBytes) {
+            String word = vocabulary[(int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * vocabulary.length / 3)];
+            if (wordsInSentence == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            text.append(word);
+            bytes += word.getBytes(StandardCharsets.UTF_8).length;
+            wordsInSentence++;
+
+            if (wordsInSentence >= 6 + random.nextInt(14)) {
+                text.append(random.nextInt(5) == 0 ? "," : ".");
+                bytes++;
+                wordsInSentence = 0;
+                sentencesInParagraph++;
+            }
+            if (wordsInSentence == 0 && sentencesInParagraph >= 3 + random.nextInt(6)) {
+                text.append("\n\n");
+                bytes += 2;
+                sentencesInParagraph = 0;
+            } else {
+                text.append(' ');
+                bytes++;
+            }
+        }
+        return text.toString();
+    }
+
+    public byte[] generateBytes(int sizeBytes) {
+        return generate(sizeBytes).getBytes(StandardCharsets.UTF_8);
+    }
+}
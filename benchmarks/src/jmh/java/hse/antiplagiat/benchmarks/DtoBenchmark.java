@@ -0,0 +1,104 @@
+package hse.antiplagiat.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import hse.antiplagiat.analysis.dto.BatchAnalysisResultDto;
+import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+import hse.antiplagiat.storage.dto.FileMetadataDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping stored analysis results to DTOs and writing the JSON responses of the single and batch
+ * analysis endpoints and of the file metadata endpoint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DtoBenchmark {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private AnalysisResultEntity result;
+    private FileMetadataDto metadata;
+
+    @Setup
+    public void setUp() {
+        result = randomResult(new Random(42));
+        metadata = FileMetadataDto.builder()
+                .id(UUID.randomUUID())
+                .name("курсовая_работа.txt")
+                .hash("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08")
+                .size(262144)
+                .encoding("deflate")
+                .storedSize(98304)
+                .build();
+    }
+
+    @Benchmark
+    public byte[] serializeResult() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(mapToDto(result));
+    }
+
+    @Benchmark
+    public byte[] serializeMetadata() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(metadata);
+    }
+
+    @Benchmark
+    public List<AnalysisResultDto> mapBatch(Batch batch) {
+        return batch.entities.stream().map(DtoBenchmark::mapToDto).toList();
+    }
+
+    @Benchmark
+    public byte[] serializeBatch(Batch batch) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(BatchAnalysisResultDto.builder()
+                .results(mapBatch(batch))
+                .errors(Map.of())
+                .build());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+        @Param({"10", "100", "1000"})
+        private int batchSize;
+
+        private List<AnalysisResultEntity> entities;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            entities = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                entities.add(randomResult(random));
+            }
+        }
+    }
+
+    private static AnalysisResultEntity randomResult(Random random) {
+        UUID fileId = new UUID(random.nextLong(), random.nextLong());
+        return AnalysisResultEntity.builder()
+                .fileId(fileId)
+                .paragraphsCount(random.nextInt(1000))
+                .wordsCount(random.nextInt(100000))
+                .symbolsCount(random.nextInt(1000000))
+                .wordCloudUrl("/api/analysis/" + fileId + "/word-cloud.svg")
+                .build();
+    }
+
+    // Same mapping as FileAnalysisService#mapToDto.
+    private static AnalysisResultDto mapToDto(AnalysisResultEntity entity) {
+        return AnalysisResultDto.builder()
+                .fileId(entity.getFileId())
+                .paragraphsCount(entity.getParagraphsCount())
+                .wordsCount(entity.getWordsCount())
+                .symbolsCount(entity.getSymbolsCount())
+                .wordCloudUrl(entity.getWordCloudUrl())
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+package hse.antiplagiat.benchmarks;
+
+import hse.antiplagiat.analysis.repository.FingerprintRepository;
+import hse.antiplagiat.analysis.similarity.Winnower;
+import hse.antiplagiat.analysis.similarity.Winnower.Fingerprint;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.data.jpa.repository.Query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the winnowing match query of {@link FingerprintRepository#findMatches} as the corpus grows.
+ * Every odd document starts with the first half of the document before it, so {@code matchingPair}
+ * joins a few hundred shared fingerprints while {@code unrelatedPair} only meets the hashes that any two
+ * documents over the same vocabulary have in common. The fingerprints are loaded into an embedded
+ * Postgres with the schema of the analysis service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FingerprintMatchBenchmark {
+    private static final int DOCUMENT_BYTES = 2048;
+
+    @Param({"1000", "10000", "50000"})
+    private int files;
+
+    private EmbeddedPostgres postgres;
+    private Connection connection;
+    private PreparedStatement query;
+    private UUID[] ids;
+
+    @Setup
+    public void setUp() throws IOException, SQLException, NoSuchMethodException {
+        postgres = EmbeddedPostgres.builder().start();
+        connection = postgres.getPostgresDatabase().getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(migration("V3__Create_fingerprints_table.sql"));
+        }
+
+        ids = new UUID[files];
+        Winnower winnower = new Winnower();
+        CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY fingerprints (file_id, start_offset, end_offset, hash) FROM STDIN");
+        StringBuilder rows = new StringBuilder();
+        String previous = null;
+        for (int i = 0; i < files; i++) {
+            ids[i] = new UUID(0, i + 1);
+            String text = Corpus.ENGLISH.generate(DOCUMENT_BYTES, i);
+            if (i % 2 == 1) {
+                text = previous.substring(0, previous.length() / 2) + text;
+            }
+            previous = text;
+
+            rows.setLength(0);
+            for (Fingerprint fingerprint : winnower.fingerprints(text)) {
+                rows.append(ids[i]).append('\t').append(fingerprint.start()).append('\t')
+                        .append(fingerprint.end()).append('\t').append(fingerprint.hash()).append('\n');
+            }
+            byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+        }
+        copy.endCopy();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE fingerprints");
+        }
+
+        String sql = FingerprintRepository.class.getMethod("findMatches", UUID.class, UUID.class)
+                .getAnnotation(Query.class).value()
+                .replace(":targetId", "?")
+                .replace(":sourceId", "?");
+        query = connection.prepareStatement(sql);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public int matchingPair(Blackhole blackhole) throws SQLException {
+        int pair = ThreadLocalRandom.current().nextInt(files / 2) * 2;
+        return run(ids[pair], ids[pair + 1], blackhole);
+    }
+
+    @Benchmark
+    public int unrelatedPair(Blackhole blackhole) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int pair = random.nextInt(files / 2) * 2;
+        int other = (pair + 2 + random.nextInt(files / 2 - 1) * 2) % files;
+        return run(ids[pair], ids[other], blackhole);
+    }
+
+    // The target ID comes first in the query text, in the join condition.
+    private int run(UUID sourceId, UUID targetId, Blackhole blackhole) throws SQLException {
+        query.setObject(1, targetId);
+        query.setObject(2, sourceId);
+        int matches = 0;
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                blackhole.consume(rows.getInt(1));
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    private static String migration(String name) throws IOException {
+        try (InputStream in = Winnower.class.getResourceAsStream("/db/migration/" + name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
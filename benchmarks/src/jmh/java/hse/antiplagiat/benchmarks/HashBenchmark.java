@@ -0,0 +1,65 @@
+package hse.antiplagiat.benchmarks;
+
+import hse.antiplagiat.storage.service.SpooledContent;
+import hse.antiplagiat.storage.util.HexUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 of uploaded content. {@code spool} is what an upload costs now: the digest is computed while
+ * the content is copied into memory or, above the threshold, into a temporary file. {@code digest} is
+ * the original hash over a byte array with {@code Integer.toHexString} formatting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HashBenchmark {
+    private static final int MEMORY_THRESHOLD = 1048576;
+
+    @Param({"ENGLISH", "RUSSIAN"})
+    private Corpus corpus;
+
+    @Param({"4096", "262144", "4194304"})
+    private int sizeBytes;
+
+    private byte[] content;
+    private Path spoolDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = corpus.generateBytes(sizeBytes);
+        spoolDirectory = Files.createTempDirectory("hash-benchmark-");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(spoolDirectory);
+    }
+
+    @Benchmark
+    public String spool() throws IOException, NoSuchAlgorithmException {
+        try (SpooledContent spooled = SpooledContent.spool(new ByteArrayInputStream(content), MEMORY_THRESHOLD, spoolDirectory)) {
+            return HexUtils.toHex(spooled.getDigest());
+        }
+    }
+
+    @Benchmark
+    public String digest() throws NoSuchAlgorithmException {
+        byte[] hashBytes = MessageDigest.getInstance("SHA-256").digest(content);
+
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hashBytes) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package hse.antiplagiat.benchmarks;
+
+import hse.antiplagiat.analysis.text.TextStatistics;
+import hse.antiplagiat.analysis.text.TextStatisticsScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paragraph, word and symbol counting: the byte scanner used by the analysis service against the
+ * original implementation that decoded the text and split it with regular expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TextStatisticsBenchmark {
+    @Param({"ENGLISH", "RUSSIAN"})
+    private Corpus corpus;
+
+    @Param({"4096", "262144", "4194304"})
+    private int sizeBytes;
+
+    private byte[] content;
+    private TextStatisticsScanner scanner;
+
+    @Setup
+    public void setUp() {
+        content = corpus.generateBytes(sizeBytes);
+        scanner = new TextStatisticsScanner(1048576);
+    }
+
+    @Benchmark
+    public TextStatistics scanner() {
+        return scanner.scan(content);
+    }
+
+    @Benchmark
+    public TextStatistics split() {
+        String text = new String(content, StandardCharsets.UTF_8);
+        return new TextStatistics(countParagraphs(text), countWords(text), text.length());
+    }
+
+    private static int countParagraphs(String content) {
+        return (int) Arrays.stream(content.split("\n"))
+                .filter(line -> !line.trim().isEmpty())
+                .count();
+    }
+
+    private static int countWords(String content) {
+        return content.trim().isEmpty() ? 0 : content.trim().split("\\s+").length;
+    }
+}
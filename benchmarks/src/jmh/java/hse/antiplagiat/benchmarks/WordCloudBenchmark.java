@@ -0,0 +1,99 @@
+package hse.antiplagiat.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import hse.antiplagiat.analysis.service.WordCloudService;
+import hse.antiplagiat.analysis.service.WordCloudService.RenderedWordCloud;
+import hse.antiplagiat.analysis.wordcloud.WordCloudLayout;
+import hse.antiplagiat.analysis.wordcloud.WordCloudRenderer;
+import hse.antiplagiat.analysis.wordcloud.WordFrequencyCounter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Word cloud generation with the local engine (counting, layout, SVG and PNG; {@code localSvgOnly} with
+ * {@code render-png: false}) against the remote engine
+ * posting the text to a stub of QuickChart on the loopback interface. The stub answers at once with an
+ * SVG of the size the local engine renders, so {@code remote} is a lower bound: it contains the request
+ * and response handling but neither the network round trip nor QuickChart's own rendering time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WordCloudBenchmark {
+    private static final UUID FILE_ID = new UUID(0, 1);
+
+    @Param({"ENGLISH", "RUSSIAN"})
+    private Corpus corpus;
+
+    @Param({"4096", "65536"})
+    private int sizeBytes;
+
+    private String text;
+    private HttpServer stub;
+    private ExecutorService stubExecutor;
+    private WordCloudService localService;
+    private WordCloudService localSvgOnlyService;
+    private WordCloudService remoteService;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = corpus.generate(sizeBytes);
+        localService = service("local", "http://localhost/unused", true);
+        localSvgOnlyService = service("local", "http://localhost/unused", false);
+        byte[] svg = localService.render(FILE_ID, text).entity().getSvg().getBytes(StandardCharsets.UTF_8);
+
+        // Without TCP_NODELAY the stub's separate header and body writes wait for a delayed ACK, about 40 ms.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stub.createContext("/wordcloud", exchange -> {
+            try (InputStream in = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+                in.readAllBytes();
+                exchange.getResponseHeaders().set("Content-Type", "image/svg+xml");
+                exchange.sendResponseHeaders(200, svg.length);
+                out.write(svg);
+            }
+        });
+        stubExecutor = Executors.newFixedThreadPool(4);
+        stub.setExecutor(stubExecutor);
+        stub.start();
+        remoteService = service("remote", "http://127.0.0.1:" + stub.getAddress().getPort() + "/wordcloud", false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public RenderedWordCloud local() {
+        return localService.render(FILE_ID, text);
+    }
+
+    @Benchmark
+    public RenderedWordCloud localSvgOnly() {
+        return localSvgOnlyService.render(FILE_ID, text);
+    }
+
+    @Benchmark
+    public RenderedWordCloud remote() {
+        return remoteService.render(FILE_ID, text);
+    }
+
+    // Rendering touches neither the repository nor the term vectors.
+    private static WordCloudService service(String engine, String remoteUrl, boolean renderPng) {
+        return new WordCloudService(RestClient.builder(), new WordFrequencyCounter(), new WordCloudLayout(),
+                new WordCloudRenderer(), null, null, engine, remoteUrl, renderPng);
+    }
+}
@@ -21,6 +21,12 @@ subprojects {
         testImplementation("org.springframework.boot:spring-boot-starter-test")
         testImplementation(platform("org.junit:junit-bom:5.10.0"))
         testImplementation("org.junit.jupiter:junit-jupiter")
+        testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    }
+
+    // Sources contain Cyrillic literals; don't depend on the platform default charset.
+    tasks.withType<JavaCompile> {
+        options.encoding = "UTF-8"
     }
 
     tasks.withType<Test> {
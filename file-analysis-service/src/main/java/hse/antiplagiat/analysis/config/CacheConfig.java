@@ -0,0 +1,56 @@
+package hse.antiplagiat.analysis.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class CacheConfig {
+    /**
+     * A result only changes once: {@link hse.antiplagiat.analysis.service.WordCloudBackfillService} fills in
+     * the {@code wordCloudUrl} of results stored without a word cloud. The backfill invalidates the entry on
+     * its own instance only, so results without a word cloud expire after {@code pending-expire-after-write-ms}
+     * and other instances pick up the word cloud soon after. Complete results only leave the cache on eviction,
+     * deletion or after {@code expire-after-write-ms}, which bounds how long other instances can keep serving a
+     * result deleted on this one.
+     */
+    @Bean
+    public Cache<UUID, AnalysisResultDto> analysisResultCache(
+            MeterRegistry meterRegistry,
+            @Value("${analysis.cache.max-size:100000}") long maxSize,
+            @Value("${analysis.cache.expire-after-write-ms:3600000}") long expireAfterWriteMs,
+            @Value("${analysis.cache.pending-expire-after-write-ms:30000}") long pendingExpireAfterWriteMs) {
+        long complete = TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMs);
+        long pending = TimeUnit.MILLISECONDS.toNanos(Math.min(pendingExpireAfterWriteMs, expireAfterWriteMs));
+        Cache<UUID, AnalysisResultDto> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<UUID, AnalysisResultDto>() {
+                    @Override
+                    public long expireAfterCreate(UUID fileId, AnalysisResultDto result, long currentTime) {
+                        return result.getWordCloudUrl() == null ? pending : complete;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID fileId, AnalysisResultDto result, long currentTime, long currentDuration) {
+                        return expireAfterCreate(fileId, result, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID fileId, AnalysisResultDto result, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        return CaffeineCacheMetrics.monitor(meterRegistry, cache, "analysis.results");
+    }
+}
@@ -0,0 +1,200 @@
+package hse.antiplagiat.analysis.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds the {@link RestClient.Builder}s for the downstream services. Every downstream gets its own JDK
+ * {@link HttpClient}, which keeps a pool of persistent connections and negotiates HTTP/2 where the server
+ * supports it, with connect and read timeouts, a bulkhead bounding the calls in flight and a circuit
+ * breaker that fails calls fast while the downstream keeps failing or timing out.
+ * <p>
+ * The JDK client does not handle content codings: callers that want compressed responses ask for them and
+ * decode them themselves, as {@code FileStorageClient} does for file content.
+ * <p>
+ * With {@code spring.threads.virtual.enabled} the clients run their work on virtual threads, like Tomcat
+ * and the task executors do in that mode.
+ */
+@Component
+public class OutboundClientFactory {
+    private final ObservationRegistry observationRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ExecutorService executor;
+
+    public OutboundClientFactory(
+            ObservationRegistry observationRegistry,
+            MeterRegistry meterRegistry,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${analysis.http-client.circuit-breaker.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${analysis.http-client.circuit-breaker.slow-call-duration-ms:10000}") long slowCallDurationMs,
+            @Value("${analysis.http-client.circuit-breaker.sliding-window-size:20}") int slidingWindowSize,
+            @Value("${analysis.http-client.circuit-breaker.minimum-number-of-calls:10}") int minimumNumberOfCalls,
+            @Value("${analysis.http-client.circuit-breaker.wait-in-open-state-ms:30000}") long waitInOpenStateMs) {
+        this.observationRegistry = observationRegistry;
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallDurationMs))
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumNumberOfCalls)
+                .waitDurationInOpenState(Duration.ofMillis(waitInOpenStateMs))
+                .build());
+        this.bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        this.executor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : null;
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    public RestClient.Builder builder(String name, Downstream downstream) {
+        HttpClient.Builder httpClient = HttpClient.newBuilder()
+                .version(downstream.version())
+                .connectTimeout(downstream.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (executor != null) {
+            httpClient.executor(executor);
+        }
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient.build());
+        requestFactory.setReadTimeout(downstream.readTimeout());
+
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(name, BulkheadConfig.custom()
+                .maxConcurrentCalls(downstream.maxConcurrentCalls())
+                .maxWaitDuration(downstream.maxWait())
+                .build());
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(name);
+
+        return RestClient.builder()
+                .requestFactory(requestFactory)
+                .requestInterceptor(new ResilienceInterceptor(bulkhead, circuitBreaker))
+                .observationRegistry(observationRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Client settings of one downstream service.
+     */
+    public record Downstream(
+            Duration connectTimeout,
+            Duration readTimeout,
+            int maxConcurrentCalls,
+            Duration maxWait,
+            HttpClient.Version version) {
+    }
+
+    /**
+     * Takes a bulkhead permit for the whole exchange, released when the response is closed, so streamed
+     * bodies count as in flight until they are read. Connection errors, timeouts and 5xx responses are
+     * recorded as failures of the circuit breaker.
+     */
+    private record ResilienceInterceptor(Bulkhead bulkhead, CircuitBreaker circuitBreaker)
+            implements ClientHttpRequestInterceptor {
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+                throws IOException {
+            circuitBreaker.acquirePermission();
+            try {
+                bulkhead.acquirePermission();
+            } catch (RuntimeException e) {
+                circuitBreaker.releasePermission();
+                throw e;
+            }
+
+            long start = circuitBreaker.getCurrentTimestamp();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                long duration = circuitBreaker.getCurrentTimestamp() - start;
+                HttpStatusCode status = response.getStatusCode();
+                if (status.is5xxServerError()) {
+                    circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(),
+                            new HttpServerErrorException(status));
+                } else {
+                    circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+                }
+                return new ReleasingResponse(response, bulkhead);
+            } catch (IOException | RuntimeException e) {
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start, circuitBreaker.getTimestampUnit(), e);
+                bulkhead.onComplete();
+                throw e;
+            }
+        }
+    }
+
+    private static final class ReleasingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingResponse(ClientHttpResponse response, Bulkhead bulkhead) {
+            this.response = response;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.onComplete();
+                }
+            }
+        }
+    }
+}
@@ -1,20 +1,44 @@
 package hse.antiplagiat.analysis.config;
 
+import hse.antiplagiat.analysis.config.OutboundClientFactory.Downstream;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestClient;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Both builders report {@code http.client.requests} metrics, tagged with the URI template, through the
+ * observation registry. The load-balanced one calls file-storage-service, the other one the remote word
+ * cloud engine; each has its own timeouts, bulkhead and circuit breaker, see {@link OutboundClientFactory}.
+ */
 @Configuration
 public class RestClientConfig {
     @Bean
     @LoadBalanced
-    public RestClient.Builder loadBalancedRestClientBuilder() {
-        return RestClient.builder();
+    public RestClient.Builder loadBalancedRestClientBuilder(
+            OutboundClientFactory clientFactory,
+            @Value("${analysis.http-client.storage.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${analysis.http-client.storage.read-timeout-ms:30000}") long readTimeoutMs,
+            @Value("${analysis.http-client.storage.max-concurrent-calls:64}") int maxConcurrentCalls,
+            @Value("${analysis.http-client.storage.max-wait-ms:1000}") long maxWaitMs,
+            @Value("${analysis.http-client.storage.http-version:HTTP_1_1}") HttpClient.Version version) {
+        return clientFactory.builder("file-storage-service", new Downstream(Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), maxConcurrentCalls, Duration.ofMillis(maxWaitMs), version));
     }
 
     @Bean
-    public RestClient.Builder nonLoadBalancedRestClientBuilder() {
-        return RestClient.builder();
+    public RestClient.Builder nonLoadBalancedRestClientBuilder(
+            OutboundClientFactory clientFactory,
+            @Value("${analysis.http-client.word-cloud.connect-timeout-ms:2000}") long connectTimeoutMs,
+            @Value("${analysis.http-client.word-cloud.read-timeout-ms:10000}") long readTimeoutMs,
+            @Value("${analysis.http-client.word-cloud.max-concurrent-calls:16}") int maxConcurrentCalls,
+            @Value("${analysis.http-client.word-cloud.max-wait-ms:500}") long maxWaitMs,
+            @Value("${analysis.http-client.word-cloud.http-version:HTTP_2}") HttpClient.Version version) {
+        return clientFactory.builder("word-cloud", new Downstream(Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), maxConcurrentCalls, Duration.ofMillis(maxWaitMs), version));
     }
-}
\ No newline at end of file
+}
@@ -1,28 +1,82 @@
 package hse.antiplagiat.analysis.controller;
 
+import hse.antiplagiat.analysis.dto.AnalysisJobDto;
+import hse.antiplagiat.analysis.dto.AnalysisPageDto;
 import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import hse.antiplagiat.analysis.dto.AnalysisSummaryDto;
+import hse.antiplagiat.analysis.dto.BatchAnalysisResultDto;
+import hse.antiplagiat.analysis.dto.CohortReportDto;
+import hse.antiplagiat.analysis.dto.FileEventDto;
+import hse.antiplagiat.analysis.dto.MatchReportDto;
+import hse.antiplagiat.analysis.dto.SearchHitDto;
+import hse.antiplagiat.analysis.dto.SimilarFileDto;
+import hse.antiplagiat.analysis.model.ListCursor;
+import hse.antiplagiat.analysis.service.AnalysisJobService;
+import hse.antiplagiat.analysis.service.CohortService;
 import hse.antiplagiat.analysis.service.FileAnalysisService;
+import hse.antiplagiat.analysis.service.FileEventService;
+import hse.antiplagiat.analysis.service.FingerprintService;
+import hse.antiplagiat.analysis.service.SearchService;
+import hse.antiplagiat.analysis.service.SimilarityService;
+import hse.antiplagiat.analysis.service.WordCloudService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/analysis")
 @Tag(name = "File Analysis API", description = "API для анализа текстовых файлов")
 public class AnalysisController {
     private final FileAnalysisService analysisService;
+    private final SimilarityService similarityService;
+    private final FingerprintService fingerprintService;
+    private final WordCloudService wordCloudService;
+    private final AnalysisJobService analysisJobService;
+    private final SearchService searchService;
+    private final CohortService cohortService;
+    private final FileEventService fileEventService;
+    private final CacheControl cacheControl;
 
-    public AnalysisController(FileAnalysisService analysisService) {
+    public AnalysisController(
+            FileAnalysisService analysisService,
+            SimilarityService similarityService,
+            FingerprintService fingerprintService,
+            WordCloudService wordCloudService,
+            AnalysisJobService analysisJobService,
+            SearchService searchService,
+            CohortService cohortService,
+            FileEventService fileEventService,
+            @Value("${analysis.http.cache-max-age-seconds:86400}") long cacheMaxAgeSeconds) {
         this.analysisService = analysisService;
+        this.similarityService = similarityService;
+        this.fingerprintService = fingerprintService;
+        this.wordCloudService = wordCloudService;
+        this.analysisJobService = analysisJobService;
+        this.searchService = searchService;
+        this.cohortService = cohortService;
+        this.fileEventService = fileEventService;
+        this.cacheControl = CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     @Operation(
@@ -45,6 +99,10 @@ public class AnalysisController {
                                     schema = @Schema(implementation = AnalysisResultDto.class)
                             )
                     ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Результат не изменился (совпал If-None-Match)"
+                    ),
                     @ApiResponse(
                             responseCode = "400",
                             description = "Неверный запрос (например, файл пуст или не найден при попытке анализа)",
@@ -63,7 +121,7 @@ public class AnalysisController {
                     ),
                     @ApiResponse(
                             responseCode = "500",
-                            description = "Внутренняя ошибка сервера при анализе файла (например, проблемы с File Storage Service или QuickChart.io)",
+                            description = "Внутренняя ошибка сервера при анализе файла (например, проблемы с File Storage Service или движком облака слов)",
                             content = @Content(
                                     mediaType = MediaType.APPLICATION_JSON_VALUE,
                                     schema = @Schema(implementation = Map.class)
@@ -73,7 +131,489 @@ public class AnalysisController {
     )
     @GetMapping("/{fileId}")
     public ResponseEntity<AnalysisResultDto> analyzeFile(@PathVariable UUID fileId) {
-        return ResponseEntity.ok(analysisService.analyzeFile(fileId));
+        AnalysisResultDto result = analysisService.analyzeFile(fileId);
+        // a result without word cloud changes once the word cloud is backfilled
+        return ResponseEntity.ok()
+                .eTag(contentETag(String.join("\n", String.valueOf(result.getFileId()),
+                        String.valueOf(result.getParagraphsCount()), String.valueOf(result.getWordsCount()),
+                        String.valueOf(result.getSymbolsCount()), String.valueOf(result.getWordCloudUrl()))
+                        .getBytes(StandardCharsets.UTF_8)))
+                .cacheControl(result.getWordCloudUrl() != null ? cacheControl : CacheControl.noStore())
+                .body(result);
+    }
+
+    @Operation(
+            summary = "Анализировать несколько файлов",
+            description = "Выполняет анализ списка файлов за один запрос. Для уже проанализированных файлов " +
+                    "возвращаются существующие результаты, содержимое остальных загружается из File Storage Service " +
+                    "одним запросом и анализируется параллельно. Файлы, которые не удалось проанализировать, " +
+                    "перечислены в поле errors с причиной ошибки.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Список уникальных ID файлов",
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(type = "string", format = "uuid")))
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Результаты анализа в порядке запроса и ошибки по отдельным файлам",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = BatchAnalysisResultDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "500",
+                            description = "Пустой или слишком большой список файлов, либо ошибка File Storage Service",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping("/batch")
+    public ResponseEntity<BatchAnalysisResultDto> analyzeBatch(@RequestBody List<UUID> fileIds) {
+        return ResponseEntity.ok(analysisService.analyzeBatch(fileIds));
+    }
+
+    @Operation(
+            summary = "Попарное сравнение группы файлов",
+            description = "Сравнивает каждый файл группы (например, все работы по одному заданию) с каждым другим " +
+                    "по косинусной близости TF-IDF векторов, построенных по словам файлов группы. Содержимое файлов " +
+                    "загружается один раз. Возвращает до limit самых похожих пар с близостью не меньше threshold, " +
+                    "начиная с самой похожей. Отсутствующие в хранилище файлы перечисляются в missingFileIds.",
+            parameters = {
+                    @Parameter(
+                            name = "threshold",
+                            description = "Минимальная близость пары, от 0 до 1",
+                            schema = @Schema(type = "number", defaultValue = "0.5")),
+                    @Parameter(
+                            name = "limit",
+                            description = "Максимальное число пар в ответе",
+                            schema = @Schema(type = "integer", defaultValue = "100"))
+            },
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Список UUID файлов группы",
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(type = "string", format = "uuid")))
+            ),
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Самые похожие пары файлов",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = CohortReportDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "500",
+                            description = "Меньше двух или слишком много файлов, неверные параметры или ошибка получения файлов",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping("/cohort")
+    public ResponseEntity<CohortReportDto> compareCohort(
+            @RequestBody List<UUID> fileIds,
+            @RequestParam(defaultValue = "0.5") double threshold,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(cohortService.compare(fileIds, threshold, limit));
+    }
+
+    @Operation(
+            summary = "Поставить анализ файла в очередь",
+            description = "Создает задачу анализа и сразу возвращает ее ID, не дожидаясь завершения анализа. " +
+                    "Если для файла уже есть задача в очереди или в работе, возвращается она. " +
+                    "Статус и результат задачи доступны по адресу из заголовка Location.",
+            parameters = {
+                    @Parameter(
+                            name = "fileId",
+                            description = "Уникальный ID файла для анализа",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Задача принята",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AnalysisJobDto.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping("/{fileId}/jobs")
+    public ResponseEntity<AnalysisJobDto> submitAnalysisJob(@PathVariable UUID fileId) {
+        AnalysisJobDto job = analysisJobService.submit(fileId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/analysis/jobs/" + job.getJobId()))
+                .body(job);
+    }
+
+    @Operation(
+            summary = "Получить статус задачи анализа",
+            description = "Возвращает состояние задачи анализа (QUEUED, RUNNING, SUCCEEDED, FAILED). " +
+                    "Для успешно завершенной задачи в поле result содержатся результаты анализа, " +
+                    "для неудачной в поле error содержится причина ошибки.",
+            parameters = {
+                    @Parameter(
+                            name = "jobId",
+                            description = "ID задачи анализа",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Состояние задачи",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AnalysisJobDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Задача с указанным ID не найдена",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<AnalysisJobDto> getAnalysisJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(analysisJobService.getJob(jobId));
+    }
+
+    @Operation(
+            summary = "Принять события об изменении файлов",
+            description = "Служебный метод для file-storage-service. Для сохраненных файлов ставит анализ в очередь " +
+                    "заранее, для удаленных удаляет результаты анализа. Повторные и устаревшие события игнорируются. " +
+                    "Если очередь анализа переполнена, события не принимаются и должны быть отправлены позже.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "204",
+                            description = "События приняты",
+                            content = @Content(schema = @Schema(hidden = true))
+                    ),
+                    @ApiResponse(
+                            responseCode = "503",
+                            description = "Очередь анализа переполнена",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @PostMapping("/events")
+    public ResponseEntity<Void> acceptFileEvents(@RequestBody List<FileEventDto> events) {
+        fileEventService.apply(events);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(
+            summary = "Список результатов анализа",
+            description = "Возвращает результаты анализа без облаков слов в порядке их создания, не больше limit за раз. " +
+                    "Чтобы получить следующую страницу, передайте nextCursor из ответа в параметре cursor; " +
+                    "на последней странице nextCursor отсутствует.",
+            parameters = {
+                    @Parameter(
+                            name = "cursor",
+                            description = "Курсор из nextCursor предыдущей страницы",
+                            schema = @Schema(type = "string")),
+                    @Parameter(
+                            name = "limit",
+                            description = "Максимальное количество результатов на странице",
+                            schema = @Schema(type = "integer", defaultValue = "100"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Страница списка результатов",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = AnalysisPageDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Неверный курсор или limit",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AnalysisPageDto> listAnalyses(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(analysisService.listAnalyses(cursor, limit));
+    }
+
+    @Operation(
+            summary = "Выгрузка результатов анализа",
+            description = "Потоково передает все результаты анализа без облаков слов (после cursor, если он указан) " +
+                    "в порядке их создания, по одному JSON-объекту в строке. Выбирается заголовком " +
+                    "Accept: application/x-ndjson.",
+            parameters = {
+                    @Parameter(
+                            name = "cursor",
+                            description = "Курсор, после которого начинается выгрузка",
+                            schema = @Schema(type = "string"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Результаты анализа, по одному JSON-объекту в строке",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = AnalysisSummaryDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Неверный курсор",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAnalyses(@RequestParam(required = false) String cursor) {
+        ListCursor after = analysisService.parseCursor(cursor);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .cacheControl(CacheControl.noStore())
+                .body(out -> analysisService.exportAnalyses(after, out));
+    }
+
+    @Operation(
+            summary = "Полнотекстовый поиск по проанализированным файлам",
+            description = "Возвращает до limit файлов, содержащих все слова запроса. Части запроса в двойных " +
+                    "кавычках ищутся как фразы: слова должны идти подряд. Регистр и знаки препинания не учитываются. " +
+                    "Файлы упорядочены по убыванию числа совпадений.",
+            parameters = {
+                    @Parameter(
+                            name = "q",
+                            description = "Поисковый запрос, например: анализ \"облако слов\"",
+                            required = true,
+                            schema = @Schema(type = "string")),
+                    @Parameter(
+                            name = "limit",
+                            description = "Максимальное количество файлов",
+                            schema = @Schema(type = "integer", defaultValue = "20"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Найденные файлы с количеством совпадений",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = SearchHitDto.class))
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "500",
+                            description = "Запрос не содержит слов",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchHitDto>> search(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(searchService.search(query, Math.max(1, limit)));
+    }
+
+    @Operation(
+            summary = "Найти похожие файлы",
+            description = "Возвращает до limit ранее проанализированных файлов, похожих на указанный, " +
+                    "с оценкой коэффициента Жаккара по MinHash-сигнатурам. Поиск выполняется по LSH-индексу " +
+                    "без перебора всего корпуса.",
+            parameters = {
+                    @Parameter(
+                            name = "fileId",
+                            description = "Уникальный ID проанализированного файла",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid")),
+                    @Parameter(
+                            name = "limit",
+                            description = "Максимальное количество кандидатов",
+                            schema = @Schema(type = "integer", defaultValue = "10"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Список похожих файлов, отсортированный по убыванию схожести",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    array = @ArraySchema(schema = @Schema(implementation = SimilarFileDto.class))
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Файл еще не был проанализирован",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/{fileId}/similar")
+    public ResponseEntity<List<SimilarFileDto>> findSimilar(
+            @PathVariable UUID fileId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(similarityService.findSimilar(fileId, Math.max(1, limit)));
+    }
+
+    @Operation(
+            summary = "Сравнить два файла по отпечаткам",
+            description = "Возвращает совпадающие фрагменты двух проанализированных файлов. Фрагменты " +
+                    "восстанавливаются по winnowing-отпечаткам из индекса, содержимое файлов не загружается. " +
+                    "Смещения указаны в символах исходного текста, конец фрагмента не включается.",
+            parameters = {
+                    @Parameter(
+                            name = "fileId",
+                            description = "ID исходного файла",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid")),
+                    @Parameter(
+                            name = "otherFileId",
+                            description = "ID файла, с которым выполняется сравнение",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Отчет о совпадающих фрагментах",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = MatchReportDto.class)
+                            )
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Один из файлов еще не был проанализирован",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/{fileId}/matches/{otherFileId}")
+    public ResponseEntity<MatchReportDto> compareFiles(@PathVariable UUID fileId, @PathVariable UUID otherFileId) {
+        return ResponseEntity.ok(fingerprintService.compare(fileId, otherFileId));
+    }
+
+    @Operation(
+            summary = "Получить облако слов (SVG)",
+            description = "Возвращает облако слов, построенное при анализе файла, в формате SVG.",
+            parameters = {
+                    @Parameter(
+                            name = "fileId",
+                            description = "Уникальный ID проанализированного файла",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "SVG-изображение облака слов",
+                            content = @Content(mediaType = "image/svg+xml", schema = @Schema(type = "string"))
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Облако слов не изменился (совпал If-None-Match)"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Облако слов для данного файла не найдено",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/{fileId}/word-cloud.svg")
+    public ResponseEntity<String> getWordCloudSvg(@PathVariable UUID fileId, WebRequest request) {
+        String svg = wordCloudService.getSvg(fileId);
+        if (request.checkNotModified(contentETag(svg.getBytes(StandardCharsets.UTF_8)))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.valueOf("image/svg+xml"))
+                .cacheControl(cacheControl)
+                .body(svg);
+    }
+
+    @Operation(
+            summary = "Получить облако слов (PNG)",
+            description = "Возвращает облако слов, построенное при анализе файла, в формате PNG.",
+            parameters = {
+                    @Parameter(
+                            name = "fileId",
+                            description = "Уникальный ID проанализированного файла",
+                            required = true,
+                            schema = @Schema(type = "string", format = "uuid"))
+            },
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "PNG-изображение облака слов",
+                            content = @Content(mediaType = MediaType.IMAGE_PNG_VALUE, schema = @Schema(type = "string", format = "binary"))
+                    ),
+                    @ApiResponse(
+                            responseCode = "304",
+                            description = "Облако слов не изменился (совпал If-None-Match)"
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Облако слов для данного файла не найдено",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_JSON_VALUE,
+                                    schema = @Schema(implementation = Map.class)
+                            )
+                    )
+            }
+    )
+    @GetMapping("/{fileId}/word-cloud.png")
+    public ResponseEntity<byte[]> getWordCloudPng(@PathVariable UUID fileId, WebRequest request) {
+        byte[] png = wordCloudService.getPng(fileId);
+        if (request.checkNotModified(contentETag(png))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .cacheControl(cacheControl)
+                .body(png);
     }
 
     @Operation(
@@ -136,4 +676,16 @@ public class AnalysisController {
         analysisService.deleteAnalysis(fileId);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Strong ETag derived from the SHA-256 of the representation, so it changes with the content, e.g. when a
+     * result is deleted and analyzed again or its word cloud is backfilled.
+     */
+    private static String contentETag(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
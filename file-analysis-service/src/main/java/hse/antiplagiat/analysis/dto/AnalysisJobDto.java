@@ -0,0 +1,22 @@
+package hse.antiplagiat.analysis.dto;
+
+import hse.antiplagiat.analysis.model.AnalysisJobStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+public class AnalysisJobDto {
+    private UUID jobId;
+    private UUID fileId;
+    private AnalysisJobStatus status;
+    private int attempts;
+    private String error;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private AnalysisResultDto result;
+}
@@ -0,0 +1,13 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AnalysisPageDto {
+    private List<AnalysisSummaryDto> results;
+    private String nextCursor;
+}
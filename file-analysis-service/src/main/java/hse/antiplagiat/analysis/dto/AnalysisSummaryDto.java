@@ -0,0 +1,18 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@Builder
+public class AnalysisSummaryDto {
+    private UUID fileId;
+    private int paragraphsCount;
+    private int wordsCount;
+    private int symbolsCount;
+    private boolean hasWordCloud;
+    private Instant createdAt;
+}
@@ -0,0 +1,15 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@Builder
+public class BatchAnalysisResultDto {
+    private List<AnalysisResultDto> results;
+    private Map<UUID, String> errors;
+}
@@ -0,0 +1,14 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Builder
+public class CohortPairDto {
+    private UUID fileId;
+    private UUID otherFileId;
+    private double similarity;
+}
@@ -0,0 +1,16 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+public class CohortReportDto {
+    private int fileCount;
+    private long comparedPairs;
+    private List<CohortPairDto> pairs;
+    private List<UUID> missingFileIds;
+}
@@ -0,0 +1,19 @@
+package hse.antiplagiat.analysis.dto;
+
+import hse.antiplagiat.analysis.model.FileEventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileEventDto {
+    private long eventId;
+    private UUID fileId;
+    private FileEventType type;
+}
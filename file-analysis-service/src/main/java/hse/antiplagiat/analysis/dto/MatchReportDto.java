@@ -0,0 +1,17 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+public class MatchReportDto {
+    private UUID sourceFileId;
+    private UUID targetFileId;
+    private int matchedFingerprints;
+    private double sourceCoverage;
+    private List<MatchSpanDto> spans;
+}
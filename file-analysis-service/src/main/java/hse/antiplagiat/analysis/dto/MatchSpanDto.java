@@ -0,0 +1,13 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class MatchSpanDto {
+    private int sourceStart;
+    private int sourceEnd;
+    private int targetStart;
+    private int targetEnd;
+}
@@ -0,0 +1,13 @@
+package hse.antiplagiat.analysis.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Builder
+public class SimilarFileDto {
+    private UUID fileId;
+    private double similarity;
+}
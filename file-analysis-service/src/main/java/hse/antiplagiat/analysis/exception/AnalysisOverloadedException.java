@@ -0,0 +1,7 @@
+package hse.antiplagiat.analysis.exception;
+
+public class AnalysisOverloadedException extends RuntimeException {
+    public AnalysisOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package hse.antiplagiat.analysis.exception;
+
+public class InvalidRequestException extends FileAnalysisException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
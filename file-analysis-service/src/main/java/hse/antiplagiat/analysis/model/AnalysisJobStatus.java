@@ -0,0 +1,8 @@
+package hse.antiplagiat.analysis.model;
+
+public enum AnalysisJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED
+}
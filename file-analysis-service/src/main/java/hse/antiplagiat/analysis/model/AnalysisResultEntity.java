@@ -1,14 +1,15 @@
 package hse.antiplagiat.analysis.model;
 
-import jakarta.persistence.Column;
-import jakarta.persistence.Entity;
-import jakarta.persistence.Id;
-import jakarta.persistence.Table;
+import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -17,7 +18,7 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class AnalysisResultEntity {
+public class AnalysisResultEntity implements Persistable<UUID> {
     @Id
     @Column(name = "file_id", nullable = false)
     private UUID fileId;
@@ -33,4 +34,30 @@ public class AnalysisResultEntity {
 
     @Column(name = "word_cloud_url")
     private String wordCloudUrl;
-}
\ No newline at end of file
+
+    @Column(name = "created_at", nullable = false, insertable = false, updatable = false)
+    private Instant createdAt;
+
+    @Transient
+    @Builder.Default
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean newEntity = true;
+
+    @Override
+    public UUID getId() {
+        return fileId;
+    }
+
+    // Rows are created with an assigned ID, so without this flag saveAll would select each one before inserting it.
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
+}
@@ -0,0 +1,21 @@
+package hse.antiplagiat.analysis.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * An analysis result without the word cloud, which the remote engine stores inline as SVG.
+ */
+public interface AnalysisResultSummary {
+    UUID getFileId();
+
+    int getParagraphsCount();
+
+    int getWordsCount();
+
+    int getSymbolsCount();
+
+    boolean getHasWordCloud();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,27 @@
+package hse.antiplagiat.analysis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "file_event_offsets", schema = "public")
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileEventOffsetEntity {
+    @Id
+    @Column(name = "file_id", nullable = false)
+    private UUID fileId;
+
+    @Column(name = "last_event_id", nullable = false)
+    private long lastEventId;
+
+    @Column(name = "deleted", nullable = false)
+    private boolean deleted;
+}
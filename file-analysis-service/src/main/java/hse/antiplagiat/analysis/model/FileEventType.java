@@ -0,0 +1,6 @@
+package hse.antiplagiat.analysis.model;
+
+public enum FileEventType {
+    STORED,
+    DELETED
+}
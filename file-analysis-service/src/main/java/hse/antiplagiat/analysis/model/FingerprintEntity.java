@@ -0,0 +1,44 @@
+package hse.antiplagiat.analysis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "fingerprints", schema = "public")
+@IdClass(FingerprintId.class)
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FingerprintEntity implements Persistable<FingerprintId> {
+    @Id
+    @Column(name = "file_id", nullable = false)
+    private UUID fileId;
+
+    @Id
+    @Column(name = "start_offset", nullable = false)
+    private int startOffset;
+
+    @Column(name = "end_offset", nullable = false)
+    private int endOffset;
+
+    @Column(name = "hash", nullable = false)
+    private long hash;
+
+    @Override
+    public FingerprintId getId() {
+        return new FingerprintId(fileId, startOffset);
+    }
+
+    // Fingerprints are only ever inserted, so saveAll can persist them without a select per row.
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package hse.antiplagiat.analysis.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FingerprintId implements Serializable {
+    private UUID fileId;
+    private int startOffset;
+}
@@ -0,0 +1,30 @@
+package hse.antiplagiat.analysis.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in a listing ordered by creation time and ID: the key of the last row returned. Clients get it
+ * as an opaque URL-safe string and pass it back to continue after that row.
+ */
+public record ListCursor(Instant createdAt, UUID id) {
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns null if the string is not a cursor.
+     */
+    public static ListCursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+            return parts.length == 2 ? new ListCursor(Instant.parse(parts[0]), UUID.fromString(parts[1])) : null;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return null;
+        }
+    }
+}
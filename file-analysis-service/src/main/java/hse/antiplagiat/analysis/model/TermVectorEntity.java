@@ -0,0 +1,49 @@
+package hse.antiplagiat.analysis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "term_vectors", schema = "public")
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TermVectorEntity implements Persistable<UUID> {
+    @Id
+    @Column(name = "file_id", nullable = false)
+    private UUID fileId;
+
+    @Column(name = "vector", nullable = false)
+    private byte[] vector;
+
+    @Transient
+    @Builder.Default
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean newEntity = true;
+
+    @Override
+    public UUID getId() {
+        return fileId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
+}
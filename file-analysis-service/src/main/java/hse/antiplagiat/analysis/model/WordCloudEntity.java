@@ -0,0 +1,55 @@
+package hse.antiplagiat.analysis.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.springframework.data.domain.Persistable;
+
+import java.sql.Types;
+import java.util.UUID;
+
+@Entity
+@Table(name = "word_clouds", schema = "public")
+@Builder
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WordCloudEntity implements Persistable<UUID> {
+    @Id
+    @Column(name = "file_id", nullable = false)
+    private UUID fileId;
+
+    @Column(name = "svg", nullable = false, columnDefinition = "TEXT")
+    private String svg;
+
+    @JdbcTypeCode(Types.VARBINARY)
+    @Column(name = "png")
+    private byte[] png;
+
+    @Transient
+    @Builder.Default
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean newEntity = true;
+
+    @Override
+    public UUID getId() {
+        return fileId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        newEntity = false;
+    }
+}
@@ -0,0 +1,129 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.AnalysisJobEntity;
+import hse.antiplagiat.analysis.model.AnalysisJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJobEntity, UUID> {
+    Optional<AnalysisJobEntity> findFirstByFileIdAndStatusIn(UUID fileId, Collection<AnalysisJobStatus> statuses);
+
+    long countByStatus(AnalysisJobStatus status);
+
+    /**
+     * Queues a job for the file unless it already has a queued or running one, which the partial unique
+     * index on {@code file_id} rules out. Returns whether the job was inserted.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO analysis_jobs (id, file_id, status, attempts, created_at)
+            VALUES (:id, :fileId, 'QUEUED', 0, :createdAt)
+            ON CONFLICT (file_id) WHERE status IN ('QUEUED', 'RUNNING') DO NOTHING
+            """, nativeQuery = true)
+    int insertQueued(@Param("id") UUID id, @Param("fileId") UUID fileId, @Param("createdAt") Instant createdAt);
+
+    /**
+     * Atomically moves up to {@code limit} of the oldest queued jobs to RUNNING and returns them.
+     * {@code SKIP LOCKED} lets several service instances claim jobs concurrently without blocking
+     * on or double-claiming each other's rows.
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE analysis_jobs
+            SET status = 'RUNNING', started_at = now(), heartbeat_at = now(), attempts = attempts + 1
+            WHERE id IN (
+                SELECT id FROM analysis_jobs
+                WHERE status = 'QUEUED'
+                ORDER BY created_at
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            RETURNING *
+            """, nativeQuery = true)
+    List<AnalysisJobEntity> claimQueued(@Param("limit") int limit);
+
+    /**
+     * Finishing, requeueing and heartbeats only apply to the claim identified by {@code attempt}, so a
+     * worker whose job was taken over after it stopped sending heartbeats cannot change the new claim.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.status = :status, j.error = :error, j.finishedAt = :finishedAt
+            where j.id = :id and j.attempts = :attempt
+              and j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.RUNNING
+            """)
+    int finish(@Param("id") UUID id,
+               @Param("attempt") int attempt,
+               @Param("status") AnalysisJobStatus status,
+               @Param("error") String error,
+               @Param("finishedAt") Instant finishedAt);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.QUEUED, j.startedAt = null,
+                j.heartbeatAt = null, j.error = :error
+            where j.id = :id and j.attempts = :attempt
+              and j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.RUNNING
+            """)
+    int requeue(@Param("id") UUID id, @Param("attempt") int attempt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.heartbeatAt = :now
+            where j.id = :id and j.attempts = :attempt
+              and j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.RUNNING
+            """)
+    int heartbeat(@Param("id") UUID id, @Param("attempt") int attempt, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.QUEUED, j.startedAt = null, j.heartbeatAt = null
+            where j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.RUNNING
+              and j.heartbeatAt < :heartbeatBefore and j.attempts < :maxAttempts
+            """)
+    int requeueStale(@Param("heartbeatBefore") Instant heartbeatBefore, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Fails the stale jobs that {@link #requeueStale} leaves alone because they have used up their attempts,
+     * e.g. a file whose analysis crashes every instance that claims it.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.FAILED, j.error = :error, j.finishedAt = :finishedAt
+            where j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.RUNNING
+              and j.heartbeatAt < :heartbeatBefore and j.attempts >= :maxAttempts
+            """)
+    int failStale(@Param("heartbeatBefore") Instant heartbeatBefore,
+                  @Param("maxAttempts") int maxAttempts,
+                  @Param("error") String error,
+                  @Param("finishedAt") Instant finishedAt);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update AnalysisJobEntity j
+            set j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.FAILED, j.error = :error, j.finishedAt = :finishedAt
+            where j.fileId = :fileId and j.status = hse.antiplagiat.analysis.model.AnalysisJobStatus.QUEUED
+            """)
+    int cancelQueued(@Param("fileId") UUID fileId, @Param("error") String error, @Param("finishedAt") Instant finishedAt);
+}
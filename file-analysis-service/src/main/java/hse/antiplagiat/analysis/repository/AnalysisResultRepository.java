@@ -1,12 +1,57 @@
 package hse.antiplagiat.analysis.repository;
 
 import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+import hse.antiplagiat.analysis.model.AnalysisResultSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface AnalysisResultRepository extends JpaRepository<AnalysisResultEntity, UUID> {
+public interface AnalysisResultRepository extends JpaRepository<AnalysisResultEntity, UUID>, AnalysisResultRepositoryCustom {
+    String SUMMARY_COLUMNS = "r.fileId as fileId, r.paragraphsCount as paragraphsCount, r.wordsCount as wordsCount,"
+            + " r.symbolsCount as symbolsCount, case when r.wordCloudUrl is null then false else true end as hasWordCloud,"
+            + " r.createdAt as createdAt";
+
     boolean existsByFileId(UUID fileId);
     Optional<AnalysisResultEntity> findByFileId(UUID id);
+
+    List<AnalysisResultEntity> findAllByFileIdIn(Collection<UUID> fileIds);
+
+    @Query("select r.fileId from AnalysisResultEntity r where r.fileId in :fileIds")
+    List<UUID> findExistingFileIds(@Param("fileIds") Collection<UUID> fileIds);
+
+    /**
+     * Pages through the IDs of all results in key order, continuing after the last ID of the previous page.
+     */
+    @Query("select r.fileId from AnalysisResultEntity r where r.fileId > :after order by r.fileId")
+    List<UUID> findFileIdsAfter(@Param("after") UUID after, Pageable pageable);
+
+    /**
+     * Pages through the summaries of all results, oldest first, using the index on creation time and file ID.
+     */
+    @Query("select " + SUMMARY_COLUMNS + " from AnalysisResultEntity r order by r.createdAt, r.fileId")
+    List<AnalysisResultSummary> findSummaryPage(Pageable pageable);
+
+    /**
+     * Continues {@link #findSummaryPage} after the given key, seeking to it in the index.
+     */
+    @Query("select " + SUMMARY_COLUMNS + " from AnalysisResultEntity r"
+            + " where (r.createdAt, r.fileId) > (:createdAt, :fileId) order by r.createdAt, r.fileId")
+    List<AnalysisResultSummary> findSummaryPageAfter(@Param("createdAt") Instant createdAt, @Param("fileId") UUID fileId, Pageable pageable);
+
+    @Query("select r.fileId from AnalysisResultEntity r where r.wordCloudUrl is null order by r.fileId")
+    List<UUID> findFileIdsWithoutWordCloud(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("update AnalysisResultEntity r set r.wordCloudUrl = :url where r.fileId = :fileId and r.wordCloudUrl is null")
+    int setMissingWordCloudUrl(@Param("fileId") UUID fileId, @Param("url") String url);
 }
\ No newline at end of file
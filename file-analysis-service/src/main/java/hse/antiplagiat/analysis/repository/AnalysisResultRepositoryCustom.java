@@ -0,0 +1,14 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+
+import java.util.List;
+
+public interface AnalysisResultRepositoryCustom {
+    /**
+     * Inserts the results in one JDBC batch, skipping files that already have a result. Returns for
+     * every result whether it was inserted, so a caller that lost a race with another instance can
+     * tell that its result was not stored.
+     */
+    boolean[] insertIfAbsent(List<AnalysisResultEntity> results);
+}
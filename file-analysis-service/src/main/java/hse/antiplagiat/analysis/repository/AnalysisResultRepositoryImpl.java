@@ -0,0 +1,37 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+public class AnalysisResultRepositoryImpl implements AnalysisResultRepositoryCustom {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean[] insertIfAbsent(List<AnalysisResultEntity> results) {
+        int[][] counts = jdbcTemplate.batchUpdate("""
+                        INSERT INTO analysis_results (file_id, paragraphs_count, words_count, symbols_count, word_cloud_url)
+                        VALUES (?, ?, ?, ?, ?)
+                        ON CONFLICT (file_id) DO NOTHING
+                        """,
+                results, 100, (statement, result) -> {
+                    statement.setObject(1, result.getFileId());
+                    statement.setInt(2, result.getParagraphsCount());
+                    statement.setInt(3, result.getWordsCount());
+                    statement.setInt(4, result.getSymbolsCount());
+                    statement.setString(5, result.getWordCloudUrl());
+                });
+
+        boolean[] inserted = new boolean[results.size()];
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                inserted[index++] = count > 0;
+            }
+        }
+        return inserted;
+    }
+}
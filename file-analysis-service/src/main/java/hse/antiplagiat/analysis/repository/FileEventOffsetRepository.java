@@ -0,0 +1,31 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.FileEventOffsetEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface FileEventOffsetRepository extends JpaRepository<FileEventOffsetEntity, UUID> {
+    boolean existsByFileIdAndDeletedTrue(UUID fileId);
+
+    /**
+     * Records the event if it is newer than the last one applied for the file and returns whether the
+     * file is deleted. Returns nothing for a repeated or out-of-order event, which must be ignored.
+     * Once deleted, a file stays deleted: file IDs are never reused.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO file_event_offsets (file_id, last_event_id, deleted)
+            VALUES (:fileId, :eventId, :deleted)
+            ON CONFLICT (file_id) DO UPDATE
+            SET last_event_id = EXCLUDED.last_event_id,
+                deleted = file_event_offsets.deleted OR EXCLUDED.deleted
+            WHERE file_event_offsets.last_event_id < EXCLUDED.last_event_id
+            RETURNING deleted
+            """, nativeQuery = true)
+    List<Boolean> advance(@Param("fileId") UUID fileId, @Param("eventId") long eventId, @Param("deleted") boolean deleted);
+}
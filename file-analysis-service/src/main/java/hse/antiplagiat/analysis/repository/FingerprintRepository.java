@@ -0,0 +1,38 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.FingerprintEntity;
+import hse.antiplagiat.analysis.model.FingerprintId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface FingerprintRepository extends JpaRepository<FingerprintEntity, FingerprintId> {
+    long countByFileId(UUID fileId);
+
+    @Query(value = """
+            SELECT s.start_offset AS sourceStart, s.end_offset AS sourceEnd,
+                   t.start_offset AS targetStart, t.end_offset AS targetEnd
+            FROM fingerprints s
+            JOIN fingerprints t ON t.hash = s.hash AND t.file_id = :targetId
+            WHERE s.file_id = :sourceId
+            ORDER BY s.start_offset, t.start_offset
+            """, nativeQuery = true)
+    List<FingerprintMatch> findMatches(@Param("sourceId") UUID sourceId, @Param("targetId") UUID targetId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from FingerprintEntity f where f.fileId = :fileId")
+    int deleteByFileId(@Param("fileId") UUID fileId);
+
+    interface FingerprintMatch {
+        int getSourceStart();
+        int getSourceEnd();
+        int getTargetStart();
+        int getTargetEnd();
+    }
+}
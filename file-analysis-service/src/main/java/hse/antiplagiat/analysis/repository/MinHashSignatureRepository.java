@@ -0,0 +1,20 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.MinHashSignatureEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface MinHashSignatureRepository extends JpaRepository<MinHashSignatureEntity, UUID> {
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select s from MinHashSignatureEntity s")
+    Stream<MinHashSignatureEntity> streamAll();
+}
@@ -0,0 +1,9 @@
+package hse.antiplagiat.analysis.repository;
+
+import hse.antiplagiat.analysis.model.TermVectorEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface TermVectorRepository extends JpaRepository<TermVectorEntity, UUID> {
+}
@@ -0,0 +1,75 @@
+package hse.antiplagiat.analysis.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the variable-length integer encoding used by segments: seven bits per byte,
+ * least significant group first, high bit set on all but the last byte.
+ */
+final class ByteSink {
+    private byte[] bytes;
+    private int size;
+
+    ByteSink(int capacity) {
+        bytes = new byte[Math.max(16, capacity)];
+    }
+
+    void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7f) != 0) {
+            bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeInt(int value) {
+        ensureCapacity(4);
+        bytes[size++] = (byte) (value >>> 24);
+        bytes[size++] = (byte) (value >>> 16);
+        bytes[size++] = (byte) (value >>> 8);
+        bytes[size++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    void write(byte[] source, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+    }
+
+    void write(ByteSink source) {
+        write(source.bytes, 0, source.size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
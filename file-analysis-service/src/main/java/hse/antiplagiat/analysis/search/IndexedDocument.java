@@ -0,0 +1,37 @@
+package hse.antiplagiat.analysis.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A tokenized document: the ascending token positions of every distinct term.
+ */
+public record IndexedDocument(UUID fileId, Map<String, int[]> positions) {
+    /**
+     * Groups the positions of every term of the tokens, ready to be added to the index.
+     */
+    public static IndexedDocument of(UUID fileId, List<String> tokens) {
+        Map<String, int[]> positions = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            if (token.isEmpty()) {
+                continue;
+            }
+            int[] values = positions.computeIfAbsent(token, t -> new int[4]);
+            int size = sizes.merge(token, 1, Integer::sum) - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                positions.put(token, values);
+            }
+            values[size] = position;
+        }
+
+        positions.replaceAll((token, values) -> Arrays.copyOf(values, sizes.get(token)));
+        return new IndexedDocument(fileId, positions);
+    }
+}
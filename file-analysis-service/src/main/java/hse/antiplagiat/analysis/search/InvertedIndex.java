@@ -0,0 +1,376 @@
+package hse.antiplagiat.analysis.search;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Positional inverted index of the analyzed documents.
+ * <p>
+ * New documents go to an in-memory {@link SegmentBuffer}. A single background writer turns the buffer
+ * into an immutable memory-mapped segment once it holds {@code flush-docs} documents or on every
+ * {@code flush-interval-ms}, and merges the smallest segments whenever there are more than
+ * {@code max-segments}. Searches and updates share a read-write lock that writers only take to swap
+ * segments, never while writing files. Documents deleted while a segment is being written are deleted
+ * again in the written segment before it replaces its sources.
+ */
+@Component
+public class InvertedIndex {
+    private final Path directory;
+    private final int flushDocs;
+    private final int maxSegments;
+    private final int mergeFactor;
+    private final long maxSegmentBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "search-index-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final List<SegmentBuffer> flushing = new ArrayList<>();
+    private final Set<UUID> deletedDuringWrite = new HashSet<>();
+    private List<MappedSegment> segments = List.of();
+    private SegmentBuffer buffer = new SegmentBuffer();
+    private boolean writing;
+    private long nextGeneration = 1;
+
+    private static final Logger log = LoggerFactory.getLogger(InvertedIndex.class);
+
+    public InvertedIndex(
+            @Value("${analysis.search.index-dir:/var/lib/antiplagiat/search}") Path directory,
+            @Value("${analysis.search.flush-docs:10000}") int flushDocs,
+            @Value("${analysis.search.max-segments:10}") int maxSegments,
+            @Value("${analysis.search.merge-factor:10}") int mergeFactor,
+            @Value("${analysis.search.max-segment-bytes:1073741824}") long maxSegmentBytes) {
+        this.directory = directory;
+        this.flushDocs = Math.max(1, flushDocs);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens the segments on disk. Segments already merged into another one are left behind only by a
+     * crash between writing the merged segment and deleting its sources, and are deleted here.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        Map<Long, MappedSegment> opened = new TreeMap<>();
+        List<Path> deletions = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file);
+                } else if (name.endsWith(".idx")) {
+                    long generation = Long.parseLong(name.substring("segment-".length(), name.length() - 4));
+                    opened.put(generation, MappedSegment.open(directory, generation));
+                    nextGeneration = Math.max(nextGeneration, generation + 1);
+                } else if (name.endsWith(".del")) {
+                    deletions.add(file);
+                }
+            }
+        }
+
+        for (MappedSegment segment : List.copyOf(opened.values())) {
+            for (long source : segment.sources()) {
+                MappedSegment obsolete = opened.remove(source);
+                if (obsolete != null) {
+                    obsolete.deleteFiles(directory);
+                }
+            }
+        }
+        for (Path file : deletions) {
+            String name = file.getFileName().toString();
+            if (!opened.containsKey(Long.parseLong(name.substring("segment-".length(), name.length() - 4)))) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        segments = List.copyOf(opened.values());
+        log.info("Opened search index in {}: {} segments, {} documents", directory, segments.size(),
+                segments.stream().mapToLong(MappedSegment::liveDocCount).sum());
+    }
+
+    public void add(IndexedDocument document) {
+        addAll(List.of(document));
+    }
+
+    /**
+     * Adds the documents, replacing earlier versions with the same file ID.
+     */
+    public void addAll(Collection<IndexedDocument> documents) {
+        boolean full;
+        lock.writeLock().lock();
+        try {
+            for (IndexedDocument document : documents) {
+                deleteLocked(document.fileId());
+                buffer.add(document);
+            }
+            full = buffer.docCount() >= flushDocs;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (full) {
+            requestFlush();
+        }
+    }
+
+    public void remove(UUID fileId) {
+        lock.writeLock().lock();
+        try {
+            deleteLocked(fileId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(UUID fileId) {
+        lock.readLock().lock();
+        try {
+            return searchable().stream().anyMatch(segment -> segment.find(fileId) >= 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the documents matching every clause of the query, most matches first. Each segment is
+     * searched by a leapfrog intersection led by the rarest term, so the cost follows the rarest term
+     * and skip entries let the other postings jump over documents that cannot match.
+     */
+    public List<SearchHit> search(SearchQuery query, int limit) {
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        PriorityQueue<SearchHit> top = new PriorityQueue<>(limit + 1, SearchHit.BEST_FIRST.reversed());
+
+        lock.readLock().lock();
+        try {
+            for (Segment segment : searchable()) {
+                search(segment, query, limit, top);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<SearchHit> hits = new ArrayList<>(top);
+        hits.sort(SearchHit.BEST_FIRST);
+        return hits;
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.search.flush-interval-ms:5000}")
+    public void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            writer.execute(this::flushAndMerge);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        requestFlush();
+        writer.shutdown();
+        if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+            log.warn("Search index writer did not finish, unflushed documents will be indexed again on startup");
+        }
+    }
+
+    private void flushAndMerge() {
+        flushRequested.set(false);
+        try {
+            flush();
+            while (merge()) {
+                // merge until the segment count is back under the limit
+            }
+            for (MappedSegment segment : currentSegments()) {
+                segment.writeDeletions(directory);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to write search index segment in {}", directory, e);
+        }
+    }
+
+    /**
+     * Writes the buffer, and any buffers whose earlier flush failed, as one segment.
+     */
+    private void flush() throws IOException {
+        List<SegmentBuffer> sources;
+        List<BitSet> deletions = new ArrayList<>();
+        long generation;
+
+        lock.writeLock().lock();
+        try {
+            if (buffer.docCount() > 0) {
+                flushing.add(buffer);
+                buffer = new SegmentBuffer();
+            }
+            if (flushing.isEmpty()) {
+                return;
+            }
+            sources = List.copyOf(flushing);
+            sources.forEach(source -> deletions.add(source.deletions()));
+            generation = nextGeneration++;
+            writing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        replace(sources, deletions, generation, new long[0], () -> flushing.removeAll(sources));
+    }
+
+    private boolean merge() throws IOException {
+        List<MappedSegment> sources = new ArrayList<>();
+        List<BitSet> deletions = new ArrayList<>();
+        long generation;
+
+        lock.writeLock().lock();
+        try {
+            if (segments.size() <= maxSegments) {
+                return false;
+            }
+            long bytes = 0;
+            for (MappedSegment segment : segments.stream().sorted(Comparator.comparingLong(MappedSegment::sizeInBytes)).toList()) {
+                if (sources.size() == mergeFactor || bytes + segment.sizeInBytes() > maxSegmentBytes) {
+                    break;
+                }
+                sources.add(segment);
+                bytes += segment.sizeInBytes();
+            }
+            if (sources.size() < 2) {
+                return false;
+            }
+            sources.forEach(source -> deletions.add(source.deletions()));
+            generation = nextGeneration++;
+            writing = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long[] sourceGenerations = sources.stream().mapToLong(MappedSegment::generation).toArray();
+        replace(sources, deletions, generation, sourceGenerations, () -> {
+            List<MappedSegment> remaining = new ArrayList<>(segments);
+            remaining.removeAll(sources);
+            segments = remaining;
+        });
+        for (MappedSegment source : sources) {
+            source.deleteFiles(directory);
+        }
+        return true;
+    }
+
+    private void replace(List<? extends Segment> sources, List<BitSet> deletions, long generation,
+                         long[] sourceGenerations, Runnable detachSources) throws IOException {
+        MappedSegment written = null;
+        try {
+            SegmentWriter.write(directory, generation, sources, deletions, sourceGenerations);
+            written = MappedSegment.open(directory, generation);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (written != null) {
+                    for (UUID fileId : deletedDuringWrite) {
+                        int doc = written.find(fileId);
+                        if (doc >= 0) {
+                            written.delete(doc);
+                        }
+                    }
+                    detachSources.run();
+                    List<MappedSegment> updated = new ArrayList<>(segments);
+                    updated.add(written);
+                    segments = List.copyOf(updated);
+                }
+                writing = false;
+                deletedDuringWrite.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        written.writeDeletions(directory);
+    }
+
+    private void deleteLocked(UUID fileId) {
+        for (Segment segment : searchable()) {
+            int doc = segment.find(fileId);
+            if (doc >= 0) {
+                segment.delete(doc);
+            }
+        }
+        if (writing) {
+            deletedDuringWrite.add(fileId);
+        }
+    }
+
+    private List<Segment> searchable() {
+        List<Segment> searchable = new ArrayList<>(segments);
+        searchable.addAll(flushing);
+        searchable.add(buffer);
+        return searchable;
+    }
+
+    private List<MappedSegment> currentSegments() {
+        lock.readLock().lock();
+        try {
+            return segments;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void search(Segment segment, SearchQuery query, int limit, PriorityQueue<SearchHit> top) {
+        Map<String, Postings> postings = new HashMap<>();
+        for (String term : query.terms()) {
+            Postings termPostings = segment.postings(term);
+            if (termPostings == null) {
+                return;
+            }
+            postings.put(term, termPostings);
+        }
+
+        Postings[] ordered = postings.values().stream()
+                .sorted(Comparator.comparingInt(Postings::docFreq))
+                .toArray(Postings[]::new);
+        Postings lead = ordered[0];
+
+        int doc = lead.nextDoc();
+        while (doc != Postings.NO_MORE_DOCS) {
+            int candidate = doc;
+            for (int i = 1; i < ordered.length && candidate == doc; i++) {
+                candidate = ordered[i].advance(doc);
+            }
+            if (candidate != doc) {
+                doc = lead.advance(candidate);
+                continue;
+            }
+
+            if (!segment.isDeleted(doc)) {
+                int matches = query.matches(postings);
+                if (matches > 0) {
+                    top.add(new SearchHit(segment.fileId(doc), matches));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+            doc = lead.nextDoc();
+        }
+    }
+}
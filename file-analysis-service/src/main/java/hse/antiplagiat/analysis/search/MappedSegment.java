@@ -0,0 +1,396 @@
+package hse.antiplagiat.analysis.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Immutable segment file written by {@link SegmentWriter} and read through a memory mapping, so the
+ * postings of large corpora stay in the page cache instead of the heap. Layout, all integers big-endian:
+ * <pre>
+ * magic, version
+ * docs      file ID of every document, 16 bytes each
+ * postings  per term: docFreq, skipCount, docBytes, skip entries, doc stream, position stream (varints)
+ * terms     per term in byte order: postings offset (long), term bytes offset, docFreq
+ * termBytes per term: length, UTF-8 bytes
+ * ids       file IDs sorted, each with its document number
+ * sources   generations of the segments merged into this one
+ * footer    section offsets, docCount, termCount
+ * </pre>
+ * The doc stream holds {@code docDelta, freq, positionBytes} per document and the position stream the
+ * position deltas. Every {@link SegmentWriter#SKIP_INTERVAL} documents a skip entry records the last
+ * document and the stream offsets of the next block. Deletions are kept in a separate {@code .del} file.
+ */
+final class MappedSegment implements Segment {
+    static final int MAGIC = 0x41494458;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    static final int FOOTER_BYTES = 6 * Long.BYTES + 2 * Integer.BYTES;
+    static final int TERM_ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    static final int ID_ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+
+    private final long generation;
+    private final Path file;
+    private final ByteBuffer data;
+    private final int docCount;
+    private final int termCount;
+    private final int postingsOffset;
+    private final int termsOffset;
+    private final int termBytesOffset;
+    private final int idsOffset;
+    private final long[] sources;
+    private final BitSet deleted;
+    private volatile boolean deletionsDirty;
+
+    private MappedSegment(long generation, Path file, ByteBuffer data, BitSet deleted) {
+        this.generation = generation;
+        this.file = file;
+        this.data = data;
+        this.deleted = deleted;
+
+        int footer = data.capacity() - FOOTER_BYTES;
+        if (data.capacity() < HEADER_BYTES + FOOTER_BYTES || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a search segment: " + file);
+        }
+        this.postingsOffset = (int) data.getLong(footer + Long.BYTES);
+        this.termsOffset = (int) data.getLong(footer + 2 * Long.BYTES);
+        this.termBytesOffset = (int) data.getLong(footer + 3 * Long.BYTES);
+        this.idsOffset = (int) data.getLong(footer + 4 * Long.BYTES);
+        int sourcesOffset = (int) data.getLong(footer + 5 * Long.BYTES);
+        this.docCount = data.getInt(footer + 6 * Long.BYTES);
+        this.termCount = data.getInt(footer + 6 * Long.BYTES + Integer.BYTES);
+
+        this.sources = new long[data.getInt(sourcesOffset)];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = data.getLong(sourcesOffset + Integer.BYTES + i * Long.BYTES);
+        }
+    }
+
+    static MappedSegment open(Path directory, long generation) throws IOException {
+        Path file = segmentFile(directory, generation);
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        BitSet deleted = new BitSet();
+        Path deletions = deletionsFile(directory, generation);
+        if (Files.exists(deletions)) {
+            deleted = BitSet.valueOf(LongBuffer.wrap(toLongs(Files.readAllBytes(deletions))));
+        }
+        return new MappedSegment(generation, file, data, deleted);
+    }
+
+    static Path segmentFile(Path directory, long generation) {
+        return directory.resolve("segment-%010d.idx".formatted(generation));
+    }
+
+    static Path deletionsFile(Path directory, long generation) {
+        return directory.resolve("segment-%010d.del".formatted(generation));
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long sizeInBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * Generations of the segments this one was merged from; they are obsolete once this file exists.
+     */
+    long[] sources() {
+        return sources.clone();
+    }
+
+    int liveDocCount() {
+        synchronized (deleted) {
+            return docCount - deleted.cardinality();
+        }
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public UUID fileId(int doc) {
+        int offset = HEADER_BYTES + doc * 2 * Long.BYTES;
+        return new UUID(data.getLong(offset), data.getLong(offset + Long.BYTES));
+    }
+
+    @Override
+    public Postings postings(String term) {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareTerm(middle, bytes);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return postingsOf(middle);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public TermCursor terms() {
+        return new TermCursor() {
+            private int term = -1;
+
+            @Override
+            public boolean next() {
+                return ++term < termCount;
+            }
+
+            @Override
+            public byte[] term() {
+                int offset = termBytesOffsetOf(term);
+                int length = readVarInt(offset);
+                byte[] bytes = new byte[length];
+                data.get(offset + ByteSink.varIntSize(length), bytes);
+                return bytes;
+            }
+
+            @Override
+            public Postings postings() {
+                return postingsOf(term);
+            }
+        };
+    }
+
+    @Override
+    public int find(UUID fileId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = idsOffset + middle * ID_ENTRY_BYTES;
+            int comparison = new UUID(data.getLong(offset), data.getLong(offset + Long.BYTES)).compareTo(fileId);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                int doc = data.getInt(offset + 2 * Long.BYTES);
+                return isDeleted(doc) ? -1 : doc;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isDeleted(int doc) {
+        synchronized (deleted) {
+            return deleted.get(doc);
+        }
+    }
+
+    @Override
+    public void delete(int doc) {
+        synchronized (deleted) {
+            deleted.set(doc);
+        }
+        deletionsDirty = true;
+    }
+
+    @Override
+    public BitSet deletions() {
+        synchronized (deleted) {
+            return (BitSet) deleted.clone();
+        }
+    }
+
+    /**
+     * Writes the deletion marks next to the segment if they changed since the last call. Marks lost in a
+     * crash only make deleted documents searchable again until the search service filters them out.
+     */
+    void writeDeletions(Path directory) throws IOException {
+        if (!deletionsDirty) {
+            return;
+        }
+        deletionsDirty = false;
+
+        long[] words = deletions().toLongArray();
+        ByteBuffer bytes = ByteBuffer.allocate(words.length * Long.BYTES);
+        bytes.asLongBuffer().put(words);
+
+        Path target = deletionsFile(directory, generation);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temporary, bytes.array());
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    void deleteFiles(Path directory) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(deletionsFile(directory, generation));
+    }
+
+    private int compareTerm(int term, byte[] bytes) {
+        int offset = termBytesOffsetOf(term);
+        int length = readVarInt(offset);
+        offset += ByteSink.varIntSize(length);
+
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(data.get(offset + i), bytes[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+
+    private int termBytesOffsetOf(int term) {
+        return termBytesOffset + data.getInt(termsOffset + term * TERM_ENTRY_BYTES + Long.BYTES);
+    }
+
+    private Postings postingsOf(int term) {
+        int offset = (int) data.getLong(termsOffset + term * TERM_ENTRY_BYTES);
+        return new MappedPostings(offset);
+    }
+
+    private int readVarInt(int offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data.get(offset++);
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long[] toLongs(byte[] bytes) {
+        long[] words = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(words);
+        return words;
+    }
+
+    private final class MappedPostings implements Postings {
+        private final int docFreq;
+        private final int[] skipDocs;
+        private final int[] skipDocOffsets;
+        private final int[] skipPositionOffsets;
+        private final int docStream;
+        private final int positionStream;
+        private int docOffset;
+        private int positionOffset;
+        private int index = -1;
+        private int doc = -1;
+        private int freq;
+        private int positionBytes;
+
+        MappedPostings(int offset) {
+            docFreq = readVarInt(offset);
+            offset += ByteSink.varIntSize(docFreq);
+            int skipCount = readVarInt(offset);
+            offset += ByteSink.varIntSize(skipCount);
+            int docBytes = readVarInt(offset);
+            offset += ByteSink.varIntSize(docBytes);
+
+            skipDocs = new int[skipCount];
+            skipDocOffsets = new int[skipCount];
+            skipPositionOffsets = new int[skipCount];
+            int[] previous = new int[3];
+            for (int i = 0; i < skipCount; i++) {
+                for (int field = 0; field < 3; field++) {
+                    int delta = readVarInt(offset);
+                    offset += ByteSink.varIntSize(delta);
+                    previous[field] += delta;
+                }
+                skipDocs[i] = previous[0];
+                skipDocOffsets[i] = previous[1];
+                skipPositionOffsets[i] = previous[2];
+            }
+
+            docStream = offset;
+            positionStream = offset + docBytes;
+            docOffset = docStream;
+            positionOffset = positionStream;
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (++index >= docFreq) {
+                return doc = NO_MORE_DOCS;
+            }
+            positionOffset += positionBytes;
+
+            int delta = readVarInt(docOffset);
+            docOffset += ByteSink.varIntSize(delta);
+            freq = readVarInt(docOffset);
+            docOffset += ByteSink.varIntSize(freq);
+            positionBytes = readVarInt(docOffset);
+            docOffset += ByteSink.varIntSize(positionBytes);
+
+            doc = index == 0 ? delta : doc + delta;
+            return doc;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (doc >= target) {
+                return doc;
+            }
+            // skip entry i is the last document of block i and the start of block i + 1; jump to the
+            // last entry before the target, as landing on the target itself would leave freq unread
+            int found = Arrays.binarySearch(skipDocs, target);
+            int block = found >= 0 ? found - 1 : -found - 2;
+            if (block >= 0 && (block + 1) * SegmentWriter.SKIP_INTERVAL > index + 1) {
+                index = (block + 1) * SegmentWriter.SKIP_INTERVAL - 1;
+                doc = skipDocs[block];
+                docOffset = docStream + skipDocOffsets[block];
+                positionOffset = positionStream + skipPositionOffsets[block];
+                positionBytes = 0;
+            }
+            return Postings.super.advance(target);
+        }
+
+        @Override
+        public int docFreq() {
+            return docFreq;
+        }
+
+        @Override
+        public int freq() {
+            return freq;
+        }
+
+        @Override
+        public int[] positions() {
+            int[] positions = new int[freq];
+            int offset = positionOffset;
+            int position = 0;
+            for (int i = 0; i < freq; i++) {
+                int delta = readVarInt(offset);
+                offset += ByteSink.varIntSize(delta);
+                position += delta;
+                positions[i] = position;
+            }
+            return positions;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package hse.antiplagiat.analysis.search;
+
+/**
+ * Iterator over the documents containing a term, in ascending document order, with the token positions
+ * of the term in the current document.
+ */
+public interface Postings {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /**
+     * The current document, -1 before the first call to {@link #nextDoc} and {@link #NO_MORE_DOCS} at the end.
+     */
+    int doc();
+
+    int nextDoc();
+
+    /**
+     * Moves to the first document at or after {@code target}.
+     */
+    default int advance(int target) {
+        int doc = doc();
+        while (doc < target) {
+            doc = nextDoc();
+        }
+        return doc;
+    }
+
+    /**
+     * Number of documents containing the term, used to start intersections with the rarest term.
+     */
+    int docFreq();
+
+    int freq();
+
+    int[] positions();
+}
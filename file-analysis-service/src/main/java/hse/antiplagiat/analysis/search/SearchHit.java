@@ -0,0 +1,12 @@
+package hse.antiplagiat.analysis.search;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * A document matching every clause of a query and the total number of clause occurrences in it.
+ */
+public record SearchHit(UUID fileId, int matches) {
+    public static final Comparator<SearchHit> BEST_FIRST = Comparator.comparingInt(SearchHit::matches).reversed()
+            .thenComparing(SearchHit::fileId);
+}
@@ -0,0 +1,74 @@
+package hse.antiplagiat.analysis.search;
+
+import hse.antiplagiat.analysis.text.Tokenizer;
+
+import java.util.*;
+
+/**
+ * A conjunction of clauses: every word outside quotes is a single-term clause, every quoted part a
+ * phrase whose terms must occur at consecutive positions.
+ */
+public record SearchQuery(List<List<String>> clauses) {
+
+    public static SearchQuery parse(String text, Tokenizer tokenizer) {
+        List<List<String>> clauses = new ArrayList<>();
+        String[] parts = text.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> tokens = tokenizer.tokens(parts[i]);
+            if (i % 2 == 1 && !tokens.isEmpty()) {
+                clauses.add(List.copyOf(tokens));
+            } else {
+                tokens.forEach(token -> clauses.add(List.of(token)));
+            }
+        }
+        return new SearchQuery(List.copyOf(clauses));
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    public Set<String> terms() {
+        Set<String> terms = new LinkedHashSet<>();
+        clauses.forEach(terms::addAll);
+        return terms;
+    }
+
+    /**
+     * Counts the occurrences of all clauses in the document the postings are positioned on, or returns 0
+     * if some phrase does not occur.
+     */
+    int matches(Map<String, Postings> postings) {
+        Map<String, int[]> positions = new HashMap<>();
+        int matches = 0;
+        for (List<String> clause : clauses) {
+            int count = clause.size() == 1
+                    ? postings.get(clause.get(0)).freq()
+                    : phraseCount(clause, postings, positions);
+            if (count == 0) {
+                return 0;
+            }
+            matches += count;
+        }
+        return matches;
+    }
+
+    private static int phraseCount(List<String> phrase, Map<String, Postings> postings, Map<String, int[]> positions) {
+        int[][] termPositions = new int[phrase.size()][];
+        for (int i = 0; i < phrase.size(); i++) {
+            termPositions[i] = positions.computeIfAbsent(phrase.get(i), term -> postings.get(term).positions());
+        }
+
+        int count = 0;
+        for (int start : termPositions[0]) {
+            int i = 1;
+            while (i < termPositions.length && Arrays.binarySearch(termPositions[i], start + i) >= 0) {
+                i++;
+            }
+            if (i == termPositions.length) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package hse.antiplagiat.analysis.search;
+
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * A self-contained part of the index with its own document numbering: either the in-memory
+ * {@link SegmentBuffer} receiving new documents or an immutable {@link MappedSegment} on disk.
+ * Deleting a document only marks it; the postings are dropped when the segment is merged.
+ */
+public interface Segment {
+    int docCount();
+
+    UUID fileId(int doc);
+
+    /**
+     * Returns the postings of the term, or null if no document of this segment contains it.
+     */
+    Postings postings(String term);
+
+    /**
+     * Iterates the terms of the segment in the order of their UTF-8 bytes, as segments are written.
+     */
+    TermCursor terms();
+
+    /**
+     * Returns the number of the live document with this file ID, or -1.
+     */
+    int find(UUID fileId);
+
+    boolean isDeleted(int doc);
+
+    void delete(int doc);
+
+    /**
+     * A copy of the deletion marks, taken before the segment is rewritten.
+     */
+    BitSet deletions();
+
+    interface TermCursor {
+        boolean next();
+
+        byte[] term();
+
+        Postings postings();
+    }
+}
@@ -0,0 +1,162 @@
+package hse.antiplagiat.analysis.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The segment receiving new documents. Postings are kept as plain int arrays, {@code doc, freq, positions...}
+ * per document, until the buffer is written to disk as a {@link MappedSegment}.
+ * Not thread-safe; {@link InvertedIndex} guards it with its lock.
+ */
+final class SegmentBuffer implements Segment {
+    private final List<UUID> fileIds = new ArrayList<>();
+    private final Map<UUID, Integer> docs = new HashMap<>();
+    private final Map<String, TermPostings> postings = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long postingInts;
+
+    int add(IndexedDocument document) {
+        int doc = fileIds.size();
+        fileIds.add(document.fileId());
+        docs.put(document.fileId(), doc);
+
+        document.positions().forEach((term, positions) -> {
+            TermPostings termPostings = postings.computeIfAbsent(term, t -> new TermPostings());
+            termPostings.add(doc, positions);
+            postingInts += positions.length + 2;
+        });
+        return doc;
+    }
+
+    /**
+     * Rough heap usage of the postings, used to decide when to write the buffer out.
+     */
+    long postingBytes() {
+        return postingInts * Integer.BYTES;
+    }
+
+    @Override
+    public int docCount() {
+        return fileIds.size();
+    }
+
+    @Override
+    public UUID fileId(int doc) {
+        return fileIds.get(doc);
+    }
+
+    @Override
+    public Postings postings(String term) {
+        TermPostings termPostings = postings.get(term);
+        return termPostings == null ? null : new BufferPostings(termPostings.data, termPostings.size, termPostings.docFreq);
+    }
+
+    @Override
+    public TermCursor terms() {
+        List<Map.Entry<byte[], TermPostings>> sorted = new ArrayList<>(postings.size());
+        postings.forEach((term, termPostings) ->
+                sorted.add(Map.entry(term.getBytes(StandardCharsets.UTF_8), termPostings)));
+        sorted.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+
+        Iterator<Map.Entry<byte[], TermPostings>> iterator = sorted.iterator();
+        return new TermCursor() {
+            private Map.Entry<byte[], TermPostings> current;
+
+            @Override
+            public boolean next() {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return current != null;
+            }
+
+            @Override
+            public byte[] term() {
+                return current.getKey();
+            }
+
+            @Override
+            public Postings postings() {
+                TermPostings termPostings = current.getValue();
+                return new BufferPostings(termPostings.data, termPostings.size, termPostings.docFreq);
+            }
+        };
+    }
+
+    @Override
+    public int find(UUID fileId) {
+        Integer doc = docs.get(fileId);
+        return doc == null || deleted.get(doc) ? -1 : doc;
+    }
+
+    @Override
+    public boolean isDeleted(int doc) {
+        return deleted.get(doc);
+    }
+
+    @Override
+    public void delete(int doc) {
+        deleted.set(doc);
+    }
+
+    @Override
+    public BitSet deletions() {
+        return (BitSet) deleted.clone();
+    }
+
+    private static final class TermPostings {
+        private int[] data = new int[8];
+        private int size;
+        private int docFreq;
+
+        void add(int doc, int[] positions) {
+            if (size + positions.length + 2 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + positions.length + 2));
+            }
+            data[size++] = doc;
+            data[size++] = positions.length;
+            System.arraycopy(positions, 0, data, size, positions.length);
+            size += positions.length;
+            docFreq++;
+        }
+    }
+
+    private static final class BufferPostings implements Postings {
+        private final int[] data;
+        private final int size;
+        private final int docFreq;
+        private int offset = -1;
+        private int doc = -1;
+
+        BufferPostings(int[] data, int size, int docFreq) {
+            this.data = data;
+            this.size = size;
+            this.docFreq = docFreq;
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            offset = offset < 0 ? 0 : offset + 2 + data[offset + 1];
+            doc = offset < size ? data[offset] : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public int docFreq() {
+            return docFreq;
+        }
+
+        @Override
+        public int freq() {
+            return data[offset + 1];
+        }
+
+        @Override
+        public int[] positions() {
+            return Arrays.copyOfRange(data, offset + 2, offset + 2 + data[offset + 1]);
+        }
+    }
+}
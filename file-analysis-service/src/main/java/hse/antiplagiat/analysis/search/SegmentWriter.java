@@ -0,0 +1,259 @@
+package hse.antiplagiat.analysis.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Writes segments in the {@link MappedSegment} format. Flushing the buffer and merging segments are the
+ * same operation: the terms of all sources are merged in byte order and the live documents renumbered,
+ * in source order, so the postings of every term stay sorted without buffering them.
+ */
+final class SegmentWriter {
+    static final int SKIP_INTERVAL = 128;
+
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * Writes the live documents of the sources as segment {@code generation} and returns, per source, the
+     * new number of every document or -1 for the deleted ones. The file appears atomically once complete.
+     */
+    static int[][] write(Path directory, long generation, List<? extends Segment> sources, List<BitSet> deletions,
+                         long[] sourceGenerations) throws IOException {
+        int[][] docMaps = new int[sources.size()][];
+        List<UUID> fileIds = new ArrayList<>();
+        for (int source = 0; source < sources.size(); source++) {
+            Segment segment = sources.get(source);
+            BitSet deleted = deletions.get(source);
+            docMaps[source] = new int[segment.docCount()];
+            for (int doc = 0; doc < segment.docCount(); doc++) {
+                docMaps[source][doc] = deleted.get(doc) ? -1 : fileIds.size();
+                if (!deleted.get(doc)) {
+                    fileIds.add(segment.fileId(doc));
+                }
+            }
+        }
+
+        Path target = MappedSegment.segmentFile(directory, generation);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.sink.writeInt(MappedSegment.MAGIC);
+            out.sink.writeInt(MappedSegment.VERSION);
+            for (UUID fileId : fileIds) {
+                out.sink.writeLong(fileId.getMostSignificantBits());
+                out.sink.writeLong(fileId.getLeastSignificantBits());
+                out.flushIfFull();
+            }
+
+            long postingsOffset = out.position();
+            ByteSink terms = new ByteSink(CHUNK_BYTES);
+            ByteSink termBytes = new ByteSink(CHUNK_BYTES);
+            int termCount = writePostings(out, sources, docMaps, terms, termBytes);
+
+            long termsOffset = out.position();
+            out.write(terms);
+            long termBytesOffset = out.position();
+            out.write(termBytes);
+
+            long idsOffset = out.position();
+            Integer[] order = new Integer[fileIds.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparing(fileIds::get));
+            for (int doc : order) {
+                out.sink.writeLong(fileIds.get(doc).getMostSignificantBits());
+                out.sink.writeLong(fileIds.get(doc).getLeastSignificantBits());
+                out.sink.writeInt(doc);
+                out.flushIfFull();
+            }
+
+            long sourcesOffset = out.position();
+            out.sink.writeInt(sourceGenerations.length);
+            for (long sourceGeneration : sourceGenerations) {
+                out.sink.writeLong(sourceGeneration);
+            }
+
+            out.sink.writeLong(MappedSegment.HEADER_BYTES);
+            out.sink.writeLong(postingsOffset);
+            out.sink.writeLong(termsOffset);
+            out.sink.writeLong(termBytesOffset);
+            out.sink.writeLong(idsOffset);
+            out.sink.writeLong(sourcesOffset);
+            out.sink.writeInt(fileIds.size());
+            out.sink.writeInt(termCount);
+            out.flush();
+
+            if (out.position() > Integer.MAX_VALUE) {
+                throw new IOException("Segment exceeds 2 GB: " + target);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        return docMaps;
+    }
+
+    private static int writePostings(Output out, List<? extends Segment> sources, int[][] docMaps,
+                                     ByteSink terms, ByteSink termBytes) throws IOException {
+        PriorityQueue<SourceTerm> queue = new PriorityQueue<>();
+        for (int source = 0; source < sources.size(); source++) {
+            SourceTerm sourceTerm = new SourceTerm(source, sources.get(source).terms());
+            if (sourceTerm.next()) {
+                queue.add(sourceTerm);
+            }
+        }
+
+        ByteSink docs = new ByteSink(CHUNK_BYTES);
+        ByteSink positions = new ByteSink(CHUNK_BYTES);
+        ByteSink skips = new ByteSink(256);
+        List<SourceTerm> current = new ArrayList<>();
+        int termCount = 0;
+
+        while (!queue.isEmpty()) {
+            current.clear();
+            current.add(queue.poll());
+            while (!queue.isEmpty() && Arrays.equals(queue.peek().term, current.get(0).term)) {
+                current.add(queue.poll());
+            }
+
+            docs.reset();
+            positions.reset();
+            skips.reset();
+            int docFreq = 0;
+            int skipCount = 0;
+            int previousDoc = 0;
+            int[] lastSkip = new int[3];
+
+            for (SourceTerm sourceTerm : current) {
+                Postings postings = sourceTerm.cursor.postings();
+                int[] docMap = docMaps[sourceTerm.source];
+                for (int doc = postings.nextDoc(); doc != Postings.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    int newDoc = docMap[doc];
+                    if (newDoc < 0) {
+                        continue;
+                    }
+                    if (docFreq > 0 && docFreq % SKIP_INTERVAL == 0) {
+                        skips.writeVarInt(previousDoc - lastSkip[0]);
+                        skips.writeVarInt(docs.size() - lastSkip[1]);
+                        skips.writeVarInt(positions.size() - lastSkip[2]);
+                        lastSkip[0] = previousDoc;
+                        lastSkip[1] = docs.size();
+                        lastSkip[2] = positions.size();
+                        skipCount++;
+                    }
+
+                    int[] docPositions = postings.positions();
+                    int start = positions.size();
+                    int previousPosition = 0;
+                    for (int position : docPositions) {
+                        positions.writeVarInt(position - previousPosition);
+                        previousPosition = position;
+                    }
+
+                    docs.writeVarInt(docFreq == 0 ? newDoc : newDoc - previousDoc);
+                    docs.writeVarInt(docPositions.length);
+                    docs.writeVarInt(positions.size() - start);
+                    previousDoc = newDoc;
+                    docFreq++;
+                }
+            }
+
+            if (docFreq > 0) {
+                byte[] term = current.get(0).term;
+                terms.writeLong(out.position());
+                terms.writeInt(termBytes.size());
+                terms.writeInt(docFreq);
+                termBytes.writeVarInt(term.length);
+                termBytes.write(term, 0, term.length);
+
+                out.sink.writeVarInt(docFreq);
+                out.sink.writeVarInt(skipCount);
+                out.sink.writeVarInt(docs.size());
+                out.sink.write(skips);
+                out.write(docs);
+                out.write(positions);
+                termCount++;
+            }
+
+            for (SourceTerm sourceTerm : current) {
+                if (sourceTerm.next()) {
+                    queue.add(sourceTerm);
+                }
+            }
+        }
+        return termCount;
+    }
+
+    private static final class SourceTerm implements Comparable<SourceTerm> {
+        private final int source;
+        private final Segment.TermCursor cursor;
+        private byte[] term;
+
+        SourceTerm(int source, Segment.TermCursor cursor) {
+            this.source = source;
+            this.cursor = cursor;
+        }
+
+        boolean next() {
+            term = cursor.next() ? cursor.term() : null;
+            return term != null;
+        }
+
+        @Override
+        public int compareTo(SourceTerm other) {
+            int comparison = Arrays.compareUnsigned(term, other.term);
+            return comparison != 0 ? comparison : Integer.compare(source, other.source);
+        }
+    }
+
+    /**
+     * Buffers small writes in a sink and hands it to the channel in chunks, keeping track of the offset.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteSink sink = new ByteSink(CHUNK_BYTES);
+        private long written;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long position() {
+            return written + sink.size();
+        }
+
+        void write(ByteSink source) throws IOException {
+            flush();
+            ByteBuffer buffer = ByteBuffer.wrap(source.array(), 0, source.size());
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+        }
+
+        void flushIfFull() throws IOException {
+            if (sink.size() >= CHUNK_BYTES) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(sink.array(), 0, sink.size());
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            sink.reset();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.AnalysisJobDto;
+import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
+import hse.antiplagiat.analysis.model.AnalysisJobEntity;
+import hse.antiplagiat.analysis.model.AnalysisJobStatus;
+import hse.antiplagiat.analysis.repository.AnalysisJobRepository;
+import hse.antiplagiat.analysis.repository.FileEventOffsetRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of analysis jobs backed by the {@code analysis_jobs} table.
+ * <p>
+ * Every instance polls the table and claims queued jobs with {@code FOR UPDATE SKIP LOCKED}, so several
+ * instances share one queue. A job runs on its own virtual thread; the number of jobs running on an
+ * instance is bounded by a semaphore, and a poll never claims more jobs than there are free permits.
+ * <p>
+ * A claim is a lease: the instance renews {@code heartbeat_at} of its running jobs every
+ * {@code heartbeat-interval-ms}, and jobs without a heartbeat for {@code stale-after-ms}, e.g. of a crashed
+ * instance, are returned to the queue, or failed once they have used up {@code max-attempts}. Each claim
+ * is identified by its attempt number, so a worker that lost its lease cannot finish the new claim.
+ */
+@Service
+public class AnalysisJobService {
+    private final AnalysisJobRepository analysisJobRepository;
+    private final FileAnalysisService fileAnalysisService;
+    private final FileEventOffsetRepository fileEventOffsetRepository;
+    private final int maxAttempts;
+    private final Duration staleAfter;
+    private final int concurrency;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final Map<UUID, Integer> running = new ConcurrentHashMap<>();
+    private final Timer waitTimer;
+    private final Timer succeededTimer;
+    private final Timer failedTimer;
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisJobService.class);
+
+    private static final EnumSet<AnalysisJobStatus> ACTIVE = EnumSet.of(AnalysisJobStatus.QUEUED, AnalysisJobStatus.RUNNING);
+
+    public AnalysisJobService(
+            AnalysisJobRepository analysisJobRepository,
+            FileAnalysisService fileAnalysisService,
+            FileEventOffsetRepository fileEventOffsetRepository,
+            MeterRegistry meterRegistry,
+            @Value("${analysis.jobs.concurrency:8}") int concurrency,
+            @Value("${analysis.jobs.max-attempts:3}") int maxAttempts,
+            @Value("${analysis.jobs.stale-after-ms:120000}") long staleAfterMs) {
+        this.analysisJobRepository = analysisJobRepository;
+        this.fileAnalysisService = fileAnalysisService;
+        this.fileEventOffsetRepository = fileEventOffsetRepository;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.staleAfter = Duration.ofMillis(staleAfterMs);
+        this.permits = new Semaphore(this.concurrency);
+
+        Gauge.builder("analysis.jobs.queue.depth", queueDepth, AtomicLong::get)
+                .description("Jobs waiting in the queue, shared by all instances")
+                .register(meterRegistry);
+        Gauge.builder("analysis.jobs.running", permits, p -> this.concurrency - p.availablePermits())
+                .description("Jobs running on this instance")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("analysis.jobs.wait")
+                .description("Time from submission until a worker picks the job up")
+                .register(meterRegistry);
+        this.succeededTimer = Timer.builder("analysis.jobs.duration")
+                .tag("outcome", "succeeded")
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("analysis.jobs.duration")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues analysis of the file and returns the job. A file that is already queued or being
+     * analyzed gets the existing job instead of a duplicate, also when submitted concurrently.
+     */
+    public AnalysisJobDto submit(UUID fileId) {
+        UUID id = UUID.randomUUID();
+        while (true) {
+            Optional<AnalysisJobEntity> active = analysisJobRepository.findFirstByFileIdAndStatusIn(fileId, ACTIVE);
+            if (active.isPresent()) {
+                return mapToDto(active.get());
+            }
+            if (analysisJobRepository.insertQueued(id, fileId, Instant.now()) > 0) {
+                return getJob(id);
+            }
+            // A concurrent submit queued the file first; its job is found on the next pass.
+        }
+    }
+
+    /**
+     * Fails the queued jobs of a deleted file. A job that is already running finishes, and its result is
+     * removed in {@link #run} once it sees the deletion.
+     */
+    public int cancel(UUID fileId) {
+        return analysisJobRepository.cancelQueued(fileId, "File deleted", Instant.now());
+    }
+
+    /**
+     * Jobs waiting in the queue as of the last poll.
+     */
+    public long queueDepth() {
+        return queueDepth.get();
+    }
+
+    public AnalysisJobDto getJob(UUID jobId) {
+        AnalysisJobEntity job = analysisJobRepository.findById(jobId)
+                .orElseThrow(() -> new AnalysisNotFoundException("Analysis job not found with ID: " + jobId));
+        return mapToDto(job);
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.jobs.poll-interval-ms:500}")
+    public void dispatch() {
+        queueDepth.set(analysisJobRepository.countByStatus(AnalysisJobStatus.QUEUED));
+
+        int free = permits.availablePermits();
+        if (free == 0 || queueDepth.get() == 0) {
+            return;
+        }
+
+        List<AnalysisJobEntity> jobs = analysisJobRepository.claimQueued(free);
+        for (AnalysisJobEntity job : jobs) {
+            permits.acquireUninterruptibly();
+            waitTimer.record(Duration.between(job.getCreatedAt(), job.getStartedAt()));
+            executor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.jobs.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        Instant now = Instant.now();
+        running.forEach((id, attempt) -> analysisJobRepository.heartbeat(id, attempt, now));
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.jobs.stale-check-interval-ms:60000}")
+    public void requeueStale() {
+        Instant now = Instant.now();
+        Instant heartbeatBefore = now.minus(staleAfter);
+        int failed = analysisJobRepository.failStale(heartbeatBefore, maxAttempts,
+                "No heartbeat for " + staleAfter.toMillis() + " ms after " + maxAttempts + " attempts", now);
+        if (failed > 0) {
+            log.error("Failed {} stale analysis jobs that used up their attempts", failed);
+        }
+        int requeued = analysisJobRepository.requeueStale(heartbeatBefore, maxAttempts);
+        if (requeued > 0) {
+            log.warn("Returned {} stale analysis jobs to the queue", requeued);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(AnalysisJobEntity job) {
+        long start = System.nanoTime();
+        running.put(job.getId(), job.getAttempts());
+        try {
+            fileAnalysisService.analyzeFile(job.getFileId());
+            if (fileEventOffsetRepository.existsByFileIdAndDeletedTrue(job.getFileId())) {
+                fileAnalysisService.deleteAnalysisIfExists(job.getFileId());
+            }
+            analysisJobRepository.finish(job.getId(), job.getAttempts(), AnalysisJobStatus.SUCCEEDED, null, Instant.now());
+            succeededTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        } catch (Exception e) {
+            failedTimer.record(Duration.ofNanos(System.nanoTime() - start));
+            String error = rootMessage(e);
+            if (job.getAttempts() < maxAttempts) {
+                log.warn("Analysis job {} failed on attempt {}, requeueing", job.getId(), job.getAttempts(), e);
+                analysisJobRepository.requeue(job.getId(), job.getAttempts(), error);
+            } else {
+                log.error("Analysis job {} failed after {} attempts", job.getId(), job.getAttempts(), e);
+                analysisJobRepository.finish(job.getId(), job.getAttempts(), AnalysisJobStatus.FAILED, error, Instant.now());
+            }
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    private AnalysisJobDto mapToDto(AnalysisJobEntity job) {
+        return AnalysisJobDto.builder()
+                .jobId(job.getId())
+                .fileId(job.getFileId())
+                .status(job.getStatus())
+                .attempts(job.getAttempts())
+                .error(job.getError())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .result(job.getStatus() == AnalysisJobStatus.SUCCEEDED
+                        ? fileAnalysisService.findAnalysis(job.getFileId()).orElse(null)
+                        : null)
+                .build();
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getName();
+    }
+}
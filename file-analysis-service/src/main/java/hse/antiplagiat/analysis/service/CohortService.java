@@ -0,0 +1,190 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.CohortPairDto;
+import hse.antiplagiat.analysis.dto.CohortReportDto;
+import hse.antiplagiat.analysis.exception.FileAnalysisException;
+import hse.antiplagiat.analysis.similarity.AllPairsCosine;
+import hse.antiplagiat.analysis.similarity.AllPairsCosine.ScoredPair;
+import hse.antiplagiat.analysis.similarity.TfIdfMatrix;
+import hse.antiplagiat.analysis.text.TermVector;
+import hse.antiplagiat.analysis.text.Tokenizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Compares every file of a cohort, e.g. all submissions of an assignment, with every other one.
+ * <p>
+ * The term vectors stored by the analysis are used as they are; only files without one are fetched with
+ * the bulk endpoint and vectorized while the response is still being read. The vectors become TF-IDF
+ * vectors weighted within the cohort, and {@link AllPairsCosine} scores all pairs on a dedicated
+ * fork/join pool.
+ */
+@Service
+public class CohortService {
+    private final FileStorageClient fileStorageClient;
+    private final TermVectorService termVectorService;
+    private final Tokenizer tokenizer;
+    private final MeterRegistry meterRegistry;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int maxFiles;
+    private final int fetchBatchSize;
+    private final int maxPairs;
+
+    private static final Logger log = LoggerFactory.getLogger(CohortService.class);
+
+    public CohortService(
+            FileStorageClient fileStorageClient,
+            TermVectorService termVectorService,
+            Tokenizer tokenizer,
+            MeterRegistry meterRegistry,
+            @Value("${analysis.cohort.max-files:5000}") int maxFiles,
+            @Value("${analysis.cohort.fetch-batch-size:500}") int fetchBatchSize,
+            @Value("${analysis.cohort.max-pairs:1000}") int maxPairs,
+            @Value("${analysis.cohort.parallelism:0}") int parallelism) {
+        this.fileStorageClient = fileStorageClient;
+        this.termVectorService = termVectorService;
+        this.tokenizer = tokenizer;
+        this.meterRegistry = meterRegistry;
+        this.maxFiles = maxFiles;
+        this.fetchBatchSize = Math.max(1, fetchBatchSize);
+        this.maxPairs = maxPairs;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    /**
+     * Returns up to {@code limit} pairs of files whose similarity is at least {@code threshold}, most
+     * similar first. Files that are not stored or could not be read are listed in {@code missingFileIds}.
+     */
+    public CohortReportDto compare(List<UUID> fileIds, double threshold, int limit) {
+        if (fileIds == null || fileIds.size() < 2) {
+            throw new FileAnalysisException("At least two file IDs are required to compare a cohort");
+        }
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(fileIds));
+        if (ids.size() > maxFiles) {
+            throw new FileAnalysisException("Too many files in cohort: " + ids.size() + ", maximum is " + maxFiles);
+        }
+        if (threshold < 0 || threshold > 1) {
+            throw new FileAnalysisException("Threshold must be between 0 and 1: " + threshold);
+        }
+        if (limit < 1 || limit > maxPairs) {
+            throw new FileAnalysisException("Limit must be between 1 and " + maxPairs + ": " + limit);
+        }
+
+        Map<UUID, TermVector> vectors = timed("vectorize", () -> vectorize(ids));
+        List<UUID> present = ids.stream().filter(vectors::containsKey).toList();
+        List<UUID> missing = ids.stream().filter(id -> !vectors.containsKey(id)).toList();
+
+        List<ScoredPair> pairs = timed("compare", () -> {
+            List<TermVector> documents = compact(present.stream().map(vectors::get).toList());
+            int vocabularySize = documents.stream()
+                    .mapToInt(document -> document.size() == 0 ? 0 : document.terms()[document.size() - 1] + 1)
+                    .max()
+                    .orElse(0);
+            return AllPairsCosine.topPairs(TfIdfMatrix.build(documents, vocabularySize), threshold, limit, pool);
+        });
+
+        return CohortReportDto.builder()
+                .fileCount(present.size())
+                .comparedPairs((long) present.size() * (present.size() - 1) / 2)
+                .pairs(pairs.stream()
+                        .map(pair -> CohortPairDto.builder()
+                                .fileId(present.get(pair.row()))
+                                .otherFileId(present.get(pair.column()))
+                                .similarity(pair.similarity())
+                                .build())
+                        .toList())
+                .missingFileIds(missing)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Loads the stored vectors and fetches the contents of the files without one in slices the bulk
+     * endpoint accepts, vectorizing them in parallel, at most {@code parallelism} files at a time, so only
+     * that many contents are held in memory. Vectors computed here are not stored: the file may not have
+     * been analyzed.
+     */
+    private Map<UUID, TermVector> vectorize(List<UUID> ids) {
+        Map<UUID, TermVector> vectors = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(parallelism);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < ids.size(); from += fetchBatchSize) {
+                List<UUID> slice = ids.subList(from, Math.min(ids.size(), from + fetchBatchSize));
+                vectors.putAll(termVectorService.findAll(slice));
+                List<UUID> unvectorized = slice.stream().filter(id -> !vectors.containsKey(id)).toList();
+                if (unvectorized.isEmpty()) {
+                    continue;
+                }
+                fileStorageClient.fetchFileContents(unvectorized, (fileId, bytes) -> {
+                    if (bytes == null) {
+                        return;
+                    }
+                    permits.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            List<String> tokens = tokenizer.tokens(new String(bytes, StandardCharsets.UTF_8));
+                            vectors.put(fileId, termVectorService.vectorize(tokens));
+                        } catch (Exception e) {
+                            log.error("Error vectorizing file with ID: {}", fileId, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                });
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * Renumbers the global term IDs of the dictionary to the terms occurring in the cohort, so the
+     * per-term arrays of the matrix are sized by the cohort and not by every term ever seen. The
+     * renumbering keeps the order, so the terms of every vector stay sorted.
+     */
+    private static List<TermVector> compact(List<TermVector> documents) {
+        int[] vocabulary = documents.stream()
+                .flatMapToInt(document -> Arrays.stream(document.terms()))
+                .sorted()
+                .distinct()
+                .toArray();
+        return documents.stream()
+                .map(document -> new TermVector(
+                        Arrays.stream(document.terms()).map(term -> Arrays.binarySearch(vocabulary, term)).toArray(),
+                        document.counts()))
+                .toList();
+    }
+
+    private <T> T timed(String stage, Supplier<T> action) {
+        return Timer.builder("analysis.cohort.stage")
+                .description("Time spent in a stage of a cohort comparison")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(action);
+    }
+}
@@ -1,130 +1,483 @@
 package hse.antiplagiat.analysis.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import hse.antiplagiat.analysis.dto.AnalysisPageDto;
 import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import hse.antiplagiat.analysis.dto.AnalysisSummaryDto;
+import hse.antiplagiat.analysis.dto.BatchAnalysisResultDto;
 import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
 import hse.antiplagiat.analysis.exception.FileAnalysisException;
+import hse.antiplagiat.analysis.exception.InvalidRequestException;
 import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+import hse.antiplagiat.analysis.model.AnalysisResultSummary;
+import hse.antiplagiat.analysis.model.FingerprintEntity;
+import hse.antiplagiat.analysis.model.ListCursor;
+import hse.antiplagiat.analysis.model.MinHashSignatureEntity;
+import hse.antiplagiat.analysis.model.TermVectorEntity;
+import hse.antiplagiat.analysis.model.WordCloudEntity;
 import hse.antiplagiat.analysis.repository.AnalysisResultRepository;
+import hse.antiplagiat.analysis.search.IndexedDocument;
+import hse.antiplagiat.analysis.service.WordCloudService.RenderedWordCloud;
+import hse.antiplagiat.analysis.text.TermVector;
+import hse.antiplagiat.analysis.text.TextStatistics;
+import hse.antiplagiat.analysis.text.TextStatisticsScanner;
+import hse.antiplagiat.analysis.text.Tokenizer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 @Service
 public class FileAnalysisService {
-    private final RestClient loadBalancedRestClient;
-    private final RestClient nonLoadBalancedRestClient;
+    private final FileStorageClient fileStorageClient;
     private final AnalysisResultRepository analysisResultRepository;
+    private final SimilarityService similarityService;
+    private final FingerprintService fingerprintService;
+    private final SearchService searchService;
+    private final TermVectorService termVectorService;
+    private final Tokenizer tokenizer;
+    private final TextStatisticsScanner textStatisticsScanner;
+    private final WordCloudService wordCloudService;
+    private final Cache<UUID, AnalysisResultDto> resultCache;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary documentSize;
+    private final int batchMaxFiles;
+    private final int batchParallelism;
+    private final int listingMaxLimit;
+    private final int exportBatchSize;
+    private final ConcurrentHashMap<UUID, CompletableFuture<AnalysisResultDto>> inFlight = new ConcurrentHashMap<>();
 
     private static final Logger log = LoggerFactory.getLogger(FileAnalysisService.class);
 
-    private static final String FILE_STORAGE_API_URL = "http://FILE-STORAGE-SERVICE/api/files/{fileId}";
-    private static final String WORD_CLOUD_API_URL = "https://quickchart.io/wordcloud";
-
     public FileAnalysisService(
-            @Qualifier("loadBalancedRestClientBuilder") RestClient.Builder loadBalancedBuilder,
-            @Qualifier("nonLoadBalancedRestClientBuilder") RestClient.Builder nonLoadBalancedBuilder,
-            AnalysisResultRepository analysisResultRepository) {
-        this.loadBalancedRestClient = loadBalancedBuilder.build();
-        this.nonLoadBalancedRestClient = nonLoadBalancedBuilder.build();
+            FileStorageClient fileStorageClient,
+            AnalysisResultRepository analysisResultRepository,
+            SimilarityService similarityService,
+            FingerprintService fingerprintService,
+            SearchService searchService,
+            TermVectorService termVectorService,
+            Tokenizer tokenizer,
+            TextStatisticsScanner textStatisticsScanner,
+            WordCloudService wordCloudService,
+            Cache<UUID, AnalysisResultDto> analysisResultCache,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            ObjectMapper objectMapper,
+            @Value("${analysis.batch.max-files:1000}") int batchMaxFiles,
+            @Value("${analysis.batch.parallelism:0}") int batchParallelism,
+            @Value("${analysis.listing.max-limit:1000}") int listingMaxLimit,
+            @Value("${analysis.listing.export-batch-size:1000}") int exportBatchSize) {
+        this.fileStorageClient = fileStorageClient;
         this.analysisResultRepository = analysisResultRepository;
+        this.similarityService = similarityService;
+        this.fingerprintService = fingerprintService;
+        this.searchService = searchService;
+        this.termVectorService = termVectorService;
+        this.tokenizer = tokenizer;
+        this.textStatisticsScanner = textStatisticsScanner;
+        this.wordCloudService = wordCloudService;
+        this.resultCache = analysisResultCache;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        this.documentSize = DistributionSummary.builder("analysis.document.size")
+                .description("Size of analyzed documents")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.batchMaxFiles = batchMaxFiles;
+        this.batchParallelism = batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors();
+        this.listingMaxLimit = listingMaxLimit;
+        this.exportBatchSize = Math.max(1, exportBatchSize);
     }
 
+    /**
+     * Returns the analysis of the file, computing it if needed. Concurrent calls for the same file on this
+     * instance wait for a single computation. Across instances the result is inserted only if absent, so
+     * an instance that loses the race returns the stored result and discards its own.
+     */
     public AnalysisResultDto analyzeFile(UUID fileId) {
-        if (analysisResultRepository.existsByFileId(fileId)) {
-            AnalysisResultEntity result = analysisResultRepository.findByFileId(fileId)
-                    .orElseThrow(() -> new AnalysisNotFoundException("Existing analysis result not found by file ID: " + fileId));
-            return mapToDto(result);
+        Optional<AnalysisResultDto> existing = findAnalysis(fileId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        CompletableFuture<AnalysisResultDto> flight = new CompletableFuture<>();
+        CompletableFuture<AnalysisResultDto> running = inFlight.putIfAbsent(fileId, flight);
+        if (running != null) {
+            return await(running);
         }
 
         try {
-            String content = fetchFileContent(fileId);
+            AnalysisResultDto result = computeAndStore(fileId);
+            resultCache.put(fileId, result);
+            flight.complete(result);
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+        } finally {
+            inFlight.remove(fileId, flight);
+        }
+        return await(flight);
+    }
 
-            if (content == null || content.isBlank()) {
-                throw new IllegalArgumentException("File content is empty or not found for ID: " + fileId);
+    /**
+     * Analyzes several files at once. Files that already have results are looked up with one query,
+     * the contents of the rest are fetched with one request to the bulk endpoint of the storage service
+     * and analyzed in parallel while the response is still being read. New results are stored with
+     * batched inserts. Files that could not be analyzed are reported in {@code errors}.
+     */
+    public BatchAnalysisResultDto analyzeBatch(List<UUID> fileIds) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            throw new FileAnalysisException("No file IDs to analyze");
+        }
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(fileIds));
+        if (ids.size() > batchMaxFiles) {
+            throw new FileAnalysisException("Too many files in batch: " + ids.size() + ", maximum is " + batchMaxFiles);
+        }
+
+        Map<UUID, AnalysisResultDto> results = new HashMap<>(resultCache.getAllPresent(ids));
+        List<UUID> uncached = ids.stream().filter(id -> !results.containsKey(id)).toList();
+        if (!uncached.isEmpty()) {
+            for (AnalysisResultEntity entity : analysisResultRepository.findAllByFileIdIn(uncached)) {
+                results.put(entity.getFileId(), mapToDto(entity));
             }
+        }
+
+        List<UUID> missing = ids.stream().filter(id -> !results.containsKey(id)).toList();
+        Map<UUID, String> errors = new ConcurrentHashMap<>();
 
-            int paragraphsCount = countParagraphs(content);
-            int wordsCount = countWords(content);
-            int symbolsCount = content.length();
-            String wordCloudUrl = generateWordCloudUrl(content);
+        if (!missing.isEmpty()) {
+            Queue<ComputedAnalysis> computed = new ConcurrentLinkedQueue<>();
+            Semaphore permits = new Semaphore(batchParallelism);
 
-            AnalysisResultEntity entity = AnalysisResultEntity.builder()
-                    .fileId(fileId)
-                    .paragraphsCount(paragraphsCount)
-                    .wordsCount(wordsCount)
-                    .symbolsCount(symbolsCount)
-                    .wordCloudUrl(wordCloudUrl)
-                    .build();
+            // Acquiring a permit before submitting also stops reading the response while all workers are
+            // busy, so at most batchParallelism contents are held in memory at a time.
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                fileStorageClient.fetchFileContents(missing, (fileId, bytes) -> {
+                    if (bytes == null) {
+                        errors.put(fileId, "File not found");
+                        return;
+                    }
+                    permits.acquireUninterruptibly();
+                    executor.execute(() -> {
+                        try {
+                            computed.add(computeAnalysis(fileId, bytes));
+                        } catch (Exception e) {
+                            log.error("Error analyzing file with ID: {}", fileId, e);
+                            errors.put(fileId, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                });
+            }
 
-            analysisResultRepository.save(entity);
+            List<ComputedAnalysis> stored;
+            try {
+                stored = persist(new ArrayList<>(computed));
+            } catch (Exception e) {
+                log.error("Error saving batch analysis results", e);
+                throw new FileAnalysisException("Failed to save analysis results", e);
+            }
+            for (ComputedAnalysis analysis : stored) {
+                results.put(analysis.result().getFileId(), mapToDto(analysis.result()));
+            }
+            if (stored.size() < computed.size()) {
+                List<UUID> raced = computed.stream()
+                        .map(analysis -> analysis.result().getFileId())
+                        .filter(id -> !results.containsKey(id))
+                        .toList();
+                for (AnalysisResultEntity entity : analysisResultRepository.findAllByFileIdIn(raced)) {
+                    results.put(entity.getFileId(), mapToDto(entity));
+                }
+            }
+        }
 
-            return mapToDto(entity);
+        resultCache.putAll(results);
+        return BatchAnalysisResultDto.builder()
+                .results(ids.stream().filter(results::containsKey).map(results::get).toList())
+                .errors(errors)
+                .build();
+    }
 
-        } catch (Exception e) {
-            log.error("Error analyzing file with ID: {}", fileId, e);
-            throw new FileAnalysisException("Failed to analyze file", e);
+    /**
+     * Looks the result up in the cache first; a miss costs a single query and fills the cache.
+     */
+    public Optional<AnalysisResultDto> findAnalysis(UUID fileId) {
+        AnalysisResultDto cached = resultCache.getIfPresent(fileId);
+        if (cached != null) {
+            return Optional.of(cached);
         }
+
+        Optional<AnalysisResultDto> result = analysisResultRepository.findByFileId(fileId).map(this::mapToDto);
+        result.ifPresent(dto -> resultCache.put(fileId, dto));
+        return result;
     }
 
     public Boolean isAnalysisExists(UUID fileId) {
-        return analysisResultRepository.existsByFileId(fileId);
+        return resultCache.getIfPresent(fileId) != null || analysisResultRepository.existsByFileId(fileId);
+    }
+
+    /**
+     * Returns up to {@code limit} results after the cursor, oldest first, without their word clouds. The
+     * next cursor is null on the last page.
+     */
+    public AnalysisPageDto listAnalyses(String cursor, int limit) {
+        if (limit < 1 || limit > listingMaxLimit) {
+            throw new InvalidRequestException("Limit must be between 1 and " + listingMaxLimit + ": " + limit);
+        }
+        List<AnalysisResultSummary> page = findSummaryPage(parseCursor(cursor), limit);
+
+        return AnalysisPageDto.builder()
+                .results(page.stream().map(this::mapToDto).toList())
+                .nextCursor(page.size() < limit ? null : cursor(page.get(page.size() - 1)).encode())
+                .build();
+    }
+
+    /**
+     * Returns null for a missing cursor, i.e. the start of the listing.
+     */
+    public ListCursor parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        ListCursor parsed = ListCursor.decode(cursor);
+        if (parsed == null) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+        return parsed;
+    }
+
+    /**
+     * Writes every result after the cursor as one JSON line, oldest first, reading and flushing one page
+     * at a time so that memory use does not grow with the table.
+     */
+    public void exportAnalyses(ListCursor after, OutputStream out) throws IOException {
+        while (true) {
+            List<AnalysisResultSummary> page = findSummaryPage(after, exportBatchSize);
+            for (AnalysisResultSummary summary : page) {
+                out.write(objectMapper.writeValueAsBytes(mapToDto(summary)));
+                out.write('\n');
+            }
+            out.flush();
+            if (page.size() < exportBatchSize) {
+                return;
+            }
+            after = cursor(page.get(page.size() - 1));
+        }
     }
 
     public void deleteAnalysis(UUID fileId) {
-        AnalysisResultEntity result = analysisResultRepository.findByFileId(fileId)
-                .orElseThrow(() -> new AnalysisNotFoundException("Analysis result not found with file ID: " + fileId));
-        analysisResultRepository.delete(result);
+        if (!deleteAnalysisIfExists(fileId)) {
+            throw new AnalysisNotFoundException("Analysis result not found with file ID: " + fileId);
+        }
+    }
+
+    /**
+     * Deletes the result and everything derived from it in one transaction, joining the caller's if there
+     * is one, and returns false if there is no result. The cache and the on-disk search index cannot take
+     * part in the transaction and are only updated once it has committed. The lookup goes to the database:
+     * a cached result may outlive its row.
+     */
+    public boolean deleteAnalysisIfExists(UUID fileId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            afterCommit(() -> {
+                resultCache.invalidate(fileId);
+                searchService.remove(fileId);
+            });
+
+            Optional<AnalysisResultEntity> result = analysisResultRepository.findByFileId(fileId);
+            if (result.isEmpty()) {
+                return false;
+            }
+            analysisResultRepository.delete(result.get());
+            similarityService.remove(fileId);
+            fingerprintService.remove(fileId);
+            termVectorService.remove(fileId);
+            wordCloudService.delete(fileId);
+            return true;
+        }));
     }
 
-    private String fetchFileContent(UUID fileId) {
+    private AnalysisResultDto computeAndStore(UUID fileId) {
         try {
-            return loadBalancedRestClient.get()
-                    .uri(FILE_STORAGE_API_URL, fileId)
-                    .retrieve()
-                    .body(String.class);
+            byte[] bytes = timed("fetch", () -> fileStorageClient.fetchFileContent(fileId));
+            if (bytes == null) {
+                throw new IllegalArgumentException("File content is empty or not found for ID: " + fileId);
+            }
+
+            ComputedAnalysis analysis = computeAnalysis(fileId, bytes);
+            if (persist(List.of(analysis)).isEmpty()) {
+                return findAnalysis(fileId)
+                        .orElseThrow(() -> new AnalysisNotFoundException("Existing analysis result not found by file ID: " + fileId));
+            }
+
+            return mapToDto(analysis.result());
+
         } catch (Exception e) {
-            log.error("Error fetching file content from file-storage-service for ID: {}", fileId, e);
-            throw new FileAnalysisException("Failed to fetch file content from file-storage-service", e);
+            log.error("Error analyzing file with ID: {}", fileId, e);
+            throw new FileAnalysisException("Failed to analyze file", e);
+        }
+    }
+
+    private static AnalysisResultDto await(CompletableFuture<AnalysisResultDto> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
-    private String generateWordCloudUrl(String text) {
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("text", text);
-        requestBody.put("maxNumWords", 100);
-        requestBody.put("backgroundColor", "#ffffff");
-        requestBody.put("fontFamily", "sans-serif");
-        requestBody.put("removeStopwords", true);
-        requestBody.put("cleanWords", true);
-        requestBody.put("language", "en");
-        requestBody.put("minWordLength", 3);
+    private ComputedAnalysis computeAnalysis(UUID fileId, byte[] bytes) {
+        String content = new String(bytes, StandardCharsets.UTF_8);
+        if (content.isBlank()) {
+            throw new IllegalArgumentException("File content is empty or not found for ID: " + fileId);
+        }
+
+        documentSize.record(bytes.length);
+
+        TextStatistics statistics = timed("statistics", () -> textStatisticsScanner.scan(bytes));
+        List<String> tokens = timed("tokenize", () -> tokenizer.tokens(content));
+        TermVector vector = timed("term-vector", () -> termVectorService.vectorize(tokens));
+        RenderedWordCloud wordCloud = timed("word-cloud", () -> renderWordCloud(fileId, content, vector));
 
+        AnalysisResultEntity entity = AnalysisResultEntity.builder()
+                .fileId(fileId)
+                .paragraphsCount(statistics.paragraphsCount())
+                .wordsCount(statistics.wordsCount())
+                .symbolsCount(statistics.symbolsCount())
+                .wordCloudUrl(wordCloud.url())
+                .build();
+
+        return new ComputedAnalysis(
+                entity,
+                wordCloud.entity(),
+                termVectorService.prepare(fileId, vector),
+                timed("minhash", () -> similarityService.prepare(fileId, content)),
+                timed("fingerprints", () -> fingerprintService.prepare(fileId, content)),
+                timed("search", () -> searchService.prepare(fileId, tokens)));
+    }
+
+    /**
+     * The word cloud is not worth failing the analysis for: without it the result is stored with a null
+     * {@code wordCloudUrl}, which {@link WordCloudBackfillService} fills in later.
+     */
+    private RenderedWordCloud renderWordCloud(UUID fileId, String content, TermVector vector) {
         try {
-            return nonLoadBalancedRestClient.post()
-                    .uri(WORD_CLOUD_API_URL)
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(requestBody)
-                    .retrieve()
-                    .body(String.class);
-        } catch (Exception e) {
-            log.error("Error generating word cloud for text: {}", text.substring(0, Math.min(text.length(), 50)), e);
-            throw new FileAnalysisException("Failed to generate word cloud", e);
+            return wordCloudService.render(fileId, content, vector);
+        } catch (RuntimeException e) {
+            log.warn("Storing analysis of file ID {} without word cloud: {}", fileId, e.getMessage());
+            return new RenderedWordCloud(null, null);
         }
     }
 
-    private int countParagraphs(String content) {
-        return (int) Arrays.stream(content.split("\n"))
-                .filter(line -> !line.trim().isEmpty())
-                .count();
+    /**
+     * Stores the analyses whose result was not already stored by a concurrent caller and returns them.
+     * The word cloud, term vector, signature, fingerprints and search document of the others are dropped, as they belong
+     * to the stored result.
+     * <p>
+     * The result and its derived rows are written in one transaction, so a failure leaves no result without
+     * them. The on-disk search index cannot take part in it and is only given committed results; a document
+     * lost in between is picked up by the catch-up on the next start.
+     */
+    private List<ComputedAnalysis> persist(List<ComputedAnalysis> analyses) {
+        return timed("persist", () -> store(analyses));
     }
 
-    private int countWords(String content) {
-        return content.trim().isEmpty() ? 0 : content.trim().split("\\s+").length;
+    private List<ComputedAnalysis> store(List<ComputedAnalysis> analyses) {
+        List<ComputedAnalysis> stored = transactionTemplate.execute(status -> insert(analyses));
+        searchService.indexAll(stored.stream().map(ComputedAnalysis::document).toList());
+        return stored;
+    }
+
+    private List<ComputedAnalysis> insert(List<ComputedAnalysis> analyses) {
+        boolean[] inserted = analysisResultRepository.insertIfAbsent(
+                analyses.stream().map(ComputedAnalysis::result).toList());
+
+        List<ComputedAnalysis> stored = new ArrayList<>(analyses.size());
+        List<WordCloudEntity> wordClouds = new ArrayList<>();
+        List<TermVectorEntity> termVectors = new ArrayList<>();
+        List<MinHashSignatureEntity> signatures = new ArrayList<>();
+        List<FingerprintEntity> fingerprints = new ArrayList<>();
+
+        for (int i = 0; i < analyses.size(); i++) {
+            if (!inserted[i]) {
+                continue;
+            }
+            ComputedAnalysis analysis = analyses.get(i);
+            stored.add(analysis);
+            if (analysis.wordCloud() != null) {
+                wordClouds.add(analysis.wordCloud());
+            }
+            termVectors.add(analysis.termVector());
+            if (analysis.signature() != null) {
+                signatures.add(analysis.signature());
+            }
+            fingerprints.addAll(analysis.fingerprints());
+        }
+
+        wordCloudService.saveAll(wordClouds);
+        termVectorService.saveAll(termVectors);
+        similarityService.indexAll(signatures);
+        fingerprintService.indexAll(fingerprints);
+        return stored;
+    }
+
+    /**
+     * Records the duration of one stage of an analysis; failed attempts are recorded as well.
+     */
+    private <T> T timed(String stage, Supplier<T> action) {
+        return Timer.builder("analysis.stage")
+                .description("Time spent in a stage of a file analysis")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(action);
+    }
+
+    private List<AnalysisResultSummary> findSummaryPage(ListCursor after, int limit) {
+        return after == null
+                ? analysisResultRepository.findSummaryPage(PageRequest.of(0, limit))
+                : analysisResultRepository.findSummaryPageAfter(after.createdAt(), after.id(), PageRequest.of(0, limit));
+    }
+
+    private static ListCursor cursor(AnalysisResultSummary summary) {
+        return new ListCursor(summary.getCreatedAt(), summary.getFileId());
+    }
+
+    private AnalysisSummaryDto mapToDto(AnalysisResultSummary summary) {
+        return AnalysisSummaryDto.builder()
+                .fileId(summary.getFileId())
+                .paragraphsCount(summary.getParagraphsCount())
+                .wordsCount(summary.getWordsCount())
+                .symbolsCount(summary.getSymbolsCount())
+                .hasWordCloud(summary.getHasWordCloud())
+                .createdAt(summary.getCreatedAt())
+                .build();
     }
 
     private AnalysisResultDto mapToDto(AnalysisResultEntity entity) {
@@ -136,4 +489,26 @@ public class FileAnalysisService {
                 .wordCloudUrl(entity.getWordCloudUrl())
                 .build();
     }
-}
\ No newline at end of file
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record ComputedAnalysis(
+            AnalysisResultEntity result,
+            WordCloudEntity wordCloud,
+            TermVectorEntity termVector,
+            MinHashSignatureEntity signature,
+            List<FingerprintEntity> fingerprints,
+            IndexedDocument document) {
+    }
+}
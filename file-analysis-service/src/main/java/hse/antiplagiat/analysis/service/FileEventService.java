@@ -0,0 +1,69 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.FileEventDto;
+import hse.antiplagiat.analysis.exception.AnalysisOverloadedException;
+import hse.antiplagiat.analysis.model.FileEventType;
+import hse.antiplagiat.analysis.repository.FileEventOffsetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies file events relayed by file-storage-service: stored files are queued for analysis ahead of
+ * the first request, deleted files lose their analysis. Events are delivered at least once and may
+ * arrive out of order, so each file remembers the last event applied and older or repeated events are
+ * ignored.
+ */
+@Service
+public class FileEventService {
+    private final FileEventOffsetRepository fileEventOffsetRepository;
+    private final AnalysisJobService analysisJobService;
+    private final FileAnalysisService fileAnalysisService;
+    private final long maxQueuedJobs;
+
+    private static final Logger log = LoggerFactory.getLogger(FileEventService.class);
+
+    public FileEventService(
+            FileEventOffsetRepository fileEventOffsetRepository,
+            AnalysisJobService analysisJobService,
+            FileAnalysisService fileAnalysisService,
+            @Value("${analysis.events.max-queued-jobs:1000}") long maxQueuedJobs) {
+        this.fileEventOffsetRepository = fileEventOffsetRepository;
+        this.analysisJobService = analysisJobService;
+        this.fileAnalysisService = fileAnalysisService;
+        this.maxQueuedJobs = maxQueuedJobs;
+    }
+
+    /**
+     * Applies the events in event order. While the job queue is longer than {@code max-queued-jobs}
+     * the batch is refused, so it stays in the storage outbox until the workers catch up.
+     */
+    @Transactional
+    public void apply(List<FileEventDto> events) {
+        boolean queuesJobs = events.stream().anyMatch(event -> event.getType() == FileEventType.STORED);
+        if (queuesJobs && analysisJobService.queueDepth() >= maxQueuedJobs) {
+            throw new AnalysisOverloadedException("Analysis queue is full, retry later");
+        }
+
+        for (FileEventDto event : events.stream().sorted(Comparator.comparingLong(FileEventDto::getEventId)).toList()) {
+            List<Boolean> deleted = fileEventOffsetRepository.advance(
+                    event.getFileId(), event.getEventId(), event.getType() == FileEventType.DELETED);
+            if (deleted.isEmpty()) {
+                log.debug("Ignoring repeated or outdated event {} for file {}", event.getEventId(), event.getFileId());
+                continue;
+            }
+
+            if (deleted.get(0)) {
+                analysisJobService.cancel(event.getFileId());
+                fileAnalysisService.deleteAnalysisIfExists(event.getFileId());
+            } else if (!fileAnalysisService.isAnalysisExists(event.getFileId())) {
+                analysisJobService.submit(event.getFileId());
+            }
+        }
+    }
+}
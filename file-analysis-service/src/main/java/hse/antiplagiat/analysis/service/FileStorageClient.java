@@ -0,0 +1,129 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.exception.FileAnalysisException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads file contents from file-storage-service for the analysis and the search index.
+ */
+@Service
+public class FileStorageClient {
+    private final RestClient loadBalancedRestClient;
+
+    private static final Logger log = LoggerFactory.getLogger(FileStorageClient.class);
+
+    private static final String FILE_STORAGE_API_URL = "http://FILE-STORAGE-SERVICE/api/files/{fileId}";
+    private static final String FILE_STORAGE_BULK_API_URL = "http://FILE-STORAGE-SERVICE/api/files/bulk";
+    private static final String DEFLATE = "deflate";
+
+    public FileStorageClient(@Qualifier("loadBalancedRestClientBuilder") RestClient.Builder loadBalancedBuilder) {
+        this.loadBalancedRestClient = loadBalancedBuilder.build();
+    }
+
+    /**
+     * Reads the response body straight from the stream into an array of the announced length instead of
+     * letting a message converter buffer and copy it.
+     * <p>
+     * The JDK HTTP client neither advertises nor decodes any content coding, so {@code deflate} is asked
+     * for here and inflated by hand. Storage passes files compressed without a dictionary through as they
+     * are stored, a zlib stream; the announced length is then that of the compressed body and the decoded
+     * size is unknown.
+     */
+    public byte[] fetchFileContent(UUID fileId) {
+        try {
+            return loadBalancedRestClient.get()
+                    .uri(FILE_STORAGE_API_URL, fileId)
+                    .header(HttpHeaders.ACCEPT_ENCODING, DEFLATE)
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new IOException("File content request failed with status " + response.getStatusCode());
+                        }
+
+                        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+                        if (encoding != null && !encoding.equalsIgnoreCase("identity")) {
+                            if (!encoding.equalsIgnoreCase(DEFLATE)) {
+                                throw new IOException("Unexpected content encoding " + encoding + " for file " + fileId);
+                            }
+                            try (InputStream body = new InflaterInputStream(response.getBody())) {
+                                return body.readAllBytes();
+                            }
+                        }
+
+                        long length = response.getHeaders().getContentLength();
+                        try (InputStream body = response.getBody()) {
+                            if (length < 0) {
+                                return body.readAllBytes();
+                            }
+                            if (length > Integer.MAX_VALUE - 8) {
+                                throw new IOException("File is too large to analyze: " + fileId);
+                            }
+                            byte[] content = body.readNBytes((int) length);
+                            if (content.length != length) {
+                                throw new EOFException("File content ended after " + content.length + " of " + length + " bytes");
+                            }
+                            return content;
+                        }
+                    });
+        } catch (Exception e) {
+            log.error("Error fetching file content from file-storage-service for ID: {}", fileId, e);
+            throw new FileAnalysisException("Failed to fetch file content from file-storage-service", e);
+        }
+    }
+
+    /**
+     * Reads the length-prefixed stream of the bulk endpoint and passes every file to the consumer as soon
+     * as its content has been read. Missing files are passed with {@code null} content.
+     */
+    public void fetchFileContents(List<UUID> fileIds, BiConsumer<UUID, byte[]> consumer) {
+        try {
+            loadBalancedRestClient.post()
+                    .uri(FILE_STORAGE_BULK_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(fileIds)
+                    .exchange((request, response) -> {
+                        if (response.getStatusCode().isError()) {
+                            throw new IOException("Bulk content request failed with status " + response.getStatusCode());
+                        }
+
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(response.getBody()));
+                        for (int i = 0; i < fileIds.size(); i++) {
+                            UUID fileId = new UUID(in.readLong(), in.readLong());
+                            long length = in.readLong();
+                            if (length < 0) {
+                                consumer.accept(fileId, null);
+                                continue;
+                            }
+                            if (length > Integer.MAX_VALUE - 8) {
+                                throw new IOException("File is too large to analyze: " + fileId);
+                            }
+
+                            byte[] content = in.readNBytes((int) length);
+                            if (content.length != length) {
+                                throw new EOFException("Bulk content stream ended inside file " + fileId);
+                            }
+                            consumer.accept(fileId, content);
+                        }
+                        return null;
+                    });
+        } catch (Exception e) {
+            log.error("Error fetching file contents from file-storage-service for {} files", fileIds.size(), e);
+            throw new FileAnalysisException("Failed to fetch file contents from file-storage-service", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.MatchReportDto;
+import hse.antiplagiat.analysis.dto.MatchSpanDto;
+import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
+import hse.antiplagiat.analysis.model.FingerprintEntity;
+import hse.antiplagiat.analysis.repository.FingerprintRepository;
+import hse.antiplagiat.analysis.repository.FingerprintRepository.FingerprintMatch;
+import hse.antiplagiat.analysis.similarity.Winnower;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class FingerprintService {
+    private final Winnower winnower;
+    private final FingerprintRepository fingerprintRepository;
+
+    public List<FingerprintEntity> prepare(UUID fileId, String content) {
+        return winnower.fingerprints(content).stream()
+                .map(fingerprint -> FingerprintEntity.builder()
+                        .fileId(fileId)
+                        .startOffset(fingerprint.start())
+                        .endOffset(fingerprint.end())
+                        .hash(fingerprint.hash())
+                        .build())
+                .toList();
+    }
+
+    @Transactional
+    public void indexAll(List<FingerprintEntity> fingerprints) {
+        fingerprintRepository.saveAll(fingerprints);
+    }
+
+    @Transactional(readOnly = true)
+    public MatchReportDto compare(UUID sourceId, UUID targetId) {
+        long sourceFingerprints = fingerprintRepository.countByFileId(sourceId);
+        if (sourceFingerprints == 0) {
+            throw new AnalysisNotFoundException("Fingerprints not found with file ID: " + sourceId);
+        }
+        if (fingerprintRepository.countByFileId(targetId) == 0) {
+            throw new AnalysisNotFoundException("Fingerprints not found with file ID: " + targetId);
+        }
+
+        List<FingerprintMatch> matches = fingerprintRepository.findMatches(sourceId, targetId);
+
+        int matchedFingerprints = 0;
+        int lastSourceStart = -1;
+        for (FingerprintMatch match : matches) {
+            if (match.getSourceStart() != lastSourceStart) {
+                matchedFingerprints++;
+                lastSourceStart = match.getSourceStart();
+            }
+        }
+
+        return MatchReportDto.builder()
+                .sourceFileId(sourceId)
+                .targetFileId(targetId)
+                .matchedFingerprints(matchedFingerprints)
+                .sourceCoverage((double) matchedFingerprints / sourceFingerprints)
+                .spans(mergeSpans(matches))
+                .build();
+    }
+
+    public void remove(UUID fileId) {
+        fingerprintRepository.deleteByFileId(fileId);
+    }
+
+    /**
+     * Glues matches sorted by source offset into maximal spans. A match extends an open span when it
+     * overlaps or touches it in both documents; spans that end before the current match can no longer
+     * be extended and are closed.
+     */
+    private List<MatchSpanDto> mergeSpans(List<FingerprintMatch> matches) {
+        List<MatchSpanDto> closed = new ArrayList<>();
+        List<MatchSpanDto> open = new ArrayList<>();
+
+        for (FingerprintMatch match : matches) {
+            open.removeIf(span -> {
+                if (span.getSourceEnd() < match.getSourceStart()) {
+                    closed.add(span);
+                    return true;
+                }
+                return false;
+            });
+
+            MatchSpanDto extended = null;
+            for (MatchSpanDto span : open) {
+                if (match.getTargetStart() >= span.getTargetStart() && match.getTargetStart() <= span.getTargetEnd()) {
+                    extended = span;
+                    break;
+                }
+            }
+
+            if (extended != null) {
+                extended.setSourceEnd(Math.max(extended.getSourceEnd(), match.getSourceEnd()));
+                extended.setTargetEnd(Math.max(extended.getTargetEnd(), match.getTargetEnd()));
+            } else {
+                open.add(MatchSpanDto.builder()
+                        .sourceStart(match.getSourceStart())
+                        .sourceEnd(match.getSourceEnd())
+                        .targetStart(match.getTargetStart())
+                        .targetEnd(match.getTargetEnd())
+                        .build());
+            }
+        }
+
+        closed.addAll(open);
+        closed.sort((a, b) -> a.getSourceStart() != b.getSourceStart()
+                ? Integer.compare(a.getSourceStart(), b.getSourceStart())
+                : Integer.compare(a.getTargetStart(), b.getTargetStart()));
+        return closed;
+    }
+}
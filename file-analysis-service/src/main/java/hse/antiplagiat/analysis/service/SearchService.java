@@ -0,0 +1,142 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.SearchHitDto;
+import hse.antiplagiat.analysis.exception.FileAnalysisException;
+import hse.antiplagiat.analysis.repository.AnalysisResultRepository;
+import hse.antiplagiat.analysis.search.IndexedDocument;
+import hse.antiplagiat.analysis.search.InvertedIndex;
+import hse.antiplagiat.analysis.search.SearchHit;
+import hse.antiplagiat.analysis.search.SearchQuery;
+import hse.antiplagiat.analysis.text.Tokenizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Full-text search over the analyzed files. Every instance keeps its own {@link InvertedIndex} on local
+ * disk: documents are indexed when they are analyzed here, and on startup the files analyzed elsewhere or
+ * lost from the unflushed buffer are fetched from file-storage-service and indexed in the background.
+ * Hits are checked against the stored results, so files deleted through another instance are not returned.
+ */
+@Service
+public class SearchService {
+    private final Tokenizer tokenizer;
+    private final InvertedIndex invertedIndex;
+    private final AnalysisResultRepository analysisResultRepository;
+    private final FileStorageClient fileStorageClient;
+    private final boolean catchUpOnStartup;
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    private static final int CATCH_UP_PAGE_SIZE = 500;
+
+    public SearchService(
+            Tokenizer tokenizer,
+            InvertedIndex invertedIndex,
+            AnalysisResultRepository analysisResultRepository,
+            FileStorageClient fileStorageClient,
+            @Value("${analysis.search.catch-up-on-startup:true}") boolean catchUpOnStartup) {
+        this.tokenizer = tokenizer;
+        this.invertedIndex = invertedIndex;
+        this.analysisResultRepository = analysisResultRepository;
+        this.fileStorageClient = fileStorageClient;
+        this.catchUpOnStartup = catchUpOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startCatchUp() {
+        if (catchUpOnStartup) {
+            Thread.ofVirtual().name("search-index-catch-up").start(this::catchUp);
+        }
+    }
+
+    /**
+     * Groups the tokens of the content without touching the index, so that it can be done in parallel with
+     * the rest of the analysis and the documents added together with {@link #indexAll}.
+     */
+    public IndexedDocument prepare(UUID fileId, List<String> tokens) {
+        return IndexedDocument.of(fileId, tokens);
+    }
+
+    public void indexAll(List<IndexedDocument> documents) {
+        if (!documents.isEmpty()) {
+            invertedIndex.addAll(documents);
+        }
+    }
+
+    public void remove(UUID fileId) {
+        invertedIndex.remove(fileId);
+    }
+
+    /**
+     * Finds the files containing every word and quoted phrase of the query, most occurrences first.
+     */
+    public List<SearchHitDto> search(String query, int limit) {
+        SearchQuery searchQuery = SearchQuery.parse(query == null ? "" : query, tokenizer);
+        if (searchQuery.isEmpty()) {
+            throw new FileAnalysisException("Search query contains no words");
+        }
+
+        // a few spare hits make up for files deleted through other instances
+        List<SearchHit> hits = invertedIndex.search(searchQuery, limit + Math.max(8, limit / 4));
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+
+        Set<UUID> existing = new HashSet<>(analysisResultRepository.findExistingFileIds(
+                hits.stream().map(SearchHit::fileId).toList()));
+        List<SearchHitDto> results = new ArrayList<>(limit);
+        for (SearchHit hit : hits) {
+            if (!existing.contains(hit.fileId())) {
+                invertedIndex.remove(hit.fileId());
+            } else if (results.size() < limit) {
+                results.add(SearchHitDto.builder()
+                        .fileId(hit.fileId())
+                        .matches(hit.matches())
+                        .build());
+            }
+        }
+        return results;
+    }
+
+    private void catchUp() {
+        long indexed = 0;
+        UUID after = new UUID(0, 0);
+        try {
+            while (true) {
+                List<UUID> page = analysisResultRepository.findFileIdsAfter(after, PageRequest.of(0, CATCH_UP_PAGE_SIZE));
+                if (page.isEmpty()) {
+                    break;
+                }
+                after = page.get(page.size() - 1);
+
+                List<UUID> missing = page.stream().filter(fileId -> !invertedIndex.contains(fileId)).toList();
+                if (missing.isEmpty()) {
+                    continue;
+                }
+                List<IndexedDocument> documents = new ArrayList<>(missing.size());
+                fileStorageClient.fetchFileContents(missing, (fileId, bytes) -> {
+                    if (bytes != null) {
+                        documents.add(prepare(fileId, tokenizer.tokens(new String(bytes, StandardCharsets.UTF_8))));
+                    }
+                });
+                indexAll(documents);
+                indexed += documents.size();
+            }
+            log.info("Search index is up to date, indexed {} files on startup", indexed);
+        } catch (Exception e) {
+            log.error("Search index catch-up stopped after {} files, the remaining files are indexed on the next startup", indexed, e);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.dto.SimilarFileDto;
+import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
+import hse.antiplagiat.analysis.model.MinHashSignatureEntity;
+import hse.antiplagiat.analysis.repository.MinHashSignatureRepository;
+import hse.antiplagiat.analysis.similarity.LshIndex;
+import hse.antiplagiat.analysis.similarity.MinHasher;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class SimilarityService {
+    private final MinHasher minHasher;
+    private final LshIndex lshIndex;
+    private final MinHashSignatureRepository signatureRepository;
+    private final EntityManager entityManager;
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarityService.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadIndex() {
+        try (Stream<MinHashSignatureEntity> signatures = signatureRepository.streamAll()) {
+            signatures.forEach(entity -> {
+                lshIndex.add(entity.getFileId(), MinHasher.decode(entity.getSignature()));
+                entityManager.detach(entity);
+            });
+        }
+        log.info("Loaded {} MinHash signatures into the LSH index", lshIndex.size());
+    }
+
+    /**
+     * Computes the signature without touching the index or the database, so that it can be done in
+     * parallel and the results stored together with {@link #indexAll}. Returns null for text without words.
+     */
+    public MinHashSignatureEntity prepare(UUID fileId, String content) {
+        int[] signature = minHasher.signature(content);
+        if (signature == null) {
+            return null;
+        }
+
+        return MinHashSignatureEntity.builder()
+                .fileId(fileId)
+                .signature(MinHasher.encode(signature))
+                .build();
+    }
+
+    /**
+     * Stores the signatures and adds them to the LSH index once the surrounding transaction commits, so the
+     * index never answers with a file whose analysis was rolled back.
+     */
+    public void indexAll(List<MinHashSignatureEntity> signatures) {
+        signatureRepository.saveAll(signatures);
+        afterCommit(() -> {
+            for (MinHashSignatureEntity signature : signatures) {
+                lshIndex.add(signature.getFileId(), MinHasher.decode(signature.getSignature()));
+            }
+        });
+    }
+
+    public List<SimilarFileDto> findSimilar(UUID fileId, int limit) {
+        int[] signature = lshIndex.getSignature(fileId);
+        if (signature == null) {
+            MinHashSignatureEntity entity = signatureRepository.findById(fileId)
+                    .orElseThrow(() -> new AnalysisNotFoundException("Similarity signature not found with file ID: " + fileId));
+            signature = MinHasher.decode(entity.getSignature());
+            lshIndex.add(fileId, signature);
+        }
+
+        return lshIndex.query(signature, fileId, limit).stream()
+                .map(candidate -> SimilarFileDto.builder()
+                        .fileId(candidate.fileId())
+                        .similarity(candidate.similarity())
+                        .build())
+                .toList();
+    }
+
+    public void remove(UUID fileId) {
+        if (signatureRepository.existsById(fileId)) {
+            signatureRepository.deleteById(fileId);
+        }
+        afterCommit(() -> lshIndex.remove(fileId));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.model.TermVectorEntity;
+import hse.antiplagiat.analysis.repository.TermVectorRepository;
+import hse.antiplagiat.analysis.text.TermDictionary;
+import hse.antiplagiat.analysis.text.TermVector;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Term frequencies of every analyzed file, stored next to the analysis result so that word clouds and
+ * cohort comparisons can be computed again without fetching and tokenizing the file.
+ */
+@Service
+public class TermVectorService {
+    private final TermDictionary termDictionary;
+    private final TermVectorRepository termVectorRepository;
+
+    public TermVectorService(TermDictionary termDictionary, TermVectorRepository termVectorRepository) {
+        this.termDictionary = termDictionary;
+        this.termVectorRepository = termVectorRepository;
+    }
+
+    public TermVector vectorize(List<String> tokens) {
+        return TermVector.of(termDictionary.ids(tokens));
+    }
+
+    public TermVectorEntity prepare(UUID fileId, TermVector vector) {
+        return TermVectorEntity.builder()
+                .fileId(fileId)
+                .vector(vector.encode())
+                .build();
+    }
+
+    public void saveAll(List<TermVectorEntity> vectors) {
+        termVectorRepository.saveAll(vectors);
+    }
+
+    /**
+     * Returns the stored vectors of the files that have one.
+     */
+    public Map<UUID, TermVector> findAll(Collection<UUID> fileIds) {
+        Map<UUID, TermVector> vectors = new HashMap<>();
+        for (TermVectorEntity entity : termVectorRepository.findAllById(fileIds)) {
+            vectors.put(entity.getFileId(), TermVector.decode(entity.getVector()));
+        }
+        return vectors;
+    }
+
+    public String[] terms(TermVector vector) {
+        return termDictionary.terms(vector.terms());
+    }
+
+    public void remove(UUID fileId) {
+        if (termVectorRepository.existsById(fileId)) {
+            termVectorRepository.deleteById(fileId);
+        }
+    }
+}
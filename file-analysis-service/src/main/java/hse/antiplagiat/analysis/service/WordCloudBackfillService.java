@@ -0,0 +1,119 @@
+package hse.antiplagiat.analysis.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import hse.antiplagiat.analysis.repository.AnalysisResultRepository;
+import hse.antiplagiat.analysis.service.WordCloudService.RenderedWordCloud;
+import hse.antiplagiat.analysis.text.TermVector;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Renders the word clouds of results stored without one because the word cloud engine failed during the
+ * analysis. A round stops early while the circuit breaker of the engine is open. The local engine renders
+ * from the stored term vectors, so only files analyzed before they were stored are fetched.
+ */
+@Service
+public class WordCloudBackfillService {
+    private final AnalysisResultRepository analysisResultRepository;
+    private final WordCloudService wordCloudService;
+    private final TermVectorService termVectorService;
+    private final FileStorageClient fileStorageClient;
+    private final Cache<UUID, AnalysisResultDto> resultCache;
+    private final int batchSize;
+
+    private static final Logger log = LoggerFactory.getLogger(WordCloudBackfillService.class);
+
+    public WordCloudBackfillService(
+            AnalysisResultRepository analysisResultRepository,
+            WordCloudService wordCloudService,
+            TermVectorService termVectorService,
+            FileStorageClient fileStorageClient,
+            Cache<UUID, AnalysisResultDto> analysisResultCache,
+            @Value("${analysis.word-cloud.backfill.batch-size:50}") int batchSize) {
+        this.analysisResultRepository = analysisResultRepository;
+        this.wordCloudService = wordCloudService;
+        this.termVectorService = termVectorService;
+        this.fileStorageClient = fileStorageClient;
+        this.resultCache = analysisResultCache;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Scheduled(
+            initialDelayString = "${analysis.word-cloud.backfill.interval-ms:60000}",
+            fixedDelayString = "${analysis.word-cloud.backfill.interval-ms:60000}")
+    public void backfill() {
+        List<UUID> fileIds = analysisResultRepository.findFileIdsWithoutWordCloud(PageRequest.of(0, batchSize));
+        if (fileIds.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger filled = new AtomicInteger();
+        try {
+            List<UUID> unvectorized = fileIds;
+            if (wordCloudService.rendersFromTermVectors()) {
+                Map<UUID, TermVector> vectors = termVectorService.findAll(fileIds);
+                vectors.forEach((fileId, vector) -> {
+                    if (backfill(fileId, () -> wordCloudService.render(fileId, null, vector))) {
+                        filled.incrementAndGet();
+                    }
+                });
+                unvectorized = fileIds.stream().filter(fileId -> !vectors.containsKey(fileId)).toList();
+            }
+            if (!unvectorized.isEmpty()) {
+                fileStorageClient.fetchFileContents(unvectorized, (fileId, bytes) -> {
+                    String content = bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+                    if (content != null && backfill(fileId, () -> wordCloudService.render(fileId, content))) {
+                        filled.incrementAndGet();
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            log.warn("Word cloud backfill stopped after {} of {} files: {}", filled.get(), fileIds.size(), e.getMessage());
+            return;
+        }
+        log.info("Backfilled word clouds of {} of {} files", filled.get(), fileIds.size());
+    }
+
+    private boolean backfill(UUID fileId, Supplier<RenderedWordCloud> render) {
+        try {
+            RenderedWordCloud wordCloud = render.get();
+            if (wordCloud.entity() != null) {
+                wordCloudService.saveAll(List.of(wordCloud.entity()));
+            }
+            if (analysisResultRepository.setMissingWordCloudUrl(fileId, wordCloud.url()) == 0) {
+                return false;
+            }
+        } catch (RuntimeException e) {
+            if (isRejected(e)) {
+                throw e;
+            }
+            log.warn("Word cloud backfill failed for file ID {}: {}", fileId, e.getMessage());
+            return false;
+        }
+        resultCache.invalidate(fileId);
+        return true;
+    }
+
+    private static boolean isRejected(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
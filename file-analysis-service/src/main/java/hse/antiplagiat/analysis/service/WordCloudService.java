@@ -0,0 +1,174 @@
+package hse.antiplagiat.analysis.service;
+
+import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
+import hse.antiplagiat.analysis.exception.FileAnalysisException;
+import hse.antiplagiat.analysis.model.WordCloudEntity;
+import hse.antiplagiat.analysis.repository.WordCloudRepository;
+import hse.antiplagiat.analysis.text.TermVector;
+import hse.antiplagiat.analysis.wordcloud.WordCloudLayout;
+import hse.antiplagiat.analysis.wordcloud.WordCloudLayout.PlacedWord;
+import hse.antiplagiat.analysis.wordcloud.WordCloudOptions;
+import hse.antiplagiat.analysis.wordcloud.WordCloudRenderer;
+import hse.antiplagiat.analysis.wordcloud.WordFrequencyCounter;
+import hse.antiplagiat.analysis.wordcloud.WordFrequencyCounter.WordCount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+@Service
+public class WordCloudService {
+    private final RestClient nonLoadBalancedRestClient;
+    private final WordFrequencyCounter wordFrequencyCounter;
+    private final WordCloudLayout wordCloudLayout;
+    private final WordCloudRenderer wordCloudRenderer;
+    private final WordCloudRepository wordCloudRepository;
+    private final TermVectorService termVectorService;
+    private final String engine;
+    private final String remoteUrl;
+    private final boolean renderPng;
+
+    private static final Logger log = LoggerFactory.getLogger(WordCloudService.class);
+
+    private static final String WORD_CLOUD_SVG_URL = "/api/analysis/%s/word-cloud.svg";
+
+    public WordCloudService(
+            @Qualifier("nonLoadBalancedRestClientBuilder") RestClient.Builder nonLoadBalancedBuilder,
+            WordFrequencyCounter wordFrequencyCounter,
+            WordCloudLayout wordCloudLayout,
+            WordCloudRenderer wordCloudRenderer,
+            WordCloudRepository wordCloudRepository,
+            TermVectorService termVectorService,
+            @Value("${analysis.word-cloud.engine:local}") String engine,
+            @Value("${analysis.word-cloud.remote-url:https://quickchart.io/wordcloud}") String remoteUrl,
+            @Value("${analysis.word-cloud.render-png:true}") boolean renderPng) {
+        this.nonLoadBalancedRestClient = nonLoadBalancedBuilder.build();
+        this.wordFrequencyCounter = wordFrequencyCounter;
+        this.wordCloudLayout = wordCloudLayout;
+        this.wordCloudRenderer = wordCloudRenderer;
+        this.wordCloudRepository = wordCloudRepository;
+        this.termVectorService = termVectorService;
+        this.engine = engine;
+        this.remoteUrl = remoteUrl;
+        this.renderPng = renderPng;
+    }
+
+    /**
+     * Builds the word cloud of the text. The value for {@code wordCloudUrl} is the URL of the locally
+     * rendered SVG, or the SVG returned by QuickChart when the remote engine is configured; storing the
+     * rendered images is left to the caller, see {@link #saveAll}.
+     */
+    public RenderedWordCloud render(UUID fileId, String text) {
+        WordCloudOptions options = WordCloudOptions.builder().build();
+        return "remote".equals(engine)
+                ? new RenderedWordCloud(generateRemote(text, options), null)
+                : renderLocal(fileId, () -> wordFrequencyCounter.count(text, options), options);
+    }
+
+    /**
+     * Same as {@link #render(UUID, String)}, but the local engine counts words from the term vector of the
+     * text instead of splitting the text again. {@code text} may be null if {@link #rendersFromTermVectors()}.
+     */
+    public RenderedWordCloud render(UUID fileId, String text, TermVector vector) {
+        WordCloudOptions options = WordCloudOptions.builder().build();
+        if (!rendersFromTermVectors(options)) {
+            return render(fileId, text);
+        }
+        return renderLocal(fileId,
+                () -> wordFrequencyCounter.count(termVectorService.terms(vector), vector.counts(), options), options);
+    }
+
+    /**
+     * Whether word clouds can be rendered from term vectors alone, without the text.
+     */
+    public boolean rendersFromTermVectors() {
+        return rendersFromTermVectors(WordCloudOptions.builder().build());
+    }
+
+    public void saveAll(List<WordCloudEntity> wordClouds) {
+        wordCloudRepository.saveAll(wordClouds);
+    }
+
+    public String getSvg(UUID fileId) {
+        return findWordCloud(fileId).getSvg();
+    }
+
+    public byte[] getPng(UUID fileId) {
+        byte[] png = findWordCloud(fileId).getPng();
+        if (png == null) {
+            throw new AnalysisNotFoundException("PNG word cloud not found with file ID: " + fileId);
+        }
+        return png;
+    }
+
+    public void delete(UUID fileId) {
+        if (wordCloudRepository.existsById(fileId)) {
+            wordCloudRepository.deleteById(fileId);
+        }
+    }
+
+    private boolean rendersFromTermVectors(WordCloudOptions options) {
+        return !"remote".equals(engine) && options.isCleanWords();
+    }
+
+    private RenderedWordCloud renderLocal(UUID fileId, Supplier<List<WordCount>> counts, WordCloudOptions options) {
+        try {
+            List<PlacedWord> words = wordCloudLayout.layout(counts.get(), options);
+
+            WordCloudEntity entity = WordCloudEntity.builder()
+                    .fileId(fileId)
+                    .svg(wordCloudRenderer.renderSvg(words, options))
+                    .png(renderPng ? wordCloudRenderer.renderPng(words, options) : null)
+                    .build();
+
+            return new RenderedWordCloud(WORD_CLOUD_SVG_URL.formatted(fileId), entity);
+        } catch (Exception e) {
+            log.error("Error rendering word cloud for file ID: {}", fileId, e);
+            throw new FileAnalysisException("Failed to generate word cloud", e);
+        }
+    }
+
+    private String generateRemote(String text, WordCloudOptions options) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("text", text);
+        requestBody.put("maxNumWords", options.getMaxNumWords());
+        requestBody.put("backgroundColor", options.getBackgroundColor());
+        requestBody.put("fontFamily", options.getFontFamily());
+        requestBody.put("removeStopwords", options.isRemoveStopwords());
+        requestBody.put("cleanWords", options.isCleanWords());
+        requestBody.put("language", options.getLanguage());
+        requestBody.put("minWordLength", options.getMinWordLength());
+
+        try {
+            return nonLoadBalancedRestClient.post()
+                    .uri(remoteUrl)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(requestBody)
+                    .retrieve()
+                    .body(String.class);
+        } catch (Exception e) {
+            log.error("Error generating word cloud for text: {}", text.substring(0, Math.min(text.length(), 50)), e);
+            throw new FileAnalysisException("Failed to generate word cloud", e);
+        }
+    }
+
+    private WordCloudEntity findWordCloud(UUID fileId) {
+        return wordCloudRepository.findById(fileId)
+                .orElseThrow(() -> new AnalysisNotFoundException("Word cloud not found with file ID: " + fileId));
+    }
+
+    /**
+     * The value for {@code wordCloudUrl} and, for the local engine, the rendered images to store.
+     */
+    public record RenderedWordCloud(String url, WordCloudEntity entity) {
+    }
+}
@@ -0,0 +1,127 @@
+package hse.antiplagiat.analysis.similarity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Cosine similarity of every pair of rows of a {@link TfIdfMatrix}, keeping only the best pairs.
+ * <p>
+ * The upper triangle is split into blocks of {@value #ROW_BLOCK} rows that fork/join tasks compare with
+ * all later rows. A block goes over the later rows in tiles of {@value #COLUMN_TILE}: every row of the
+ * block is scattered into a dense accumulator and dotted with each row of the tile, so a tile is read
+ * from cache once per row of the block instead of from memory. Each task keeps its own bounded heap of
+ * the best pairs and the heaps are merged on join, so memory does not grow with the number of pairs.
+ */
+public final class AllPairsCosine {
+    private static final int ROW_BLOCK = 32;
+    private static final int COLUMN_TILE = 256;
+
+    private static final Comparator<ScoredPair> WORST_FIRST = Comparator.comparingDouble(ScoredPair::similarity)
+            .thenComparing(Comparator.comparingInt(ScoredPair::row).reversed())
+            .thenComparing(Comparator.comparingInt(ScoredPair::column).reversed());
+
+    private AllPairsCosine() {
+    }
+
+    /**
+     * Returns up to {@code limit} pairs with similarity of at least {@code threshold}, most similar first.
+     */
+    public static List<ScoredPair> topPairs(TfIdfMatrix matrix, double threshold, int limit, ForkJoinPool pool) {
+        int blocks = (matrix.rows() + ROW_BLOCK - 1) / ROW_BLOCK;
+        if (blocks == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        List<ScoredPair> pairs = new ArrayList<>(pool.invoke(new BlockTask(matrix, (float) threshold, limit, 0, blocks)));
+        pairs.sort(WORST_FIRST.reversed());
+        return pairs;
+    }
+
+    /**
+     * Rows {@code row < column} of the matrix and their cosine similarity.
+     */
+    public record ScoredPair(int row, int column, float similarity) {
+    }
+
+    private static final class BlockTask extends RecursiveTask<PriorityQueue<ScoredPair>> {
+        private final TfIdfMatrix matrix;
+        private final float threshold;
+        private final int limit;
+        private final int fromBlock;
+        private final int toBlock;
+
+        BlockTask(TfIdfMatrix matrix, float threshold, int limit, int fromBlock, int toBlock) {
+            this.matrix = matrix;
+            this.threshold = threshold;
+            this.limit = limit;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected PriorityQueue<ScoredPair> compute() {
+            if (toBlock - fromBlock == 1) {
+                return compareBlock();
+            }
+
+            int middle = (fromBlock + toBlock) >>> 1;
+            BlockTask later = new BlockTask(matrix, threshold, limit, middle, toBlock);
+            later.fork();
+            PriorityQueue<ScoredPair> best = new BlockTask(matrix, threshold, limit, fromBlock, middle).compute();
+            for (ScoredPair pair : later.join()) {
+                offer(best, pair);
+            }
+            return best;
+        }
+
+        private PriorityQueue<ScoredPair> compareBlock() {
+            PriorityQueue<ScoredPair> best = new PriorityQueue<>(WORST_FIRST);
+            float[] dense = new float[matrix.vocabularySize()];
+            int rows = matrix.rows();
+            int rowFrom = fromBlock * ROW_BLOCK;
+            int rowTo = Math.min(rows, rowFrom + ROW_BLOCK);
+
+            for (int tileFrom = rowFrom + 1; tileFrom < rows; tileFrom += COLUMN_TILE) {
+                int tileTo = Math.min(rows, tileFrom + COLUMN_TILE);
+                for (int row = rowFrom; row < rowTo; row++) {
+                    int columnFrom = Math.max(row + 1, tileFrom);
+                    int rowStart = matrix.start(row);
+                    int rowEnd = matrix.end(row);
+                    if (columnFrom >= tileTo || rowStart == rowEnd) {
+                        continue;
+                    }
+
+                    for (int entry = rowStart; entry < rowEnd; entry++) {
+                        dense[matrix.term(entry)] = matrix.weight(entry);
+                    }
+                    for (int column = columnFrom; column < tileTo; column++) {
+                        float dot = 0;
+                        for (int entry = matrix.start(column), end = matrix.end(column); entry < end; entry++) {
+                            dot += dense[matrix.term(entry)] * matrix.weight(entry);
+                        }
+                        if (dot >= threshold) {
+                            offer(best, new ScoredPair(row, column, Math.min(dot, 1f)));
+                        }
+                    }
+                    for (int entry = rowStart; entry < rowEnd; entry++) {
+                        dense[matrix.term(entry)] = 0;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private void offer(PriorityQueue<ScoredPair> best, ScoredPair pair) {
+            if (best.size() < limit) {
+                best.add(pair);
+            } else if (WORST_FIRST.compare(pair, best.peek()) > 0) {
+                best.poll();
+                best.add(pair);
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package hse.antiplagiat.analysis.similarity;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory LSH banding index over MinHash signatures. Each document is put into one bucket per
+ * band; a query only looks at documents sharing at least one bucket, so its cost depends on the
+ * number of near candidates rather than on the corpus size.
+ * <p>
+ * Buckets are singly linked lists threaded through a flat {@code int[]}: entry {@code doc * BANDS + band}
+ * points to the next document in the same bucket, so the index costs a few bytes per document and band.
+ */
+@Component
+public class LshIndex {
+    private static final int NO_ENTRY = -1;
+    private static final float MAX_LOAD = 0.5f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> docIndexes = new HashMap<>();
+
+    private UUID[] fileIds = new UUID[1024];
+    private int[][] signatures = new int[1024][];
+    private int[] next = new int[1024 * MinHasher.BANDS];
+    private int docCount;
+    private int removedCount;
+
+    private long[] bucketKeys = new long[1024];
+    private int[] bucketHeads = newHeads(1024);
+    private int bucketCount;
+
+    public void add(UUID fileId, int[] signature) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+
+            int doc = docCount++;
+            ensureDocCapacity(docCount);
+            fileIds[doc] = fileId;
+            signatures[doc] = signature;
+            docIndexes.put(fileId, doc);
+
+            for (int band = 0; band < MinHasher.BANDS; band++) {
+                int entry = doc * MinHasher.BANDS + band;
+                int slot = findSlot(MinHasher.bandKey(signature, band));
+                next[entry] = bucketHeads[slot];
+                bucketHeads[slot] = entry;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID fileId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+            if (removedCount > 1024 && removedCount > docCount / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int[] getSignature(UUID fileId) {
+        lock.readLock().lock();
+        try {
+            Integer doc = docIndexes.get(fileId);
+            return doc == null ? null : signatures[doc];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIndexes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} indexed documents sharing an LSH bucket with the signature,
+     * most similar first. The document identified by {@code excludeId} is skipped.
+     */
+    public List<Candidate> query(int[] signature, UUID excludeId, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> seen = new HashSet<>();
+            List<Candidate> candidates = new ArrayList<>();
+
+            for (int band = 0; band < MinHasher.BANDS; band++) {
+                long key = MinHasher.bandKey(signature, band);
+                int slot = lookupSlot(key);
+                if (slot < 0) {
+                    continue;
+                }
+
+                for (int entry = bucketHeads[slot]; entry != NO_ENTRY; entry = next[entry]) {
+                    int doc = entry / MinHasher.BANDS;
+                    int[] other = signatures[doc];
+                    if (other == null || fileIds[doc].equals(excludeId) || !seen.add(doc)) {
+                        continue;
+                    }
+                    candidates.add(new Candidate(fileIds[doc], MinHasher.estimateSimilarity(signature, other)));
+                }
+            }
+
+            candidates.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+            return candidates.size() > limit ? new ArrayList<>(candidates.subList(0, limit)) : candidates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(UUID fileId) {
+        Integer doc = docIndexes.remove(fileId);
+        if (doc != null) {
+            signatures[doc] = null;
+            removedCount++;
+        }
+    }
+
+    private void compact() {
+        UUID[] oldIds = Arrays.copyOf(fileIds, docCount);
+        int[][] oldSignatures = Arrays.copyOf(signatures, docCount);
+
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, docIndexes.size())) << 1);
+        fileIds = new UUID[capacity];
+        signatures = new int[capacity][];
+        next = new int[capacity * MinHasher.BANDS];
+        bucketKeys = new long[capacity];
+        bucketHeads = newHeads(capacity);
+        bucketCount = 0;
+        docCount = 0;
+        removedCount = 0;
+        docIndexes.clear();
+
+        for (int doc = 0; doc < oldIds.length; doc++) {
+            if (oldSignatures[doc] != null) {
+                add(oldIds[doc], oldSignatures[doc]);
+            }
+        }
+    }
+
+    private void ensureDocCapacity(int required) {
+        if (required <= fileIds.length) {
+            return;
+        }
+        int capacity = fileIds.length << 1;
+        fileIds = Arrays.copyOf(fileIds, capacity);
+        signatures = Arrays.copyOf(signatures, capacity);
+        next = Arrays.copyOf(next, capacity * MinHasher.BANDS);
+    }
+
+    private int lookupSlot(long key) {
+        int mask = bucketKeys.length - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+            if (bucketHeads[slot] == NO_ENTRY) {
+                return -1;
+            }
+            if (bucketKeys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private int findSlot(long key) {
+        if (bucketCount + 1 > bucketKeys.length * MAX_LOAD) {
+            rehash();
+        }
+        int mask = bucketKeys.length - 1;
+        for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+            if (bucketHeads[slot] == NO_ENTRY) {
+                bucketKeys[slot] = key;
+                bucketCount++;
+                return slot;
+            }
+            if (bucketKeys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = bucketKeys;
+        int[] oldHeads = bucketHeads;
+        bucketKeys = new long[oldKeys.length << 1];
+        bucketHeads = newHeads(bucketKeys.length);
+
+        int mask = bucketKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldHeads[i] == NO_ENTRY) {
+                continue;
+            }
+            int slot = (int) oldKeys[i] & mask;
+            while (bucketHeads[slot] != NO_ENTRY) {
+                slot = (slot + 1) & mask;
+            }
+            bucketKeys[slot] = oldKeys[i];
+            bucketHeads[slot] = oldHeads[i];
+        }
+    }
+
+    private static int[] newHeads(int capacity) {
+        int[] heads = new int[capacity];
+        Arrays.fill(heads, NO_ENTRY);
+        return heads;
+    }
+
+    public record Candidate(UUID fileId, double similarity) {
+    }
+}
@@ -0,0 +1,131 @@
+package hse.antiplagiat.analysis.similarity;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Builds MinHash signatures over word shingles. Two signatures agree in a given position with
+ * probability equal to the Jaccard similarity of the underlying shingle sets.
+ */
+@Component
+public class MinHasher {
+    public static final int NUM_HASHES = 100;
+    public static final int BANDS = 20;
+    public static final int ROWS = NUM_HASHES / BANDS;
+
+    private static final int SHINGLE_SIZE = 3;
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final long[] seeds;
+
+    public MinHasher() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        this.seeds = new long[NUM_HASHES];
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Returns the signature of the text, or {@code null} if the text has no words.
+     */
+    public int[] signature(String text) {
+        long[] window = new long[SHINGLE_SIZE];
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (i >= length) {
+                break;
+            }
+
+            long tokenHash = 0xcbf29ce484222325L;
+            while (i < length) {
+                int codePoint = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(codePoint)) {
+                    break;
+                }
+                tokenHash = (tokenHash ^ Character.toLowerCase(codePoint)) * 0x100000001b3L;
+                i += Character.charCount(codePoint);
+            }
+
+            window[tokens % SHINGLE_SIZE] = tokenHash;
+            tokens++;
+            if (tokens >= SHINGLE_SIZE) {
+                update(signature, shingleHash(window, tokens));
+            }
+        }
+
+        if (tokens == 0) {
+            return null;
+        }
+        if (tokens < SHINGLE_SIZE) {
+            update(signature, shingleHash(window, tokens));
+        }
+        return signature;
+    }
+
+    public static double estimateSimilarity(int[] a, int[] b) {
+        int matches = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                matches++;
+            }
+        }
+        return (double) matches / NUM_HASHES;
+    }
+
+    public static long bandKey(int[] signature, int band) {
+        long key = mix64(band + 1L);
+        int from = band * ROWS;
+        for (int i = from; i < from + ROWS; i++) {
+            key = mix64(key ^ (signature[i] & 0xffffffffL));
+        }
+        return key;
+    }
+
+    public static byte[] encode(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] decode(byte[] bytes) {
+        int[] signature = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    private void update(int[] signature, long shingle) {
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int value = (int) (mix64(shingle ^ seeds[i]) >>> 32);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private static long shingleHash(long[] window, int tokens) {
+        int count = Math.min(tokens, SHINGLE_SIZE);
+        long hash = count;
+        for (int i = tokens - count; i < tokens; i++) {
+            hash = mix64(hash * 31 + window[i % SHINGLE_SIZE]);
+        }
+        return hash;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
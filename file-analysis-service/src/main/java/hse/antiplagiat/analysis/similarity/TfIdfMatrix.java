@@ -0,0 +1,104 @@
+package hse.antiplagiat.analysis.similarity;
+
+import hse.antiplagiat.analysis.text.TermVector;
+
+import java.util.List;
+
+/**
+ * L2-normalized TF-IDF vectors of a set of documents in compressed sparse row layout: the entries of
+ * row {@code r} are {@code terms[offsets[r]..offsets[r + 1])} with the matching {@code weights}, so
+ * consecutive documents are adjacent in memory and a scan over them is sequential.
+ * <p>
+ * Term frequency is sublinear ({@code 1 + ln tf}) and IDF is smoothed ({@code ln((1 + n) / (1 + df)) + 1}).
+ * Terms that occur in a single document cannot contribute to the similarity of any pair; they count
+ * towards the norm of their document but are not stored.
+ */
+public final class TfIdfMatrix {
+    private final int[] offsets;
+    private final int[] terms;
+    private final float[] weights;
+    private final int vocabularySize;
+
+    private TfIdfMatrix(int[] offsets, int[] terms, float[] weights, int vocabularySize) {
+        this.offsets = offsets;
+        this.terms = terms;
+        this.weights = weights;
+        this.vocabularySize = vocabularySize;
+    }
+
+    /**
+     * Builds the matrix of the documents, whose term IDs must be below {@code vocabularySize}.
+     */
+    public static TfIdfMatrix build(List<TermVector> documents, int vocabularySize) {
+        int[] documentFrequency = new int[vocabularySize];
+        for (TermVector document : documents) {
+            for (int term : document.terms()) {
+                documentFrequency[term]++;
+            }
+        }
+
+        float[] idf = new float[vocabularySize];
+        int n = documents.size();
+        for (int term = 0; term < vocabularySize; term++) {
+            idf[term] = (float) (Math.log((1.0 + n) / (1.0 + documentFrequency[term])) + 1);
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int row = 0; row < n; row++) {
+            int shared = 0;
+            for (int term : documents.get(row).terms()) {
+                if (documentFrequency[term] > 1) {
+                    shared++;
+                }
+            }
+            offsets[row + 1] = offsets[row] + shared;
+        }
+
+        int[] terms = new int[offsets[n]];
+        float[] weights = new float[offsets[n]];
+        for (int row = 0; row < n; row++) {
+            TermVector document = documents.get(row);
+            double norm = 0;
+            for (int i = 0; i < document.terms().length; i++) {
+                double weight = (1 + Math.log(document.counts()[i])) * idf[document.terms()[i]];
+                norm += weight * weight;
+            }
+            norm = Math.sqrt(norm);
+
+            int entry = offsets[row];
+            for (int i = 0; i < document.terms().length; i++) {
+                int term = document.terms()[i];
+                if (documentFrequency[term] > 1) {
+                    terms[entry] = term;
+                    weights[entry] = (float) ((1 + Math.log(document.counts()[i])) * idf[term] / norm);
+                    entry++;
+                }
+            }
+        }
+        return new TfIdfMatrix(offsets, terms, weights, vocabularySize);
+    }
+
+    public int rows() {
+        return offsets.length - 1;
+    }
+
+    public int vocabularySize() {
+        return vocabularySize;
+    }
+
+    int start(int row) {
+        return offsets[row];
+    }
+
+    int end(int row) {
+        return offsets[row + 1];
+    }
+
+    int term(int entry) {
+        return terms[entry];
+    }
+
+    float weight(int entry) {
+        return weights[entry];
+    }
+}
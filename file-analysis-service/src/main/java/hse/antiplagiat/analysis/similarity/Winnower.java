@@ -0,0 +1,104 @@
+package hse.antiplagiat.analysis.similarity;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MOSS-style winnowing. The text is reduced to lower-case letters and digits, hashed as overlapping
+ * k-grams, and the minimum hash of every window of {@link #WINDOW} consecutive k-grams is kept.
+ * Any shared passage of at least {@code K + WINDOW - 1} normalized characters is guaranteed to
+ * produce at least one common fingerprint.
+ */
+@Component
+public class Winnower {
+    public static final int K = 25;
+    public static final int WINDOW = 20;
+
+    private static final long BASE = 1_000_003L;
+    private static final long BASE_POW;
+
+    static {
+        long pow = 1;
+        for (int i = 0; i < K - 1; i++) {
+            pow *= BASE;
+        }
+        BASE_POW = pow;
+    }
+
+    public List<Fingerprint> fingerprints(String text) {
+        int length = text.length();
+        int[] chars = new int[length];
+        int[] starts = new int[length];
+        int[] ends = new int[length];
+        int normalized = 0;
+
+        for (int i = 0; i < length; ) {
+            int codePoint = text.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                chars[normalized] = Character.toLowerCase(codePoint);
+                starts[normalized] = i;
+                ends[normalized] = next;
+                normalized++;
+            }
+            i = next;
+        }
+
+        List<Fingerprint> result = new ArrayList<>();
+        int grams = normalized - K + 1;
+        if (grams <= 0) {
+            return result;
+        }
+
+        long[] hashes = new long[grams];
+        long hash = 0;
+        for (int i = 0; i < K; i++) {
+            hash = hash * BASE + chars[i];
+        }
+        hashes[0] = mix64(hash);
+        for (int i = 1; i < grams; i++) {
+            hash = (hash - chars[i - 1] * BASE_POW) * BASE + chars[i + K - 1];
+            hashes[i] = mix64(hash);
+        }
+
+        // Monotonic deque of k-gram indexes whose hashes increase from head to tail; the head is
+        // the rightmost minimum of the current window.
+        int[] deque = new int[grams];
+        int head = 0;
+        int tail = 0;
+        int lastSelected = -1;
+
+        for (int i = 0; i < grams; i++) {
+            while (tail > head && hashes[deque[tail - 1]] >= hashes[i]) {
+                tail--;
+            }
+            deque[tail++] = i;
+            if (deque[head] <= i - WINDOW) {
+                head++;
+            }
+
+            if (i >= WINDOW - 1 || i == grams - 1) {
+                int selected = deque[head];
+                if (selected != lastSelected) {
+                    result.add(new Fingerprint(hashes[selected], starts[selected], ends[selected + K - 1]));
+                    lastSelected = selected;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * A selected k-gram hash with the span of the original text it was computed from.
+     */
+    public record Fingerprint(long hash, int start, int end) {
+    }
+}
@@ -0,0 +1,240 @@
+package hse.antiplagiat.analysis.text;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maps terms to int IDs shared by all instances through the {@code terms} table, so term vectors stored
+ * by one instance can be read by another.
+ * <p>
+ * The IDs known to this instance are cached in an open-addressing table with linear probing ({@code String}
+ * keys, {@code int} values, nothing boxed) and in an array indexed by ID for the reverse lookup. A document
+ * is looked up under one read lock; only the terms missing from the cache go to the database, in one
+ * insert and one select per document. Terms are inserted in sorted order so that concurrent inserts of
+ * overlapping terms cannot deadlock.
+ */
+@Component
+public class TermDictionary {
+    public static final int UNKNOWN = -1;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MISSING = -2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private String[] terms = new String[INITIAL_CAPACITY];
+    private int size;
+
+    private static final Logger log = LoggerFactory.getLogger(TermDictionary.class);
+
+    public TermDictionary(DataSource dataSource, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+        Gauge.builder("analysis.terms.cached", this, TermDictionary::size)
+                .description("Terms of the shared dictionary cached by this instance")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        jdbcTemplate.query("SELECT id, term FROM terms", (RowCallbackHandler) rs -> {
+            lock.writeLock().lock();
+            try {
+                put(rs.getString(2), rs.getInt(1));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+        log.info("Loaded {} terms into the term dictionary", size());
+    }
+
+    /**
+     * Returns the ID of every token, in order, adding new terms to the dictionary. Empty tokens, which
+     * stand for overlong ones, get {@link #UNKNOWN}.
+     */
+    public int[] ids(List<String> tokens) {
+        int[] ids = new int[tokens.size()];
+        Set<String> missing = null;
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                String token = tokens.get(i);
+                ids[i] = token.isEmpty() ? UNKNOWN : get(token);
+                if (ids[i] == MISSING) {
+                    if (missing == null) {
+                        missing = new TreeSet<>();
+                    }
+                    missing.add(token);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (missing != null) {
+            register(missing.toArray(String[]::new));
+            lock.readLock().lock();
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] == MISSING) {
+                        ids[i] = get(tokens.get(i));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the term of every ID, in order. IDs added by other instances since startup are read from
+     * the database.
+     */
+    public String[] terms(int[] ids) {
+        String[] result = new String[ids.length];
+        List<Integer> missing = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                result[i] = term(ids[i]);
+                if (result[i] == null) {
+                    missing.add(ids[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!missing.isEmpty()) {
+            Integer[] missingIds = missing.toArray(Integer[]::new);
+            jdbcTemplate.query("SELECT id, term FROM terms WHERE id = ANY (?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", missingIds)),
+                    (RowCallbackHandler) rs -> {
+                        lock.writeLock().lock();
+                        try {
+                            put(rs.getString(2), rs.getInt(1));
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                    });
+
+            lock.readLock().lock();
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    if (result[i] == null) {
+                        result[i] = term(ids[i]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts the sorted terms that are not in the table yet and caches the IDs of all of them. The
+     * existence check keeps the insert from burning sequence values on terms that are already there.
+     */
+    private void register(String[] sortedTerms) {
+        jdbcTemplate.update("""
+                        INSERT INTO terms (term)
+                        SELECT t FROM unnest(?::varchar[]) AS t
+                        WHERE NOT EXISTS (SELECT 1 FROM terms WHERE term = t)
+                        ORDER BY t
+                        ON CONFLICT (term) DO NOTHING
+                        """,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", sortedTerms)));
+
+        jdbcTemplate.query("SELECT id, term FROM terms WHERE term = ANY (?::varchar[])",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", sortedTerms)),
+                (RowCallbackHandler) rs -> {
+                    lock.writeLock().lock();
+                    try {
+                        put(rs.getString(2), rs.getInt(1));
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                });
+    }
+
+    private String term(int id) {
+        return id >= 0 && id < terms.length ? terms[id] : null;
+    }
+
+    private int get(String term) {
+        int slot = find(keys, term);
+        return keys[slot] == null ? MISSING : values[slot];
+    }
+
+    private void put(String term, int id) {
+        if ((size + 1) * 4L > keys.length * 3L) {
+            resize();
+        }
+        int slot = find(keys, term);
+        if (keys[slot] == null) {
+            keys[slot] = term;
+            values[slot] = id;
+            size++;
+        }
+        if (id >= terms.length) {
+            terms = Arrays.copyOf(terms, Math.max(terms.length * 2, id + 1));
+        }
+        terms[id] = term;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = find(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int find(String[] keys, String term) {
+        int mask = keys.length - 1;
+        int hash = term.hashCode() * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(term)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,89 @@
+package hse.antiplagiat.analysis.text;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Bag of words of one document: term IDs of the {@link TermDictionary} in ascending order and the number
+ * of occurrences of each.
+ */
+public record TermVector(int[] terms, int[] counts) {
+    public static final TermVector EMPTY = new TermVector(new int[0], new int[0]);
+
+    /**
+     * Counts the term IDs of a document, in any order; negative IDs are skipped.
+     */
+    public static TermVector of(int[] termIds) {
+        int[] sorted = termIds.clone();
+        Arrays.sort(sorted);
+
+        int[] terms = new int[sorted.length];
+        int[] counts = new int[sorted.length];
+        int size = 0;
+        for (int termId : sorted) {
+            if (termId < 0) {
+                continue;
+            }
+            if (size > 0 && terms[size - 1] == termId) {
+                counts[size - 1]++;
+            } else {
+                terms[size] = termId;
+                counts[size++] = 1;
+            }
+        }
+        return new TermVector(Arrays.copyOf(terms, size), Arrays.copyOf(counts, size));
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * Writes the size, the gaps between consecutive term IDs and the counts as unsigned LEB128 varints.
+     * Gaps and counts are small, so most entries take two or three bytes.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(terms.length * 3 + 5);
+        writeVarint(out, terms.length);
+        int previous = 0;
+        for (int i = 0; i < terms.length; i++) {
+            writeVarint(out, terms[i] - previous);
+            writeVarint(out, counts[i]);
+            previous = terms[i];
+        }
+        return out.toByteArray();
+    }
+
+    public static TermVector decode(byte[] bytes) {
+        int[] position = {0};
+        int size = readVarint(bytes, position);
+        int[] terms = new int[size];
+        int[] counts = new int[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += readVarint(bytes, position);
+            terms[i] = previous;
+            counts[i] = readVarint(bytes, position);
+        }
+        return new TermVector(terms, counts);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
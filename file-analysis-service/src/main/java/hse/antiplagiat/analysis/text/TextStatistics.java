@@ -0,0 +1,4 @@
+package hse.antiplagiat.analysis.text;
+
+public record TextStatistics(int paragraphsCount, int wordsCount, int symbolsCount) {
+}
@@ -0,0 +1,188 @@
+package hse.antiplagiat.analysis.text;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts paragraphs, words and symbols of UTF-8 text in one pass over the raw bytes.
+ * <p>
+ * The counts are identical to the previous String-based implementation:
+ * <ul>
+ *     <li>paragraphs: {@code '\n'}-separated lines that are not empty after {@link String#trim()},
+ *     i.e. that contain a character above {@code U+0020};</li>
+ *     <li>words: {@code content.trim().split("\\s+").length}, i.e. maximal runs of non-{@code \s}
+ *     characters between the first and the last character above {@code U+0020};</li>
+ *     <li>symbols: {@link String#length()}, i.e. UTF-16 code units.</li>
+ * </ul>
+ * All of these separators are ASCII and never occur inside a multi-byte UTF-8 sequence, so the
+ * scan does not need to decode the text.
+ * <p>
+ * This holds for valid UTF-8. In malformed input, decoding replaces every malformed sequence with one
+ * {@code U+FFFD}, while the scanner counts a symbol per lead byte, so stray continuation bytes count for
+ * nothing and a truncated sequence counts once. Paragraphs and words are not affected, since both
+ * {@code U+FFFD} and stray bytes are non-whitespace characters above {@code U+0020}.
+ * <p>
+ * Documents larger than the parallel threshold are split right after a {@code '\n'} and the halves are
+ * counted with fork/join; no line or word crosses a split point, so the partial results merge exactly.
+ */
+@Component
+public class TextStatisticsScanner {
+    private final int parallelThreshold;
+
+    public TextStatisticsScanner(@Value("${analysis.text.parallel-threshold-bytes:1048576}") int parallelThreshold) {
+        this.parallelThreshold = Math.max(1024, parallelThreshold);
+    }
+
+    public TextStatistics scan(byte[] content) {
+        Partial partial = content.length > parallelThreshold
+                ? ForkJoinPool.commonPool().invoke(new ScanTask(content, 0, content.length, parallelThreshold))
+                : scan(content, 0, content.length);
+
+        return new TextStatistics(partial.paragraphs, partial.hasSignificant ? partial.innerRuns : 0, partial.symbols);
+    }
+
+    static Partial scan(byte[] content, int from, int to) {
+        Partial partial = new Partial();
+        boolean lineSignificant = false;
+        boolean inRun = false;
+        boolean runSignificant = false;
+
+        for (int i = from; i < to; i++) {
+            int b = content[i] & 0xff;
+
+            if ((b & 0xc0) != 0x80) {
+                partial.symbols++;
+                if ((b & 0xf8) == 0xf0) {
+                    // Four-byte sequences decode to a surrogate pair.
+                    partial.symbols++;
+                }
+            }
+
+            if (isWhitespace(b)) {
+                if (inRun) {
+                    partial.closeRun(runSignificant);
+                    inRun = false;
+                }
+                if (b == '\n') {
+                    if (lineSignificant) {
+                        partial.paragraphs++;
+                    }
+                    lineSignificant = false;
+                }
+            } else {
+                if (!inRun) {
+                    inRun = true;
+                    runSignificant = false;
+                }
+                if (b > ' ') {
+                    runSignificant = true;
+                    lineSignificant = true;
+                }
+            }
+        }
+
+        if (inRun) {
+            partial.closeRun(runSignificant);
+        }
+        if (lineSignificant) {
+            partial.paragraphs++;
+        }
+        return partial;
+    }
+
+    // The characters matched by the regex \s without UNICODE_CHARACTER_CLASS.
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0b || b == '\f' || b == '\r';
+    }
+
+    /**
+     * Counts for a range of the text. Runs of non-whitespace characters consisting only of control
+     * characters ({@code <= U+0020}) count as words only when they lie between two significant words,
+     * because {@code trim()} removes them at either end of the document.
+     */
+    static final class Partial {
+        int paragraphs;
+        int symbols;
+        boolean hasSignificant;
+        int leadingControlRuns;
+        int innerRuns;
+        int trailingControlRuns;
+
+        void closeRun(boolean significant) {
+            if (significant) {
+                if (hasSignificant) {
+                    innerRuns += trailingControlRuns + 1;
+                } else {
+                    hasSignificant = true;
+                    innerRuns = 1;
+                }
+                trailingControlRuns = 0;
+            } else if (hasSignificant) {
+                trailingControlRuns++;
+            } else {
+                leadingControlRuns++;
+            }
+        }
+
+        static Partial merge(Partial left, Partial right) {
+            Partial merged = new Partial();
+            merged.paragraphs = left.paragraphs + right.paragraphs;
+            merged.symbols = left.symbols + right.symbols;
+
+            if (!left.hasSignificant) {
+                merged.hasSignificant = right.hasSignificant;
+                merged.leadingControlRuns = left.leadingControlRuns + right.leadingControlRuns;
+                merged.innerRuns = right.innerRuns;
+                merged.trailingControlRuns = right.trailingControlRuns;
+            } else if (!right.hasSignificant) {
+                merged.hasSignificant = true;
+                merged.leadingControlRuns = left.leadingControlRuns;
+                merged.innerRuns = left.innerRuns;
+                merged.trailingControlRuns = left.trailingControlRuns + right.leadingControlRuns;
+            } else {
+                merged.hasSignificant = true;
+                merged.leadingControlRuns = left.leadingControlRuns;
+                merged.innerRuns = left.innerRuns + left.trailingControlRuns + right.leadingControlRuns + right.innerRuns;
+                merged.trailingControlRuns = right.trailingControlRuns;
+            }
+            return merged;
+        }
+    }
+
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private final byte[] content;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ScanTask(byte[] content, int from, int to, int threshold) {
+            this.content = content;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= threshold) {
+                return scan(content, from, to);
+            }
+
+            int split = from + (to - from) / 2;
+            while (split < to && content[split - 1] != '\n') {
+                split++;
+            }
+            if (split >= to) {
+                return scan(content, from, to);
+            }
+
+            ScanTask left = new ScanTask(content, from, split, threshold);
+            left.fork();
+            Partial right = new ScanTask(content, split, to, threshold).compute();
+            return Partial.merge(left.join(), right);
+        }
+    }
+}
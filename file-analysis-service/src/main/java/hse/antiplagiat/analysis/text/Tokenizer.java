@@ -0,0 +1,59 @@
+package hse.antiplagiat.analysis.text;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lower-case runs of letters and digits, the unit shared by search, term vectors and cohort
+ * comparison; MinHash and winnowing hash the same letters and digits in a single pass. Combining marks continue a token and the token is composed to NFC, so Cyrillic
+ * {@code й} and {@code ё} typed as a base letter plus a combining mark give the same token as the
+ * precomposed letter. Positions count tokens, so a phrase matches regardless of punctuation and
+ * whitespace between its words.
+ */
+@Component
+public class Tokenizer {
+    public static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * Returns the tokens in text order. Overlong tokens are returned as empty strings: they are not
+     * indexed or counted but keep their position, so phrases around them do not join up.
+     */
+    public List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean combined = false;
+
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                token.appendCodePoint(Character.toLowerCase(codePoint));
+            } else if (!token.isEmpty() && isCombiningMark(codePoint)) {
+                token.appendCodePoint(codePoint);
+                combined = true;
+            } else {
+                addToken(tokens, token, combined);
+                combined = false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        addToken(tokens, token, combined);
+        return tokens;
+    }
+
+    private static boolean isCombiningMark(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static void addToken(List<String> tokens, StringBuilder token, boolean combined) {
+        if (token.isEmpty()) {
+            return;
+        }
+        String value = combined ? Normalizer.normalize(token, Normalizer.Form.NFC) : token.toString();
+        tokens.add(value.length() <= MAX_TOKEN_LENGTH ? value : "");
+        token.setLength(0);
+    }
+}
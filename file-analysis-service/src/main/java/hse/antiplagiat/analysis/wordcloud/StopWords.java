@@ -0,0 +1,44 @@
+package hse.antiplagiat.analysis.wordcloud;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public final class StopWords {
+    private static final Set<String> ENGLISH = Set.of(
+            "a", "about", "above", "after", "again", "against", "all", "also", "am", "an", "and", "any", "are",
+            "aren't", "as", "at", "be", "because", "been", "before", "being", "below", "between", "both", "but",
+            "by", "can", "cannot", "could", "did", "do", "does", "doing", "down", "during", "each", "even", "ever",
+            "every", "few", "for", "from", "further", "get", "got", "had", "has", "have", "having", "he", "her",
+            "here", "hers", "herself", "him", "himself", "his", "how", "however", "i", "if", "in", "into", "is",
+            "it", "its", "itself", "just", "like", "made", "make", "many", "may", "me", "might", "more", "most",
+            "much", "must", "my", "myself", "no", "nor", "not", "now", "of", "off", "often", "on", "once", "one",
+            "only", "or", "other", "our", "ours", "ourselves", "out", "over", "own", "same", "she", "should", "so",
+            "some", "such", "than", "that", "the", "their", "theirs", "them", "themselves", "then", "there",
+            "these", "they", "this", "those", "through", "to", "too", "under", "until", "up", "upon", "us", "very",
+            "was", "we", "were", "what", "when", "where", "whether", "which", "while", "who", "whom", "whose", "why",
+            "will", "with", "within", "without", "would", "yet", "you", "your", "yours", "yourself", "yourselves");
+
+    private static final Set<String> RUSSIAN = Set.of(
+            "а", "без", "более", "бы", "был", "была", "были", "было", "быть", "в", "вам", "вас", "весь", "во", "вот",
+            "все", "всего", "всех", "вы", "где", "да", "даже", "для", "до", "его", "ее", "её", "если", "есть", "еще",
+            "ещё", "же", "за", "здесь", "и", "из", "или", "им", "их", "к", "как", "когда", "кто", "ли", "либо", "мне",
+            "может", "мы", "на", "над", "надо", "наш", "не", "него", "нее", "неё", "нет", "ни", "них", "но", "ну", "о",
+            "об", "однако", "он", "она", "они", "оно", "от", "очень", "по", "под", "при", "с", "со", "так", "также",
+            "такой", "там", "те", "тем", "то", "того", "тоже", "той", "только", "том", "ты", "у", "уже", "хотя",
+            "чего", "чей", "чем", "что", "чтобы", "чье", "чья", "эта", "эти", "это", "этот", "я");
+
+    private StopWords() {
+    }
+
+    public static Set<String> forLanguage(String language) {
+        return switch (language == null ? "en" : language.toLowerCase()) {
+            case "ru" -> RUSSIAN;
+            case "auto" -> {
+                Set<String> all = new HashSet<>(ENGLISH);
+                all.addAll(RUSSIAN);
+                yield all;
+            }
+            default -> ENGLISH;
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package hse.antiplagiat.analysis.wordcloud;
+
+import hse.antiplagiat.analysis.wordcloud.WordFrequencyCounter.WordCount;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Places words on the canvas along an Archimedean spiral starting from the centre, largest first.
+ * Every third word (chosen by hash, so the layout is deterministic) is rotated by 90 degrees.
+ * Words that do not fit anywhere are dropped.
+ */
+@Component
+public class WordCloudLayout {
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, true);
+    private static final double SPIRAL_STEP = 0.1;
+    private static final int PADDING = 2;
+
+    public List<PlacedWord> layout(List<WordCount> words, WordCloudOptions options) {
+        List<PlacedWord> placed = new ArrayList<>();
+        if (words.isEmpty()) {
+            return placed;
+        }
+
+        int maxCount = words.get(0).count();
+        int minCount = words.get(words.size() - 1).count();
+        double centerX = options.getWidth() / 2.0;
+        double centerY = options.getHeight() / 2.0;
+        double aspect = (double) options.getWidth() / options.getHeight();
+        double maxRadius = Math.hypot(options.getWidth(), options.getHeight()) / 2;
+
+        for (WordCount word : words) {
+            int fontSize = fontSize(word.count(), minCount, maxCount, options);
+            Font font = fontFor(options.getFontFamily(), fontSize);
+            Rectangle2D bounds = font.getStringBounds(word.word(), RENDER_CONTEXT);
+            LineMetrics metrics = font.getLineMetrics(word.word(), RENDER_CONTEXT);
+            boolean vertical = Math.floorMod(word.word().hashCode(), 3) == 0;
+
+            double boxWidth = (vertical ? metrics.getHeight() : bounds.getWidth()) + PADDING * 2;
+            double boxHeight = (vertical ? bounds.getWidth() : metrics.getHeight()) + PADDING * 2;
+
+            for (double t = 0; ; t += SPIRAL_STEP) {
+                double radius = t * 2;
+                if (radius > maxRadius) {
+                    break;
+                }
+                double x = centerX + radius * Math.cos(t) * aspect - boxWidth / 2;
+                double y = centerY + radius * Math.sin(t) - boxHeight / 2;
+                Rectangle2D box = new Rectangle2D.Double(x, y, boxWidth, boxHeight);
+
+                if (fits(box, options) && placed.stream().noneMatch(other -> other.box().intersects(box))) {
+                    placed.add(new PlacedWord(word.word(), fontSize, vertical, box, metrics.getAscent() + PADDING,
+                            color(word.word())));
+                    break;
+                }
+            }
+        }
+        return placed;
+    }
+
+    static Font fontFor(String fontFamily, int fontSize) {
+        String family = switch (fontFamily.toLowerCase()) {
+            case "sans-serif" -> Font.SANS_SERIF;
+            case "serif" -> Font.SERIF;
+            case "monospace" -> Font.MONOSPACED;
+            default -> fontFamily;
+        };
+        return new Font(family, Font.PLAIN, fontSize);
+    }
+
+    private static int fontSize(int count, int minCount, int maxCount, WordCloudOptions options) {
+        if (maxCount == minCount) {
+            return options.getMaxFontSize();
+        }
+        double scale = Math.sqrt((double) (count - minCount) / (maxCount - minCount));
+        return (int) Math.round(options.getMinFontSize() + scale * (options.getMaxFontSize() - options.getMinFontSize()));
+    }
+
+    private static boolean fits(Rectangle2D box, WordCloudOptions options) {
+        return box.getMinX() >= 0 && box.getMinY() >= 0
+                && box.getMaxX() <= options.getWidth() && box.getMaxY() <= options.getHeight();
+    }
+
+    private static String color(String word) {
+        String[] palette = {"#1f77b4", "#ff7f0e", "#2ca02c", "#d62728", "#9467bd", "#8c564b", "#e377c2", "#17becf"};
+        return palette[Math.floorMod(word.hashCode(), palette.length)];
+    }
+
+    /**
+     * A word with its bounding box on the canvas. {@code baseline} is the distance from the start of
+     * the box along the text direction to the text baseline.
+     */
+    public record PlacedWord(String word, int fontSize, boolean vertical, Rectangle2D box, double baseline, String color) {
+    }
+}
@@ -0,0 +1,31 @@
+package hse.antiplagiat.analysis.wordcloud;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class WordCloudOptions {
+    @Builder.Default
+    private int maxNumWords = 100;
+    @Builder.Default
+    private int minWordLength = 3;
+    @Builder.Default
+    private boolean removeStopwords = true;
+    @Builder.Default
+    private boolean cleanWords = true;
+    @Builder.Default
+    private String language = "en";
+    @Builder.Default
+    private String backgroundColor = "#ffffff";
+    @Builder.Default
+    private String fontFamily = "sans-serif";
+    @Builder.Default
+    private int width = 800;
+    @Builder.Default
+    private int height = 600;
+    @Builder.Default
+    private int minFontSize = 12;
+    @Builder.Default
+    private int maxFontSize = 72;
+}
@@ -0,0 +1,101 @@
+package hse.antiplagiat.analysis.wordcloud;
+
+import hse.antiplagiat.analysis.wordcloud.WordCloudLayout.PlacedWord;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+
+@Component
+public class WordCloudRenderer {
+    public String renderSvg(List<PlacedWord> words, WordCloudOptions options) {
+        StringBuilder svg = new StringBuilder(256 + words.size() * 160);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(options.getWidth())
+                .append("\" height=\"").append(options.getHeight())
+                .append("\" viewBox=\"0 0 ").append(options.getWidth()).append(' ').append(options.getHeight()).append("\">");
+        svg.append("<rect width=\"100%\" height=\"100%\" fill=\"").append(escape(options.getBackgroundColor())).append("\"/>");
+        svg.append("<g font-family=\"").append(escape(options.getFontFamily())).append("\" text-anchor=\"middle\">");
+
+        for (PlacedWord word : words) {
+            double centerX = word.box().getCenterX();
+            double centerY = word.box().getCenterY();
+
+            svg.append("<text font-size=\"").append(word.fontSize()).append("\" fill=\"").append(word.color()).append('"');
+            if (word.vertical()) {
+                svg.append(" x=\"").append(format(centerX)).append("\" y=\"")
+                        .append(format(centerY + word.baseline() - word.box().getWidth() / 2)).append('"')
+                        .append(" transform=\"rotate(-90 ").append(format(centerX)).append(' ').append(format(centerY)).append(")\"");
+            } else {
+                svg.append(" x=\"").append(format(centerX)).append("\" y=\"")
+                        .append(format(word.box().getMinY() + word.baseline())).append('"');
+            }
+            svg.append('>').append(escape(word.word())).append("</text>");
+        }
+
+        return svg.append("</g></svg>").toString();
+    }
+
+    public byte[] renderPng(List<PlacedWord> words, WordCloudOptions options) throws IOException {
+        BufferedImage image = new BufferedImage(options.getWidth(), options.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            graphics.setColor(Color.decode(options.getBackgroundColor()));
+            graphics.fillRect(0, 0, options.getWidth(), options.getHeight());
+
+            for (PlacedWord word : words) {
+                Font font = WordCloudLayout.fontFor(options.getFontFamily(), word.fontSize());
+                graphics.setFont(font);
+                graphics.setColor(Color.decode(word.color()));
+
+                double centerX = word.box().getCenterX();
+                double centerY = word.box().getCenterY();
+                float textWidth = (float) font.getStringBounds(word.word(), graphics.getFontRenderContext()).getWidth();
+
+                AffineTransform transform = graphics.getTransform();
+                if (word.vertical()) {
+                    graphics.rotate(-Math.PI / 2, centerX, centerY);
+                    graphics.drawString(word.word(), (float) (centerX - textWidth / 2),
+                            (float) (centerY + word.baseline() - word.box().getWidth() / 2));
+                } else {
+                    graphics.drawString(word.word(), (float) (centerX - textWidth / 2),
+                            (float) (word.box().getMinY() + word.baseline()));
+                }
+                graphics.setTransform(transform);
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&' -> escaped.append("&amp;");
+                case '<' -> escaped.append("&lt;");
+                case '>' -> escaped.append("&gt;");
+                case '"' -> escaped.append("&quot;");
+                case '\'' -> escaped.append("&apos;");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
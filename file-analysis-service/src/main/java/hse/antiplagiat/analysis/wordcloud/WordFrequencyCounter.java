@@ -0,0 +1,86 @@
+package hse.antiplagiat.analysis.wordcloud;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+@Component
+public class WordFrequencyCounter {
+    /**
+     * Returns the most frequent words of the text, most frequent first, honouring the
+     * {@code cleanWords}, {@code minWordLength}, {@code removeStopwords} and {@code maxNumWords} options.
+     */
+    public List<WordCount> count(String text, WordCloudOptions options) {
+        Set<String> stopWords = options.isRemoveStopwords() ? StopWords.forLanguage(options.getLanguage()) : Set.of();
+        Map<String, Integer> counts = new HashMap<>();
+
+        int length = text.length();
+        int i = 0;
+        StringBuilder word = new StringBuilder();
+        while (i < length) {
+            word.setLength(0);
+            while (i < length && !isWordChar(text.codePointAt(i), options.isCleanWords())) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            while (i < length && isWordChar(text.codePointAt(i), options.isCleanWords())) {
+                int codePoint = text.codePointAt(i);
+                word.appendCodePoint(Character.toLowerCase(codePoint));
+                i += Character.charCount(codePoint);
+            }
+
+            if (word.isEmpty() || word.codePointCount(0, word.length()) < options.getMinWordLength()) {
+                continue;
+            }
+            String token = word.toString();
+            if (!stopWords.contains(token)) {
+                counts.merge(token, 1, Integer::sum);
+            }
+        }
+
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(options.getMaxNumWords())
+                .map(entry -> new WordCount(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Same as {@link #count(String, WordCloudOptions)} for a text that is already counted, e.g. a stored
+     * term vector: {@code counts[i]} occurrences of {@code words[i]}. Only valid with {@code cleanWords},
+     * which splits words the way the shared tokenizer does.
+     */
+    public List<WordCount> count(String[] words, int[] counts, WordCloudOptions options) {
+        if (options.getMaxNumWords() <= 0) {
+            return List.of();
+        }
+        Set<String> stopWords = options.isRemoveStopwords() ? StopWords.forLanguage(options.getLanguage()) : Set.of();
+        Comparator<WordCount> order = Comparator.comparingInt(WordCount::count).reversed()
+                .thenComparing(WordCount::word);
+        PriorityQueue<WordCount> best = new PriorityQueue<>(order.reversed());
+
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word == null || word.codePointCount(0, word.length()) < options.getMinWordLength() || stopWords.contains(word)) {
+                continue;
+            }
+            WordCount candidate = new WordCount(word, counts[i]);
+            if (best.size() < options.getMaxNumWords()) {
+                best.add(candidate);
+            } else if (order.compare(candidate, best.peek()) < 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+
+        List<WordCount> result = new ArrayList<>(best);
+        result.sort(order);
+        return result;
+    }
+
+    private static boolean isWordChar(int codePoint, boolean cleanWords) {
+        return cleanWords ? Character.isLetterOrDigit(codePoint) : !Character.isWhitespace(codePoint);
+    }
+
+    public record WordCount(String word, int count) {
+    }
+}
@@ -0,0 +1,18 @@
+-- Keep only the oldest active job of every file before making active jobs unique per file.
+UPDATE analysis_jobs j
+SET status = 'FAILED', error = 'Duplicate of an earlier job', finished_at = now()
+WHERE j.status IN ('QUEUED', 'RUNNING')
+  AND EXISTS (
+      SELECT 1 FROM analysis_jobs o
+      WHERE o.file_id = j.file_id
+        AND o.status IN ('QUEUED', 'RUNNING')
+        AND (o.created_at, o.id) < (j.created_at, j.id)
+  );
+
+CREATE UNIQUE INDEX uq_analysis_jobs_active_file_id ON analysis_jobs (file_id) WHERE status IN ('QUEUED', 'RUNNING');
+
+ALTER TABLE analysis_jobs ADD COLUMN heartbeat_at TIMESTAMP WITH TIME ZONE;
+UPDATE analysis_jobs SET heartbeat_at = started_at WHERE status = 'RUNNING';
+
+DROP INDEX idx_analysis_jobs_running;
+CREATE INDEX idx_analysis_jobs_running ON analysis_jobs (heartbeat_at) WHERE status = 'RUNNING';
@@ -0,0 +1,4 @@
+CREATE TABLE minhash_signatures (
+    file_id UUID PRIMARY KEY,
+    signature BYTEA NOT NULL
+);
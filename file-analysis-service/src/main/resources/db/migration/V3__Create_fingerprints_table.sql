@@ -0,0 +1,9 @@
+CREATE TABLE fingerprints (
+    file_id UUID NOT NULL,
+    start_offset INT NOT NULL,
+    end_offset INT NOT NULL,
+    hash BIGINT NOT NULL,
+    PRIMARY KEY (file_id, start_offset)
+);
+
+CREATE INDEX idx_fingerprints_hash_file_id ON fingerprints (hash, file_id);
@@ -0,0 +1,5 @@
+CREATE TABLE word_clouds (
+    file_id UUID PRIMARY KEY,
+    svg TEXT NOT NULL,
+    png BYTEA
+);
@@ -0,0 +1,14 @@
+CREATE TABLE analysis_jobs (
+    id UUID PRIMARY KEY,
+    file_id UUID NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    error TEXT,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    started_at TIMESTAMP WITH TIME ZONE,
+    finished_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX idx_analysis_jobs_queued ON analysis_jobs (created_at) WHERE status = 'QUEUED';
+CREATE INDEX idx_analysis_jobs_running ON analysis_jobs (started_at) WHERE status = 'RUNNING';
+CREATE INDEX idx_analysis_jobs_file_id ON analysis_jobs (file_id);
@@ -0,0 +1 @@
+CREATE INDEX idx_analysis_results_without_word_cloud ON analysis_results (file_id) WHERE word_cloud_url IS NULL;
\ No newline at end of file
@@ -0,0 +1,5 @@
+CREATE TABLE file_event_offsets (
+    file_id UUID PRIMARY KEY,
+    last_event_id BIGINT NOT NULL,
+    deleted BOOLEAN NOT NULL
+);
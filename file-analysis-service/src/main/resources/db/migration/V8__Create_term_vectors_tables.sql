@@ -0,0 +1,9 @@
+CREATE TABLE terms (
+    id SERIAL PRIMARY KEY,
+    term VARCHAR(64) NOT NULL UNIQUE
+);
+
+CREATE TABLE term_vectors (
+    file_id UUID PRIMARY KEY,
+    vector BYTEA NOT NULL
+);
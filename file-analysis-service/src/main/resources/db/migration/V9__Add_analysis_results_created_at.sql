@@ -0,0 +1,3 @@
+ALTER TABLE analysis_results ADD COLUMN created_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+CREATE INDEX analysis_results_created_at_file_id_idx ON analysis_results (created_at, file_id);
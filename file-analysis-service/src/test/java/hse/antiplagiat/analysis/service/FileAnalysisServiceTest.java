@@ -0,0 +1,168 @@
+package hse.antiplagiat.analysis.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import hse.antiplagiat.analysis.dto.AnalysisResultDto;
+import hse.antiplagiat.analysis.exception.AnalysisNotFoundException;
+import hse.antiplagiat.analysis.exception.GlobalExceptionHandler;
+import hse.antiplagiat.analysis.exception.InvalidRequestException;
+import hse.antiplagiat.analysis.model.AnalysisResultEntity;
+import hse.antiplagiat.analysis.repository.AnalysisResultRepository;
+import hse.antiplagiat.analysis.service.WordCloudService.RenderedWordCloud;
+import hse.antiplagiat.analysis.text.TextStatisticsScanner;
+import hse.antiplagiat.analysis.text.Tokenizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileAnalysisServiceTest {
+    private static final int THREADS = 16;
+    private static final UUID FILE_ID = UUID.randomUUID();
+
+    private final FileStorageClient fileStorageClient = mock(FileStorageClient.class);
+    private final AnalysisResultRepository analysisResultRepository = mock(AnalysisResultRepository.class);
+    private final WordCloudService wordCloudService = mock(WordCloudService.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SearchService searchService = mock(SearchService.class);
+    private final Cache<UUID, AnalysisResultDto> resultCache = Caffeine.newBuilder().build();
+    private final AtomicReference<AnalysisResultEntity> stored = new AtomicReference<>();
+    private final CountDownLatch lookups = new CountDownLatch(THREADS);
+
+    private FileAnalysisService service;
+
+    @BeforeEach
+    void setUp() {
+        // The repository behaves like the table: a lookup finds the row once it has been inserted.
+        when(analysisResultRepository.findByFileId(FILE_ID)).thenAnswer(invocation -> {
+            lookups.countDown();
+            return Optional.ofNullable(stored.get());
+        });
+        when(analysisResultRepository.insertIfAbsent(anyList())).thenAnswer(invocation -> {
+            List<AnalysisResultEntity> results = invocation.getArgument(0);
+            return new boolean[]{stored.compareAndSet(null, results.get(0))};
+        });
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(wordCloudService.render(any(), any(), any())).thenReturn(new RenderedWordCloud(null, null));
+
+        service = new FileAnalysisService(
+                fileStorageClient,
+                analysisResultRepository,
+                mock(SimilarityService.class),
+                mock(FingerprintService.class),
+                searchService,
+                mock(TermVectorService.class),
+                new Tokenizer(),
+                new TextStatisticsScanner(Integer.MAX_VALUE),
+                wordCloudService,
+                resultCache,
+                transactionTemplate,
+                new SimpleMeterRegistry(),
+                new ObjectMapper(),
+                1000, 1, 1000, 1000);
+    }
+
+    @Test
+    void concurrentCallsForOneFileShareOneAnalysis() throws Exception {
+        // The fetch is held until every caller has missed the stored result, so all of them overlap with it.
+        when(fileStorageClient.fetchFileContent(FILE_ID)).thenAnswer(invocation -> {
+            assertThat(lookups.await(10, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(100);
+            return "Two words.\nAnd three more.".getBytes(StandardCharsets.UTF_8);
+        });
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<AnalysisResultDto>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return service.analyzeFile(FILE_ID);
+                }));
+            }
+            start.countDown();
+
+            for (Future<AnalysisResultDto> result : results) {
+                AnalysisResultDto dto = result.get(30, TimeUnit.SECONDS);
+                assertThat(dto.getFileId()).isEqualTo(FILE_ID);
+                assertThat(dto.getParagraphsCount()).isEqualTo(2);
+                assertThat(dto.getWordsCount()).isEqualTo(5);
+            }
+        }
+
+        verify(fileStorageClient, times(1)).fetchFileContent(FILE_ID);
+        verify(analysisResultRepository, times(1)).insertIfAbsent(anyList());
+    }
+
+    @Test
+    void deletingWithinAnOuterTransactionLeavesCacheAndIndexAloneUntilItCommits() {
+        stored.set(AnalysisResultEntity.builder().fileId(FILE_ID).build());
+        resultCache.put(FILE_ID, AnalysisResultDto.builder().fileId(FILE_ID).build());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(service.deleteAnalysisIfExists(FILE_ID)).isTrue();
+            assertThat(resultCache.getIfPresent(FILE_ID)).isNotNull();
+            verify(searchService, never()).remove(FILE_ID);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(resultCache.getIfPresent(FILE_ID)).isNull();
+        verify(searchService).remove(FILE_ID);
+    }
+
+    @Test
+    void deletingAMissingResultDespiteAStaleCacheEntryIsANoOp() {
+        resultCache.put(FILE_ID, AnalysisResultDto.builder().fileId(FILE_ID).build());
+
+        assertThat(service.deleteAnalysisIfExists(FILE_ID)).isFalse();
+        assertThat(resultCache.getIfPresent(FILE_ID)).isNull();
+        assertThatThrownBy(() -> service.deleteAnalysis(FILE_ID)).isInstanceOf(AnalysisNotFoundException.class);
+    }
+
+    @Test
+    void invalidListingRequestsAreRejectedAsBadRequests() {
+        assertThatThrownBy(() -> service.listAnalyses("not-a-cursor", 10))
+                .isInstanceOf(InvalidRequestException.class)
+                .hasMessage("Invalid cursor: not-a-cursor");
+        assertThatThrownBy(() -> service.listAnalyses(null, 0))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> service.listAnalyses(null, 1001))
+                .isInstanceOf(InvalidRequestException.class);
+
+        assertThat(new GlobalExceptionHandler().handleInvalidRequestException(
+                new InvalidRequestException("Invalid cursor: not-a-cursor")).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+}
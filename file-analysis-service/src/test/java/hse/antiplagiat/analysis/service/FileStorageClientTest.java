@@ -0,0 +1,88 @@
+package hse.antiplagiat.analysis.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.support.HttpRequestWrapper;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileStorageClientTest {
+    private static final byte[] CONTENT = "Content that compresses well. ".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer storage;
+    private volatile String acceptEncoding;
+    private volatile boolean compressed;
+    private FileStorageClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Answers like file-storage-service does for a deflate-stored file: the zlib stream as it is stored
+        // to clients that accept deflate, the decoded content to everyone else.
+        byte[] deflated = deflate(CONTENT);
+        storage = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        storage.createContext("/api/files/", exchange -> {
+            acceptEncoding = exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING);
+            compressed = acceptEncoding != null && acceptEncoding.contains("deflate");
+            byte[] body = compressed ? deflated : CONTENT;
+            if (compressed) {
+                exchange.getResponseHeaders().set(HttpHeaders.CONTENT_ENCODING, "deflate");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        storage.start();
+
+        // Stands in for the load balancer: the service name resolves to the stub.
+        int port = storage.getAddress().getPort();
+        RestClient.Builder builder = RestClient.builder()
+                .requestFactory(new JdkClientHttpRequestFactory())
+                .requestInterceptor((request, body, execution) -> execution.execute(new HttpRequestWrapper(request) {
+                    @Override
+                    public URI getURI() {
+                        return UriComponentsBuilder.fromUri(request.getURI())
+                                .host("127.0.0.1").port(port).build(true).toUri();
+                    }
+                }, body));
+        client = new FileStorageClient(builder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.stop(0);
+    }
+
+    @Test
+    void fileContentTravelsCompressedAndIsInflated() {
+        byte[] content = client.fetchFileContent(UUID.randomUUID());
+
+        assertThat(acceptEncoding).isEqualTo("deflate");
+        assertThat(compressed).isTrue();
+        assertThat(content).isEqualTo(CONTENT);
+    }
+
+    private static byte[] deflate(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,94 @@
+package hse.antiplagiat.analysis.text;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextStatisticsScannerTest {
+    private static final TextStatisticsScanner SEQUENTIAL = new TextStatisticsScanner(Integer.MAX_VALUE);
+    // The lowest threshold the scanner accepts, so that anything above 1 KiB goes through fork/join.
+    private static final TextStatisticsScanner PARALLEL = new TextStatisticsScanner(1024);
+
+    private static final String[] FRAGMENTS = {
+            "word", "слово", "ёжик", "日本語", "😀", "á", " ", "  ", "\t", "\n", "\r\n", "\n\n", "\u000b", "\f",
+            "\u0001", "\u001f", "\u0000", " ", " ", ".", ",", "—"
+    };
+
+    static Stream<Arguments> texts() {
+        Stream<Arguments> fixed = Stream.of(
+                Arguments.of("empty", ""),
+                Arguments.of("ascii", "The quick brown fox.\nJumps over\n\nthe lazy dog."),
+                Arguments.of("cyrillic", "Привет, мир!\nЁжик в тумане.\n"),
+                Arguments.of("emoji", "😀 😃\n😄😁 x"),
+                Arguments.of("only whitespace", " \t\r\n\u000b\f \n"),
+                Arguments.of("only control", "\u0001\u0002\n\u0003"),
+                Arguments.of("control around words", "\u0001 a \u0001 b \u0001"),
+                Arguments.of("control between words", "a \u0001 \u0002 b"),
+                Arguments.of("crlf", "line one\r\nline two\r\n\r\nline three"),
+                Arguments.of("no trailing newline", "a\nb"),
+                Arguments.of("non-breaking space", "a b   c"),
+                Arguments.of("large ascii", generate(new Random(1), 3_000_000, true)),
+                Arguments.of("large multibyte", generate(new Random(2), 3_000_000, false)));
+        Stream<Arguments> random = IntStream.range(0, 200)
+                .mapToObj(seed -> Arguments.of("random " + seed, generate(new Random(seed), 1 + seed * 40, false)));
+        return Stream.concat(fixed, random);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("texts")
+    void matchesSplitImplementation(String name, String text) {
+        TextStatistics expected = split(text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(SEQUENTIAL.scan(bytes)).isEqualTo(expected);
+        assertThat(PARALLEL.scan(bytes)).isEqualTo(expected);
+    }
+
+    /**
+     * Malformed UTF-8 is the one documented divergence: decoding replaces every malformed sequence with
+     * U+FFFD, while the scanner counts lead bytes only. Paragraphs and words still match, because U+FFFD
+     * and stray bytes are both non-whitespace characters above U+0020.
+     */
+    @Test
+    void countsSymbolsOfMalformedInputByLeadBytes() {
+        byte[] bytes = {'a', ' ', (byte) 0x80, (byte) 0x80, ' ', (byte) 0xe2, (byte) 0x82, '\n', 'b'};
+        TextStatistics decoded = split(new String(bytes, StandardCharsets.UTF_8));
+
+        TextStatistics scanned = SEQUENTIAL.scan(bytes);
+
+        assertThat(scanned.paragraphsCount()).isEqualTo(decoded.paragraphsCount());
+        assertThat(scanned.wordsCount()).isEqualTo(decoded.wordsCount());
+        assertThat(scanned.symbolsCount()).isEqualTo(6);
+        assertThat(decoded.symbolsCount()).isEqualTo(8);
+    }
+
+    // The implementation the scanner replaced.
+    private static TextStatistics split(String content) {
+        int paragraphs = (int) Arrays.stream(content.split("\n"))
+                .filter(line -> !line.trim().isEmpty())
+                .count();
+        int words = content.trim().isEmpty() ? 0 : content.trim().split("\\s+").length;
+        return new TextStatistics(paragraphs, words, content.length());
+    }
+
+    private static String generate(Random random, int length, boolean ascii) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            String fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+            if (ascii && fragment.chars().anyMatch(c -> c > 0x7f)) {
+                fragment = "ascii";
+            }
+            text.append(fragment);
+        }
+        return text.toString();
+    }
+}
@@ -14,12 +14,16 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("io.micrometer:micrometer-registry-prometheus")
 
     implementation("org.springframework.cloud:spring-cloud-starter-netflix-eureka-client:4.1.2")
 
     implementation("org.postgresql:postgresql")
     implementation("org.flywaydb:flyway-core")
 
+    implementation("com.github.luben:zstd-jni:1.5.6-3")
+    implementation("org.apache.commons:commons-compress:1.26.2")
+
     compileOnly("org.projectlombok:lombok")
     annotationProcessor("org.projectlombok:lombok")
 
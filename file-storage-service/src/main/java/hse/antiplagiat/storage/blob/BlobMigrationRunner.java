@@ -0,0 +1,76 @@
+package hse.antiplagiat.storage.blob;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Moves content that is still stored in the {@code files.content} BYTEA column to the filesystem
+ * blob store and clears the column. Each row is moved in its own transaction, so the migration can
+ * be interrupted and resumed; until a row is moved its content is still served from the database.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.blob.migrate-on-startup", havingValue = "true")
+@RequiredArgsConstructor
+public class BlobMigrationRunner implements ApplicationRunner {
+    private static final int BATCH_SIZE = 100;
+
+    private final BlobStore blobStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final Logger log = LoggerFactory.getLogger(BlobMigrationRunner.class);
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!(blobStore instanceof FileSystemBlobStore fileSystemBlobStore)) {
+            return;
+        }
+
+        long migrated = 0;
+        List<PendingRow> batch;
+        do {
+            batch = jdbcTemplate.query(
+                    "SELECT id, encode(hash, 'hex') AS hash, size FROM files WHERE content IS NOT NULL LIMIT ?",
+                    (rs, rowNum) -> new PendingRow(rs.getObject("id", UUID.class), rs.getString("hash"), rs.getLong("size")),
+                    BATCH_SIZE);
+
+            for (PendingRow row : batch) {
+                transactionTemplate.executeWithoutResult(status -> migrate(fileSystemBlobStore, row));
+                migrated++;
+            }
+            if (!batch.isEmpty()) {
+                log.info("Moved {} files from the database to the filesystem blob store", migrated);
+            }
+        } while (batch.size() == BATCH_SIZE);
+    }
+
+    private void migrate(FileSystemBlobStore store, PendingRow row) {
+        jdbcTemplate.query("SELECT content FROM files WHERE id = ? AND content IS NOT NULL FOR UPDATE", rs -> {
+            try (InputStream in = rs.getBinaryStream(1)) {
+                store.write(row.id(), row.hash(), in, row.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to migrate content of file " + row.id(), e);
+            }
+        }, row.id());
+
+        if (store.contains(row.id())) {
+            jdbcTemplate.update("UPDATE files SET content = NULL WHERE id = ?", row.id());
+        }
+    }
+
+    private record PendingRow(UUID id, String hash, long size) {
+    }
+}
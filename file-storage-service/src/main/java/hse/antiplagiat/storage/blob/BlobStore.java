@@ -0,0 +1,34 @@
+package hse.antiplagiat.storage.blob;
+
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Storage backend for file content. File metadata always lives in the {@code files} table;
+ * implementations decide where the bytes go. Blobs are addressed by both the file ID and the
+ * SHA-256 hash of the content. The stored bytes depend on the encoding and dictionary of the row,
+ * so every row gets a blob of its own, even when a deleted or concurrently inserted row had the same
+ * hash.
+ */
+public interface BlobStore {
+    void write(UUID fileId, String hash, InputStream content, long size) throws IOException;
+
+    void transferTo(UUID fileId, String hash, OutputStream out) throws IOException;
+
+    InputStream openStream(UUID fileId, String hash) throws IOException;
+
+    /**
+     * Writes {@code count} bytes starting at {@code position}. Backends that can seek should override this.
+     */
+    default void transferRangeTo(UUID fileId, String hash, long position, long count, OutputStream out) throws IOException {
+        try (InputStream in = openStream(fileId, hash)) {
+            StreamUtils.copyRange(in, out, position, position + count - 1);
+        }
+    }
+
+    void delete(UUID fileId, String hash) throws IOException;
+}
@@ -0,0 +1,67 @@
+package hse.antiplagiat.storage.blob;
+
+import hse.antiplagiat.storage.exception.FileNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * Keeps content in the {@code files.content} BYTEA column of the file's own row.
+ */
+@RequiredArgsConstructor
+public class DatabaseBlobStore implements BlobStore {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void write(UUID fileId, String hash, InputStream content, long size) {
+        jdbcTemplate.update("UPDATE files SET content = ? WHERE id = ?", ps -> {
+            ps.setBinaryStream(1, content, size);
+            ps.setObject(2, fileId);
+        });
+    }
+
+    @Override
+    public void transferTo(UUID fileId, String hash, OutputStream out) throws IOException {
+        try {
+            Boolean found = jdbcTemplate.query("SELECT content FROM files WHERE id = ? AND content IS NOT NULL", rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                try (InputStream in = rs.getBinaryStream(1)) {
+                    in.transferTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }, fileId);
+
+            if (!Boolean.TRUE.equals(found)) {
+                throw new FileNotFoundException("File content not found with ID: " + fileId);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public InputStream openStream(UUID fileId, String hash) {
+        // The driver reads BYTEA values into memory anyway, so there is nothing to gain from keeping the result set open.
+        byte[] content = jdbcTemplate.query("SELECT content FROM files WHERE id = ? AND content IS NOT NULL",
+                rs -> rs.next() ? rs.getBytes(1) : null, fileId);
+        if (content == null) {
+            throw new FileNotFoundException("File content not found with ID: " + fileId);
+        }
+        return new ByteArrayInputStream(content);
+    }
+
+    @Override
+    public void delete(UUID fileId, String hash) {
+        // The content is removed together with the row.
+    }
+}
@@ -0,0 +1,119 @@
+package hse.antiplagiat.storage.blob;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.UUID;
+
+/**
+ * Store on the local filesystem: the blob of a file lives at {@code root/ab/cd/<file-id>}. Blobs are
+ * not shared between rows even when their content is the same: the stored bytes depend on the encoding
+ * and dictionary of the row, and a blob of its own can be written and deleted without coordinating with
+ * concurrent uploads and deletions of the same content.
+ * <p>
+ * Writes go to a temporary file first and are moved into place atomically, replacing whatever is there,
+ * so readers never see a partial blob. Reads use {@link FileChannel#transferTo} and never copy the file
+ * into the heap.
+ * <p>
+ * Blobs written before they were keyed by file ID are still read from {@code root/ab/cd/<sha-256>}, and
+ * rows that still have their content in the BYTEA column (not yet migrated) are read from the database.
+ */
+@RequiredArgsConstructor
+public class FileSystemBlobStore implements BlobStore {
+    private final Path root;
+    private final DatabaseBlobStore legacyStore;
+
+    @Override
+    public void write(UUID fileId, String hash, InputStream content, long size) throws IOException {
+        Path target = resolve(fileId);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), fileId.toString(), ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void transferTo(UUID fileId, String hash, OutputStream out) throws IOException {
+        Path path = find(fileId, hash);
+        if (path == null) {
+            legacyStore.transferTo(fileId, hash, out);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, 0, channel.size(), out);
+        }
+    }
+
+    @Override
+    public void transferRangeTo(UUID fileId, String hash, long position, long count, OutputStream out) throws IOException {
+        Path path = find(fileId, hash);
+        if (path == null) {
+            legacyStore.transferRangeTo(fileId, hash, position, count, out);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            transfer(channel, position, Math.min(count, channel.size() - position), out);
+        }
+    }
+
+    @Override
+    public InputStream openStream(UUID fileId, String hash) throws IOException {
+        Path path = find(fileId, hash);
+        if (path == null) {
+            return legacyStore.openStream(fileId, hash);
+        }
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void delete(UUID fileId, String hash) throws IOException {
+        if (!Files.deleteIfExists(resolve(fileId))) {
+            Files.deleteIfExists(resolveLegacy(hash));
+        }
+    }
+
+    public boolean contains(UUID fileId) {
+        return Files.exists(resolve(fileId));
+    }
+
+    /**
+     * Returns the blob of the file, or null if its content is still in the database.
+     */
+    private Path find(UUID fileId, String hash) {
+        Path path = resolve(fileId);
+        if (Files.exists(path)) {
+            return path;
+        }
+        Path legacy = resolveLegacy(hash);
+        return Files.exists(legacy) ? legacy : null;
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long end = position + count;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, target);
+        }
+    }
+
+    private Path resolve(UUID fileId) {
+        String name = fileId.toString();
+        return root.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name);
+    }
+
+    private Path resolveLegacy(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
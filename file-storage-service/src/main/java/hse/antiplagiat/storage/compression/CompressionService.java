@@ -0,0 +1,209 @@
+package hse.antiplagiat.storage.compression;
+
+import hse.antiplagiat.storage.exception.FileStorageException;
+import hse.antiplagiat.storage.service.SpooledContent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compresses content before it is handed to the blob store and decompresses it on read. The SHA-256
+ * hash is always computed over the original bytes, so dedup does not depend on the codec.
+ * <p>
+ * Dictionaries are {@code *.dict} files in {@code storage.compression.dictionary-dir}, referenced by file
+ * name without the extension. The name of the dictionary used is stored with every file, so a new
+ * dictionary can be made active while files compressed with the old one stay readable as long as its
+ * file is kept.
+ */
+@Service
+public class CompressionService {
+    public static final String IDENTITY = "identity";
+
+    private final Map<String, ContentCodec> codecs = new HashMap<>();
+    private final Map<String, byte[]> dictionaries = new HashMap<>();
+    private final ContentCodec activeCodec;
+    private final String activeDictionary;
+    private final long minSize;
+    private final double maxRatio;
+    private final MeterRegistry meterRegistry;
+
+    private static final Logger log = LoggerFactory.getLogger(CompressionService.class);
+
+    public CompressionService(
+            MeterRegistry meterRegistry,
+            @Value("${storage.compression.codec:deflate}") String codec,
+            @Value("${storage.compression.deflate-level:6}") int deflateLevel,
+            @Value("${storage.compression.zstd-level:3}") int zstdLevel,
+            @Value("${storage.compression.min-size-bytes:512}") long minSize,
+            @Value("${storage.compression.max-ratio:0.9}") double maxRatio,
+            @Value("${storage.compression.dictionary-dir:}") String dictionaryDir,
+            @Value("${storage.compression.dictionary:}") String dictionary) throws IOException {
+        this.meterRegistry = meterRegistry;
+        this.minSize = minSize;
+        this.maxRatio = maxRatio;
+
+        for (ContentCodec contentCodec : new ContentCodec[]{new DeflateCodec(deflateLevel), new ZstdCodec(zstdLevel)}) {
+            codecs.put(contentCodec.encoding(), contentCodec);
+        }
+        if (!IDENTITY.equals(codec) && !codecs.containsKey(codec)) {
+            throw new IllegalStateException("Unknown compression codec: " + codec);
+        }
+        this.activeCodec = codecs.get(codec);
+
+        if (!dictionaryDir.isBlank()) {
+            loadDictionaries(Path.of(dictionaryDir));
+        }
+        if (!dictionary.isBlank() && !dictionaries.containsKey(dictionary)) {
+            throw new IllegalStateException("Compression dictionary not found: " + dictionary);
+        }
+        this.activeDictionary = dictionary.isBlank() ? null : dictionary;
+    }
+
+    /**
+     * Returns the content to store. Content is stored as is when compression is disabled, the file is
+     * small, or compression saves too little to be worth decompressing on every read.
+     */
+    public EncodedContent encode(SpooledContent content, int memoryThreshold, Path spoolDirectory) throws IOException {
+        if (activeCodec == null || content.getSize() < minSize) {
+            return EncodedContent.identity(content);
+        }
+
+        byte[] dictionary = activeDictionary == null ? null : dictionaries.get(activeDictionary);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        SpooledContent compressed = SpooledContent.capture(out -> {
+            try (InputStream in = content.openStream(); OutputStream compressing = activeCodec.compress(out, dictionary)) {
+                in.transferTo(compressing);
+            }
+        }, memoryThreshold, spoolDirectory);
+        sample.stop(codecTimer(activeCodec.encoding(), "compress"));
+
+        double ratio = (double) compressed.getSize() / content.getSize();
+        if (ratio > maxRatio) {
+            compressed.close();
+            return EncodedContent.identity(content);
+        }
+
+        DistributionSummary.builder("storage.compression.ratio")
+                .description("Original size divided by stored size")
+                .tag("codec", activeCodec.encoding())
+                .register(meterRegistry)
+                .record((double) content.getSize() / compressed.getSize());
+        return new EncodedContent(activeCodec.encoding(), activeDictionary, compressed, true);
+    }
+
+    /**
+     * Wraps the stored bytes of a file into a stream of the original content.
+     */
+    public InputStream decode(InputStream stored, String encoding, String dictionary) throws IOException {
+        if (encoding == null || IDENTITY.equals(encoding)) {
+            return stored;
+        }
+
+        ContentCodec codec = codecs.get(encoding);
+        if (codec == null) {
+            throw new FileStorageException("Unknown content encoding: " + encoding);
+        }
+        byte[] dictionaryBytes = null;
+        if (dictionary != null) {
+            dictionaryBytes = dictionaries.get(dictionary);
+            if (dictionaryBytes == null) {
+                throw new FileStorageException("Compression dictionary not found: " + dictionary);
+            }
+        }
+
+        return new TimedInputStream(codec.decompress(stored, dictionaryBytes), codecTimer(encoding, "decompress"));
+    }
+
+    private Timer codecTimer(String codec, String operation) {
+        return Timer.builder("storage.compression.time")
+                .description("Time spent compressing or decompressing file content")
+                .tag("codec", codec)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private void loadDictionaries(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.dict")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                dictionaries.put(name.substring(0, name.length() - ".dict".length()), Files.readAllBytes(file));
+            }
+        }
+        log.info("Loaded {} compression dictionaries from {}", dictionaries.size(), directory);
+    }
+
+    /**
+     * Records the time spent in reads, i.e. decompression without the time the caller spends writing the
+     * decompressed bytes out.
+     */
+    private static final class TimedInputStream extends FilterInputStream {
+        private final Timer timer;
+        private long nanos;
+
+        TimedInputStream(InputStream in, Timer timer) {
+            super(in);
+            this.timer = timer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, length);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                timer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Content as it goes to the blob store. Closing it deletes the compressed copy, if one was made.
+     */
+    public record EncodedContent(String encoding, String dictionary, SpooledContent content, boolean owned) implements Closeable {
+        static EncodedContent identity(SpooledContent content) {
+            return new EncodedContent(IDENTITY, null, content, false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (owned) {
+                content.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package hse.antiplagiat.storage.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression format for stored content. {@link #encoding()} is both the value kept in
+ * {@code files.encoding} and the HTTP content coding, so content compressed without a dictionary can be
+ * sent to clients that accept that coding as is.
+ */
+public interface ContentCodec {
+    String encoding();
+
+    OutputStream compress(OutputStream out, byte[] dictionary) throws IOException;
+
+    InputStream decompress(InputStream in, byte[] dictionary) throws IOException;
+}
@@ -0,0 +1,73 @@
+package hse.antiplagiat.storage.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Without a dictionary the output is a zlib stream, which is what HTTP calls {@code deflate}. With a
+ * dictionary a raw deflate stream is written instead and the last 32 KiB of the dictionary are preset on
+ * both ends; such content is never passed through to clients.
+ */
+public class DeflateCodec implements ContentCodec {
+    private static final int WINDOW_SIZE = 32 * 1024;
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int level;
+
+    public DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String encoding() {
+        return "deflate";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, byte[] dictionary) {
+        Deflater deflater = new Deflater(level, dictionary != null);
+        if (dictionary != null) {
+            deflater.setDictionary(window(dictionary));
+        }
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decompress(InputStream in, byte[] dictionary) {
+        Inflater inflater = new Inflater(dictionary != null);
+        if (dictionary != null) {
+            inflater.setDictionary(window(dictionary));
+        }
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static byte[] window(byte[] dictionary) {
+        return dictionary.length <= WINDOW_SIZE
+                ? dictionary
+                : Arrays.copyOfRange(dictionary, dictionary.length - WINDOW_SIZE, dictionary.length);
+    }
+}
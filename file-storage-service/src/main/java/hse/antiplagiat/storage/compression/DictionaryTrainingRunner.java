@@ -0,0 +1,74 @@
+package hse.antiplagiat.storage.compression;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import hse.antiplagiat.storage.model.FileMetadata;
+import hse.antiplagiat.storage.repository.FileRepository;
+import hse.antiplagiat.storage.service.FileStorageService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Trains a compression dictionary on a random sample of stored files and writes it to
+ * {@code storage.compression.train.output}. Put the file into the dictionary directory and name it in
+ * {@code storage.compression.dictionary} to compress new uploads with it.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.compression.train.output")
+public class DictionaryTrainingRunner implements ApplicationRunner {
+    private final JdbcTemplate jdbcTemplate;
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+
+    @Value("${storage.compression.train.output}")
+    private Path output;
+
+    @Value("${storage.compression.train.sample-files:2000}")
+    private int sampleFiles;
+
+    @Value("${storage.compression.train.max-sample-bytes:131072}")
+    private int maxSampleBytes;
+
+    @Value("${storage.compression.train.dictionary-bytes:112640}")
+    private int dictionaryBytes;
+
+    private static final Logger log = LoggerFactory.getLogger(DictionaryTrainingRunner.class);
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        List<UUID> ids = jdbcTemplate.queryForList("SELECT id FROM files ORDER BY random() LIMIT ?", UUID.class, sampleFiles);
+        ZstdDictTrainer trainer = new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, (long) ids.size() * maxSampleBytes), dictionaryBytes);
+
+        int samples = 0;
+        for (UUID id : ids) {
+            FileMetadata file = fileRepository.findMetadataById(id).orElse(null);
+            if (file == null || file.getSize() == 0) {
+                continue;
+            }
+            // Only the sample is decoded and kept in memory, however large the file is.
+            int sampleBytes = (int) Math.min(file.getSize(), maxSampleBytes);
+            ByteArrayOutputStream content = new ByteArrayOutputStream(sampleBytes);
+            fileStorageService.transferContentRange(file, 0, sampleBytes, content);
+            if (trainer.addSample(content.toByteArray())) {
+                samples++;
+            }
+        }
+
+        Files.write(output, trainer.trainSamples());
+        log.info("Trained a compression dictionary on {} files and wrote it to {}", samples, output);
+    }
+}
@@ -0,0 +1,39 @@
+package hse.antiplagiat.storage.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class ZstdCodec implements ContentCodec {
+    private final int level;
+
+    public ZstdCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String encoding() {
+        return "zstd";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream out, byte[] dictionary) throws IOException {
+        ZstdOutputStream zstd = new ZstdOutputStream(out, level);
+        if (dictionary != null) {
+            zstd.setDict(dictionary);
+        }
+        return zstd;
+    }
+
+    @Override
+    public InputStream decompress(InputStream in, byte[] dictionary) throws IOException {
+        ZstdInputStream zstd = new ZstdInputStream(in);
+        if (dictionary != null) {
+            zstd.setDict(dictionary);
+        }
+        return zstd;
+    }
+}
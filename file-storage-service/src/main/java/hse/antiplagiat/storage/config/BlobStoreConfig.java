@@ -0,0 +1,28 @@
+package hse.antiplagiat.storage.config;
+
+import hse.antiplagiat.storage.blob.BlobStore;
+import hse.antiplagiat.storage.blob.DatabaseBlobStore;
+import hse.antiplagiat.storage.blob.FileSystemBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+
+@Configuration
+public class BlobStoreConfig {
+    @Bean
+    public BlobStore blobStore(
+            @Value("${storage.blob.backend:database}") String backend,
+            @Value("${storage.blob.root:/var/lib/antiplagiat/blobs}") Path root,
+            JdbcTemplate jdbcTemplate) {
+        DatabaseBlobStore databaseBlobStore = new DatabaseBlobStore(jdbcTemplate);
+
+        return switch (backend) {
+            case "database" -> databaseBlobStore;
+            case "filesystem" -> new FileSystemBlobStore(root, databaseBlobStore);
+            default -> throw new IllegalStateException("Unknown blob store backend: " + backend);
+        };
+    }
+}
@@ -1,8 +1,14 @@
 package hse.antiplagiat.storage.controller;
 
+import hse.antiplagiat.storage.compression.CompressionService;
+import hse.antiplagiat.storage.dto.ArchiveEntryResultDto;
+import hse.antiplagiat.storage.dto.FileMetadataDto;
+import hse.antiplagiat.storage.dto.FilePageDto;
 import hse.antiplagiat.storage.dto.UploadResponseDto;
 import hse.antiplagiat.storage.exception.FileNotFoundException;
-import hse.antiplagiat.storage.model.FileEntity;
+import hse.antiplagiat.storage.model.FileMetadata;
+import hse.antiplagiat.storage.model.ListCursor;
+import hse.antiplagiat.storage.service.ArchiveIngestService;
 import hse.antiplagiat.storage.service.FileStorageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,13 +16,25 @@ import io.swagger.v3.oas.annotations.media.*;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
@@ -24,6 +42,10 @@ import java.util.UUID;
 @Tag(name = "Файловое хранилище", description = "API для загрузки, получения и удаления файлов")
 public class FileController {
     private final FileStorageService fileStorageService;
+    private final ArchiveIngestService archiveIngestService;
+
+    @Value("${storage.http.cache-max-age-seconds:86400}")
+    private long cacheMaxAgeSeconds;
 
     @Operation(
             summary = "Загрузка файла",
@@ -55,6 +77,93 @@ public class FileController {
         return ResponseEntity.ok(fileStorageService.storeFile(file));
     }
 
+    @Operation(
+            summary = "Загрузка архива файлов",
+            description = "Сохраняет каждый .txt файл из ZIP, TAR или TAR.GZ архива так же, как загрузка одного файла. " +
+                    "Архив читается потоково, файлы сохраняются пачками. В ответ по мере обработки передается " +
+                    "по одной JSON-строке на каждый файл архива в порядке следования: имя, ID и флаг 'existed' " +
+                    "или причина, по которой файл не сохранен. Каталоги пропускаются.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Архив с .txt файлами",
+                    required = true
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Результаты по файлам архива, по одному JSON-объекту в строке", content = {
+                            @Content(
+                                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = ArchiveEntryResultDto.class),
+                                    examples = {
+                                            @ExampleObject(name = "manifest", value = "{\"name\":\"ivanov/essay.txt\",\"id\":\"550e8400-e29b-41d4-a716-446655440000\",\"existed\":false}\n" +
+                                                    "{\"name\":\"petrov/essay.pdf\",\"error\":\"Only .txt files are allowed.\"}")
+                                    })
+                    }),
+                    @ApiResponse(responseCode = "500", description = "Пустой файл или неподдерживаемый формат архива", content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(example = "{\"message\": \"Only ZIP and TAR archives are allowed.\"}"))
+                    })
+            }
+    )
+    @PostMapping(value = "/archive", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> uploadArchive(
+            @RequestPart("file") MultipartFile file) {
+        ArchiveInputStream<? extends ArchiveEntry> entries = archiveIngestService.open(file);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> {
+                    try (entries) {
+                        archiveIngestService.ingest(entries, out);
+                    }
+                });
+    }
+
+    @Operation(
+            summary = "Список файлов",
+            description = "Возвращает метаданные файлов без содержимого в порядке загрузки, не больше 'limit' за раз. " +
+                    "Чтобы получить следующую страницу, передайте 'nextCursor' из ответа в параметре 'cursor'; " +
+                    "на последней странице 'nextCursor' отсутствует.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Страница списка файлов", content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = FilePageDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Неверный курсор или limit", content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(example = "{\"message\": \"Invalid cursor: abc\"}"))
+                    })
+            }
+    )
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FilePageDto> listFiles(
+            @Parameter(description = "Курсор из 'nextCursor' предыдущей страницы")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Максимальное число файлов на странице", example = "100")
+            @RequestParam(defaultValue = "100") int limit) {
+
+        return ResponseEntity.ok(fileStorageService.listFiles(cursor, limit));
+    }
+
+    @Operation(
+            summary = "Выгрузка списка файлов",
+            description = "Потоково передает метаданные всех файлов (после 'cursor', если он указан) в порядке загрузки, " +
+                    "по одному JSON-объекту в строке. Выбирается заголовком Accept: application/x-ndjson.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Метаданные файлов, по одному JSON-объекту в строке", content = {
+                            @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = FileMetadataDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Неверный курсор", content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(example = "{\"message\": \"Invalid cursor: abc\"}"))
+                    })
+            }
+    )
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFiles(
+            @Parameter(description = "Курсор, после которого начинается выгрузка")
+            @RequestParam(required = false) String cursor) {
+        ListCursor after = fileStorageService.parseCursor(cursor);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> fileStorageService.exportFiles(after, out));
+    }
+
     @Operation(
             summary = "Получение файла по ID",
             description = "Возвращает содержимое файла по его идентификатору",
@@ -62,20 +171,119 @@ public class FileController {
                     @ApiResponse(responseCode = "200", description = "Файл найден", content = {
                             @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "HelloWorld"))
                     }),
+                    @ApiResponse(responseCode = "206", description = "Запрошенный диапазон байтов файла", content = {
+                            @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Hello"))
+                    }),
+                    @ApiResponse(responseCode = "304", description = "Содержимое не изменилось (совпал If-None-Match)"),
+                    @ApiResponse(responseCode = "416", description = "Диапазон за пределами файла"),
                     @ApiResponse(responseCode = "404", description = "Файл не найден", content = {
                             @Content(mediaType = "application/json", schema = @Schema(implementation = FileNotFoundException.class))
                     })
             }
     )
     @GetMapping("/{id}")
-    public ResponseEntity<String> getFileById(
+    public ResponseEntity<StreamingResponseBody> getFileById(
+            @Parameter(description = "UUID файла", example = "550e8400-e29b-41d4-a716-446655440000")
+            @PathVariable UUID id,
+            @Parameter(description = "Поддерживаемые клиентом кодировки; сжатое содержимое передается без распаковки, если его кодировка указана")
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @Parameter(description = "Диапазон байтов содержимого, например bytes=0-1023")
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @Parameter(description = "ETag, при совпадении с которым учитывается заголовок Range")
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest request) {
+
+        return contentResponse(fileStorageService.getFileById(id), acceptEncoding, range, ifRange, request);
+    }
+
+    @Operation(
+            summary = "Получение нескольких файлов",
+            description = "Возвращает содержимое нескольких файлов одним потоком. Для каждого запрошенного ID " +
+                    "в порядке запроса записываются 16 байт UUID, длина содержимого (8 байт, big-endian) и само " +
+                    "содержимое. Для отсутствующих файлов длина равна -1, содержимое не передается.",
+            requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    description = "Список UUID файлов",
+                    required = true,
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(type = "string", format = "uuid")))
+            ),
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Поток с содержимым файлов", content = {
+                            @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE, schema = @Schema(type = "string", format = "binary"))
+                    }),
+                    @ApiResponse(responseCode = "500", description = "Пустой список или слишком много ID", content = {
+                            @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(example = "{\"message\": \"No file IDs requested.\"}"))
+                    })
+            }
+    )
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> getFilesByIds(@RequestBody List<UUID> ids) {
+        fileStorageService.validateBulkRequest(ids);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(out -> fileStorageService.transferContents(ids, out));
+    }
+
+    @Operation(
+            summary = "Метаданные файла (HEAD)",
+            description = "Возвращает только заголовки: размер, имя, SHA-256 хэш и ETag файла. Содержимое файла не читается.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Файл найден"),
+                    @ApiResponse(responseCode = "304", description = "Содержимое не изменилось (совпал If-None-Match)"),
+                    @ApiResponse(responseCode = "404", description = "Файл не найден")
+            }
+    )
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> headFileById(
+            @Parameter(description = "UUID файла", example = "550e8400-e29b-41d4-a716-446655440000")
+            @PathVariable UUID id) {
+
+        FileMetadata file = fileStorageService.getFileById(id);
+
+        return ResponseEntity.ok()
+                .headers(metadataHeaders(file))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(entityTag(file, CompressionService.IDENTITY))
+                .cacheControl(cacheControl())
+                .contentLength(file.getSize())
+                .build();
+    }
+
+    @Operation(
+            summary = "Получение метаданных файла",
+            description = "Возвращает ID, имя, SHA-256 хэш и размер файла без чтения его содержимого",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Файл найден", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = FileMetadataDto.class))
+                    }),
+                    @ApiResponse(responseCode = "304", description = "Метаданные не изменились (совпал If-None-Match)"),
+                    @ApiResponse(responseCode = "404", description = "Файл не найден", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = FileNotFoundException.class))
+                    })
+            }
+    )
+    @GetMapping("/{id}/metadata")
+    public ResponseEntity<FileMetadataDto> getFileMetadata(
             @Parameter(description = "UUID файла", example = "550e8400-e29b-41d4-a716-446655440000")
             @PathVariable UUID id) {
 
-        FileEntity file = fileStorageService.getFileById(id);
-        String content = new String(file.getContent(), StandardCharsets.UTF_8);
+        FileMetadata file = fileStorageService.getFileById(id);
 
-        return ResponseEntity.ok(content);
+        return ResponseEntity.ok()
+                .eTag(entityTag(file, "metadata"))
+                .cacheControl(cacheControl())
+                .body(FileMetadataDto.builder()
+                        .id(file.getId())
+                        .name(file.getName())
+                        .hash(file.getHash())
+                        .size(file.getSize())
+                        .encoding(file.getEncoding())
+                        .storedSize(file.getStoredSize())
+                        .createdAt(file.getCreatedAt())
+                        .build());
     }
 
     @Operation(
@@ -85,20 +293,29 @@ public class FileController {
                     @ApiResponse(responseCode = "200", description = "Файл найден", content = {
                             @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "HelloWorld"))
                     }),
+                    @ApiResponse(responseCode = "206", description = "Запрошенный диапазон байтов файла", content = {
+                            @Content(mediaType = "text/plain", schema = @Schema(type = "string", example = "Hello"))
+                    }),
+                    @ApiResponse(responseCode = "304", description = "Содержимое не изменилось (совпал If-None-Match)"),
+                    @ApiResponse(responseCode = "416", description = "Диапазон за пределами файла"),
                     @ApiResponse(responseCode = "404", description = "Файл не найден", content = {
                             @Content(mediaType = "application/json", schema = @Schema(implementation = FileNotFoundException.class))
                     })
             }
     )
     @GetMapping("/hash/{hash}")
-    public ResponseEntity<String> getFileByHash(
+    public ResponseEntity<StreamingResponseBody> getFileByHash(
             @Parameter(description = "SHA-256 хэш файла", example = "a1b2c3d4e5f67890... (минимум 64 символа)")
-            @PathVariable String hash) {
+            @PathVariable String hash,
+            @Parameter(description = "Поддерживаемые клиентом кодировки; сжатое содержимое передается без распаковки, если его кодировка указана")
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @Parameter(description = "Диапазон байтов содержимого, например bytes=0-1023")
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @Parameter(description = "ETag, при совпадении с которым учитывается заголовок Range")
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest request) {
 
-        FileEntity file = fileStorageService.getFileByHash(hash);
-        String content = new String(file.getContent(), StandardCharsets.UTF_8);
-
-        return ResponseEntity.ok(content);
+        return contentResponse(fileStorageService.getFileByHash(hash), acceptEncoding, range, ifRange, request);
     }
 
     @Operation(
@@ -120,4 +337,125 @@ public class FileController {
 
         return ResponseEntity.noContent().build();
     }
+
+    private HttpHeaders metadataHeaders(FileMetadata file) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentDisposition(ContentDisposition.inline()
+                .filename(file.getName(), StandardCharsets.UTF_8)
+                .build());
+        headers.set("X-File-Id", file.getId().toString());
+        headers.set("X-Content-SHA256", file.getHash());
+        return headers;
+    }
+
+    /**
+     * A single byte range of the original content is answered with 206; multiple ranges are not supported
+     * and, like a malformed header, get the whole content. Otherwise content stored compressed without a
+     * dictionary is sent as is to clients that accept its encoding, and everyone else gets it decompressed.
+     * <p>
+     * Content never changes for a given hash, so every representation gets a strong ETag derived from
+     * the hash. It is not marked immutable, as the file can still be deleted; {@code cache-max-age-seconds}
+     * bounds how long caches may serve it afterwards. A range is only honoured when {@code If-Range} is
+     * absent or matches the ETag of the decoded content. Partial responses are not stored by caches: a cache
+     * keyed by URI alone, like the gateway's, would otherwise answer later full requests with the range.
+     */
+    private ResponseEntity<StreamingResponseBody> contentResponse(FileMetadata file, String acceptEncoding,
+                                                                  String rangeHeader, String ifRange, WebRequest request) {
+        MediaType contentType = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+        String identityTag = entityTag(file, CompressionService.IDENTITY);
+
+        HttpRange range = ifRange == null || ifRange.trim().equals(identityTag) ? singleRange(rangeHeader) : null;
+        boolean passthrough = range == null && !CompressionService.IDENTITY.equals(file.getEncoding())
+                && file.getDictionary() == null && accepts(acceptEncoding, file.getEncoding());
+        String eTag = passthrough ? entityTag(file, file.getEncoding()) : identityTag;
+
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+
+        if (range != null) {
+            long size = file.getSize();
+            long start = range.getRangeStart(size);
+            if (size == 0 || start >= size) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+            long end = range.getRangeEnd(size);
+
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .contentType(contentType)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noStore())
+                    .contentLength(end - start + 1)
+                    .body(out -> fileStorageService.transferContentRange(file, start, end - start + 1, out));
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(eTag)
+                .cacheControl(cacheControl());
+
+        if (passthrough) {
+            return response
+                    .header(HttpHeaders.CONTENT_ENCODING, file.getEncoding())
+                    .contentLength(file.getStoredSize())
+                    .body(out -> fileStorageService.transferStoredContent(file, out));
+        }
+
+        return response
+                .contentLength(file.getSize())
+                .body(out -> fileStorageService.transferContent(file, out));
+    }
+
+    /**
+     * The decoded content is tagged with the bare hash; other representations of the same file append
+     * their name so that caches never mix them up.
+     */
+    private static String entityTag(FileMetadata file, String representation) {
+        return CompressionService.IDENTITY.equals(representation)
+                ? "\"" + file.getHash() + "\""
+                : "\"" + file.getHash() + "-" + representation + "\"";
+    }
+
+    private CacheControl cacheControl() {
+        return CacheControl.maxAge(cacheMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+    }
+
+    private static HttpRange singleRange(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] coding = part.trim().split(";");
+            if (!coding[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < coding.length; i++) {
+                String parameter = coding[i].trim();
+                if (parameter.matches("[qQ]\\s*=\\s*0(\\.0{0,3})?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
 }
\ No newline at end of file
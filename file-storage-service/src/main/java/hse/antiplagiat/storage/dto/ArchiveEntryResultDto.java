@@ -0,0 +1,21 @@
+package hse.antiplagiat.storage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * One line of the archive upload manifest: the stored or existing file for an entry, or the reason
+ * the entry was not stored.
+ */
+@Builder
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ArchiveEntryResultDto {
+    private String name;
+    private UUID id;
+    private Boolean existed;
+    private String error;
+}
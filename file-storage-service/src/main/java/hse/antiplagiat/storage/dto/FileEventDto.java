@@ -0,0 +1,15 @@
+package hse.antiplagiat.storage.dto;
+
+import hse.antiplagiat.storage.model.FileEventType;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Builder
+@Data
+public class FileEventDto {
+    private long eventId;
+    private UUID fileId;
+    private FileEventType type;
+}
@@ -0,0 +1,19 @@
+package hse.antiplagiat.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+@Data
+public class FileMetadataDto {
+    private UUID id;
+    private String name;
+    private String hash;
+    private long size;
+    private String encoding;
+    private long storedSize;
+    private Instant createdAt;
+}
@@ -0,0 +1,13 @@
+package hse.antiplagiat.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Builder
+@Data
+public class FilePageDto {
+    private List<FileMetadataDto> files;
+    private String nextCursor;
+}
@@ -0,0 +1,7 @@
+package hse.antiplagiat.storage.exception;
+
+public class InvalidRequestException extends FileStorageException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
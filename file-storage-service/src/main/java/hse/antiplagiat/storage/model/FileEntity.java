@@ -5,9 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.JdbcTypeCode;
 
-import java.sql.Types;
+import java.time.Instant;
 import java.util.UUID;
 
 @Entity
@@ -24,11 +23,22 @@ public class FileEntity {
     @Column(name = "name", nullable = false)
     private String name;
 
+    @Convert(converter = HexStringConverter.class)
     @Column(name = "hash", nullable = false, unique = true)
     private String hash;
 
-    @Lob
-    @JdbcTypeCode(Types.VARBINARY)
-    @Column(name = "content", nullable = false)
-    private byte[] content;
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "encoding", nullable = false)
+    private String encoding;
+
+    @Column(name = "dictionary")
+    private String dictionary;
+
+    @Column(name = "stored_size", nullable = false)
+    private long storedSize;
+
+    @Column(name = "created_at", nullable = false, insertable = false, updatable = false)
+    private Instant createdAt;
 }
\ No newline at end of file
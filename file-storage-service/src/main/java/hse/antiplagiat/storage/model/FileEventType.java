@@ -0,0 +1,6 @@
+package hse.antiplagiat.storage.model;
+
+public enum FileEventType {
+    STORED,
+    DELETED
+}
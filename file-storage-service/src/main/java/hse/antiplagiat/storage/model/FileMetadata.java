@@ -0,0 +1,22 @@
+package hse.antiplagiat.storage.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public interface FileMetadata {
+    UUID getId();
+
+    String getName();
+
+    String getHash();
+
+    long getSize();
+
+    String getEncoding();
+
+    String getDictionary();
+
+    long getStoredSize();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,21 @@
+package hse.antiplagiat.storage.model;
+
+import hse.antiplagiat.storage.util.HexUtils;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Keeps hashes as lowercase hex strings in Java while the column stores the raw digest bytes.
+ */
+@Converter
+public class HexStringConverter implements AttributeConverter<String, byte[]> {
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return attribute == null ? null : HexUtils.fromHex(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return dbData == null ? null : HexUtils.toHex(dbData);
+    }
+}
@@ -0,0 +1,54 @@
+package hse.antiplagiat.storage.repository;
+
+import hse.antiplagiat.storage.dto.FileEventDto;
+import hse.antiplagiat.storage.model.FileEventType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transactional outbox of file changes. Events are appended in the transaction that changes the file,
+ * so an event exists exactly when the change is committed; the insert trigger notifies the
+ * {@code file_events} channel on commit.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FileEventRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public void append(UUID fileId, FileEventType type) {
+        jdbcTemplate.update("INSERT INTO file_events (file_id, event_type) VALUES (?, ?)", fileId, type.name());
+    }
+
+    public void appendAll(List<UUID> fileIds, FileEventType type) {
+        jdbcTemplate.batchUpdate("INSERT INTO file_events (file_id, event_type) VALUES (?, ?)", fileIds, fileIds.size(),
+                (ps, fileId) -> {
+                    ps.setObject(1, fileId);
+                    ps.setString(2, type.name());
+                });
+    }
+
+    /**
+     * Locks the oldest pending events until the end of the current transaction. Events locked by
+     * another relay are skipped rather than waited for.
+     */
+    public List<FileEventDto> lockOldest(int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, file_id, event_type FROM file_events ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED",
+                (rs, rowNum) -> FileEventDto.builder()
+                        .eventId(rs.getLong("id"))
+                        .fileId(rs.getObject("file_id", UUID.class))
+                        .type(FileEventType.valueOf(rs.getString("event_type")))
+                        .build(),
+                limit);
+    }
+
+    public void deleteAll(List<FileEventDto> events) {
+        Long[] ids = events.stream().map(FileEventDto::getEventId).toArray(Long[]::new);
+        jdbcTemplate.update("DELETE FROM file_events WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+    }
+}
@@ -1,12 +1,48 @@
 package hse.antiplagiat.storage.repository;
 
 import hse.antiplagiat.storage.model.FileEntity;
+import hse.antiplagiat.storage.model.FileMetadata;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
-public interface FileRepository extends JpaRepository<FileEntity, UUID> {
-    Optional<FileEntity> findByHash(String hash);
-    boolean existsByHash(String hash);
+public interface FileRepository extends JpaRepository<FileEntity, UUID>, FileRepositoryCustom {
+    String METADATA_COLUMNS = "f.id as id, f.name as name, f.hash as hash, f.size as size, f.encoding as encoding,"
+            + " f.dictionary as dictionary, f.storedSize as storedSize, f.createdAt as createdAt";
+
+    Optional<FileMetadata> findMetadataById(UUID id);
+
+    Optional<FileMetadata> findMetadataByHash(String hash);
+
+    List<FileMetadata> findMetadataByIdIn(Collection<UUID> ids);
+
+    List<FileMetadata> findMetadataByHashIn(Collection<String> hashes);
+
+    /**
+     * Pages through the metadata of all files, oldest first, using the index on creation time and ID.
+     */
+    @Query("select " + METADATA_COLUMNS + " from FileEntity f order by f.createdAt, f.id")
+    List<FileMetadata> findMetadataPage(Pageable pageable);
+
+    /**
+     * Continues {@link #findMetadataPage} after the given key; the row comparison seeks straight to it in the
+     * index instead of skipping rows, so every page costs the same however deep it is.
+     */
+    @Query("select " + METADATA_COLUMNS + " from FileEntity f"
+            + " where (f.createdAt, f.id) > (:createdAt, :id) order by f.createdAt, f.id")
+    List<FileMetadata> findMetadataPageAfter(@Param("createdAt") Instant createdAt, @Param("id") UUID id, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from FileEntity f where f.id = :id")
+    int deleteMetadataById(@Param("id") UUID id);
 }
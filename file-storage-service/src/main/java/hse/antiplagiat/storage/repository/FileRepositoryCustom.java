@@ -0,0 +1,20 @@
+package hse.antiplagiat.storage.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface FileRepositoryCustom {
+    /**
+     * Inserts the file unless a file with the same hash already exists. Returns whether it was inserted.
+     */
+    boolean insertMetadata(UUID id, String name, byte[] hash, long size, String encoding, String dictionary, long storedSize);
+
+    /**
+     * Inserts the files in one JDBC batch, skipping those whose hash already exists. Returns for each
+     * file, in order, whether it was inserted.
+     */
+    boolean[] insertMetadataBatch(List<NewFile> files);
+
+    record NewFile(UUID id, String name, byte[] hash, long size, String encoding, String dictionary, long storedSize) {
+    }
+}
@@ -0,0 +1,46 @@
+package hse.antiplagiat.storage.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+@RequiredArgsConstructor
+public class FileRepositoryImpl implements FileRepositoryCustom {
+    private static final String INSERT_METADATA = """
+            INSERT INTO files (id, name, hash, size, encoding, dictionary, stored_size)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (hash) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean insertMetadata(UUID id, String name, byte[] hash, long size, String encoding, String dictionary, long storedSize) {
+        return jdbcTemplate.update(INSERT_METADATA, id, name, hash, size, encoding, dictionary, storedSize) > 0;
+    }
+
+    @Override
+    public boolean[] insertMetadataBatch(List<NewFile> files) {
+        // Relies on the driver reporting the count of every statement, i.e. reWriteBatchedInserts being off.
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_METADATA, files, files.size(), (ps, file) -> {
+            ps.setObject(1, file.id());
+            ps.setString(2, file.name());
+            ps.setBytes(3, file.hash());
+            ps.setLong(4, file.size());
+            ps.setString(5, file.encoding());
+            ps.setString(6, file.dictionary());
+            ps.setLong(7, file.storedSize());
+        });
+
+        boolean[] inserted = new boolean[files.size()];
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                inserted[i++] = count > 0;
+            }
+        }
+        return inserted;
+    }
+}
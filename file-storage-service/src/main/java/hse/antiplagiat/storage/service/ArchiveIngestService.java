@@ -0,0 +1,437 @@
+package hse.antiplagiat.storage.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hse.antiplagiat.storage.blob.BlobStore;
+import hse.antiplagiat.storage.compression.CompressionService;
+import hse.antiplagiat.storage.compression.CompressionService.EncodedContent;
+import hse.antiplagiat.storage.dto.ArchiveEntryResultDto;
+import hse.antiplagiat.storage.exception.FileStorageException;
+import hse.antiplagiat.storage.model.FileEventType;
+import hse.antiplagiat.storage.model.FileMetadata;
+import hse.antiplagiat.storage.repository.FileEventRepository;
+import hse.antiplagiat.storage.repository.FileRepository;
+import hse.antiplagiat.storage.repository.FileRepositoryCustom.NewFile;
+import hse.antiplagiat.storage.util.HexUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveException;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.ArchiveStreamFactory;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores every {@code .txt} entry of a ZIP, TAR or gzipped TAR archive as a separate file.
+ * <p>
+ * The archive is read entry by entry and never held in memory as a whole. Entries are stored in chunks
+ * of {@code batch-size}: one query looks up the hashes of the chunk that the digest filter cannot rule
+ * out, and the new files are inserted with one JDBC batch in one transaction together with their
+ * content and file events. The manifest line of each entry is written once its chunk is committed.
+ */
+@Service
+public class ArchiveIngestService {
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final FileRepository fileRepository;
+    private final FileEventRepository fileEventRepository;
+    private final BlobStore blobStore;
+    private final DigestFilter digestFilter;
+    private final BlobCleanup blobCleanup;
+    private final CompressionService compressionService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxEntries;
+    private final long maxEntryBytes;
+    private final int memoryThreshold;
+    private final Path spoolDirectory;
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveIngestService.class);
+
+    public ArchiveIngestService(
+            FileRepository fileRepository,
+            FileEventRepository fileEventRepository,
+            BlobStore blobStore,
+            DigestFilter digestFilter,
+            BlobCleanup blobCleanup,
+            CompressionService compressionService,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${storage.archive.batch-size:100}") int batchSize,
+            @Value("${storage.archive.max-entries:10000}") int maxEntries,
+            @Value("${storage.archive.max-entry-bytes:268435456}") long maxEntryBytes,
+            @Value("${storage.archive.memory-threshold-bytes:65536}") int memoryThreshold,
+            @Value("${storage.upload.spool-directory:${java.io.tmpdir}}") Path spoolDirectory) {
+        this.fileRepository = fileRepository;
+        this.fileEventRepository = fileEventRepository;
+        this.blobStore = blobStore;
+        this.digestFilter = digestFilter;
+        this.blobCleanup = blobCleanup;
+        this.compressionService = compressionService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxEntries = maxEntries;
+        this.maxEntryBytes = maxEntryBytes;
+        this.memoryThreshold = memoryThreshold;
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Opens the archive for {@link #ingest}. Fails before anything is stored if the upload is not a
+     * ZIP or (gzipped) TAR archive.
+     */
+    public ArchiveInputStream<? extends ArchiveEntry> open(MultipartFile archive) {
+        if (archive.isEmpty()) {
+            throw new FileStorageException("Cannot store empty archive.");
+        }
+
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(archive.getInputStream());
+            if (isGzip(in)) {
+                in = new BufferedInputStream(new GzipCompressorInputStream(in));
+            }
+
+            String format = ArchiveStreamFactory.detect(in);
+            return switch (format) {
+                case ArchiveStreamFactory.ZIP -> new ZipArchiveInputStream(in, StandardCharsets.UTF_8.name(), true, true);
+                case ArchiveStreamFactory.TAR -> new TarArchiveInputStream(in, StandardCharsets.UTF_8.name());
+                default -> throw new FileStorageException("Only ZIP and TAR archives are allowed. Received: " + format);
+            };
+        } catch (ArchiveException e) {
+            closeQuietly(in);
+            throw new FileStorageException("Only ZIP and TAR archives are allowed.", e);
+        } catch (IOException e) {
+            closeQuietly(in);
+            throw new FileStorageException("Error reading archive", e);
+        } catch (RuntimeException e) {
+            closeQuietly(in);
+            throw e;
+        }
+    }
+
+    /**
+     * Stores the entries and writes one JSON line per entry, in archive order. A corrupt archive ends
+     * the manifest with a line holding only the error; entries before it stay stored.
+     */
+    public void ingest(ArchiveInputStream<? extends ArchiveEntry> entries, OutputStream out) throws IOException {
+        List<PendingEntry> chunk = new ArrayList<>(batchSize);
+        int count = 0;
+        try {
+            ArchiveEntry entry;
+            while ((entry = nextEntry(entries)) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (++count > maxEntries) {
+                    flush(chunk, out);
+                    write(out, ArchiveEntryResultDto.builder()
+                            .error("Too many entries in archive, maximum is " + maxEntries)
+                            .build());
+                    return;
+                }
+
+                chunk.add(read(entries, entry));
+                if (chunk.size() == batchSize) {
+                    flush(chunk, out);
+                }
+            }
+            flush(chunk, out);
+        } catch (CorruptArchiveException e) {
+            log.warn("Error reading archive entry {}", e.name, e.getCause());
+            flush(chunk, out);
+            write(out, ArchiveEntryResultDto.builder()
+                    .name(e.name)
+                    .error("Corrupt archive: " + e.getCause().getMessage())
+                    .build());
+        } finally {
+            closeAll(chunk);
+        }
+    }
+
+    private static ArchiveEntry nextEntry(ArchiveInputStream<? extends ArchiveEntry> entries) throws CorruptArchiveException {
+        try {
+            return entries.getNextEntry();
+        } catch (IOException e) {
+            throw new CorruptArchiveException(null, e);
+        }
+    }
+
+    /**
+     * Spools the entry, or returns it already rejected.
+     */
+    private PendingEntry read(ArchiveInputStream<? extends ArchiveEntry> entries, ArchiveEntry entry)
+            throws CorruptArchiveException {
+        String name = entry.getName();
+        if (!name.toLowerCase(Locale.ROOT).endsWith(".txt")) {
+            return PendingEntry.rejected(name, "Only .txt files are allowed.");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            return PendingEntry.rejected(name, "File name is longer than " + MAX_NAME_LENGTH + " characters.");
+        }
+        if (!entries.canReadEntryData(entry)) {
+            return PendingEntry.rejected(name, "Entry is encrypted or uses an unsupported compression method.");
+        }
+
+        SpooledContent content;
+        try {
+            content = SpooledContent.spool(new SizeLimitedInputStream(entries, maxEntryBytes), memoryThreshold, spoolDirectory);
+        } catch (EntryTooLargeException e) {
+            return PendingEntry.rejected(name, "File is larger than " + maxEntryBytes + " bytes.");
+        } catch (NoSuchAlgorithmException e) {
+            throw new FileStorageException("Error calculating file hash", e);
+        } catch (IOException e) {
+            throw new CorruptArchiveException(name, e);
+        }
+
+        if (content.getSize() == 0) {
+            closeQuietly(content);
+            return PendingEntry.rejected(name, "Cannot store empty file.");
+        }
+        return new PendingEntry(name, content, content.getDigest(), HexUtils.toHex(content.getDigest()), null);
+    }
+
+    private void flush(List<PendingEntry> chunk, OutputStream out) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        List<ArchiveEntryResultDto> results;
+        try {
+            results = store(chunk);
+        } catch (RuntimeException e) {
+            log.error("Error storing {} archive entries", chunk.size(), e);
+            results = chunk.stream()
+                    .map(entry -> ArchiveEntryResultDto.builder()
+                            .name(entry.name())
+                            .error(entry.error() != null ? entry.error() : "Error storing file: " + e.getMessage())
+                            .build())
+                    .toList();
+        } finally {
+            closeAll(chunk);
+        }
+
+        for (ArchiveEntryResultDto result : results) {
+            outcome(result.getError() != null ? "rejected" : result.getExisted() ? "existed" : "stored").increment();
+            write(out, result);
+        }
+        out.flush();
+        chunk.clear();
+    }
+
+    private List<ArchiveEntryResultDto> store(List<PendingEntry> chunk) {
+        List<String> candidates = chunk.stream()
+                .filter(entry -> entry.error() == null && digestFilter.mightContain(entry.digest()))
+                .map(PendingEntry::hash)
+                .distinct()
+                .toList();
+        Map<String, UUID> existing = new HashMap<>();
+        findByHashes(candidates, existing);
+
+        // Only the first entry of every new hash is stored; repeats inside the archive refer to it.
+        Map<String, PendingEntry> toStore = new LinkedHashMap<>();
+        for (PendingEntry entry : chunk) {
+            if (entry.error() == null && !existing.containsKey(entry.hash())) {
+                toStore.putIfAbsent(entry.hash(), entry);
+            }
+        }
+
+        Map<String, UUID> stored = toStore.isEmpty()
+                ? Map.of()
+                : transactionTemplate.execute(status -> insert(List.copyOf(toStore.values()), existing));
+        toStore.values().forEach(entry -> digestFilter.add(entry.digest()));
+
+        List<ArchiveEntryResultDto> results = new ArrayList<>(chunk.size());
+        for (PendingEntry entry : chunk) {
+            if (entry.error() != null) {
+                results.add(ArchiveEntryResultDto.builder().name(entry.name()).error(entry.error()).build());
+                continue;
+            }
+            UUID storedId = stored.get(entry.hash());
+            boolean created = storedId != null && toStore.get(entry.hash()) == entry;
+            results.add(ArchiveEntryResultDto.builder()
+                    .name(entry.name())
+                    .id(storedId != null ? storedId : existing.get(entry.hash()))
+                    .existed(!created)
+                    .build());
+        }
+        return results;
+    }
+
+    /**
+     * Inserts the entries and writes their content; returns the IDs of the inserted files by hash.
+     * Entries stored meanwhile by a concurrent upload are added to {@code existing} instead.
+     */
+    private Map<String, UUID> insert(List<PendingEntry> entries, Map<String, UUID> existing) {
+        List<EncodedContent> encoded = new ArrayList<>(entries.size());
+        try {
+            List<NewFile> files = new ArrayList<>(entries.size());
+            for (PendingEntry entry : entries) {
+                EncodedContent content = compressionService.encode(entry.content(), memoryThreshold, spoolDirectory);
+                encoded.add(content);
+                files.add(new NewFile(UUID.randomUUID(), entry.name(), entry.digest(), entry.content().getSize(),
+                        content.encoding(), content.dictionary(), content.content().getSize()));
+            }
+
+            boolean[] inserted = fileRepository.insertMetadataBatch(files);
+
+            Map<String, UUID> stored = new HashMap<>();
+            List<String> raced = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                NewFile file = files.get(i);
+                String hash = entries.get(i).hash();
+                if (!inserted[i]) {
+                    raced.add(hash);
+                    continue;
+                }
+                try (InputStream stream = encoded.get(i).content().openStream()) {
+                    blobStore.write(file.id(), hash, stream, file.storedSize());
+                }
+                blobCleanup.deleteOnRollback(file.id(), hash);
+                stored.put(hash, file.id());
+            }
+
+            findByHashes(raced, existing);
+            for (String hash : raced) {
+                if (!existing.containsKey(hash)) {
+                    throw new FileStorageException("File with hash " + hash + " disappeared during upload");
+                }
+            }
+            if (!stored.isEmpty()) {
+                fileEventRepository.appendAll(List.copyOf(stored.values()), FileEventType.STORED);
+            }
+            return stored;
+        } catch (IOException e) {
+            throw new FileStorageException("Error storing file content", e);
+        } finally {
+            for (EncodedContent content : encoded) {
+                closeQuietly(content);
+            }
+        }
+    }
+
+    private void findByHashes(List<String> hashes, Map<String, UUID> found) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        for (FileMetadata file : fileRepository.findMetadataByHashIn(hashes)) {
+            found.put(file.getHash(), file.getId());
+        }
+    }
+
+    private void write(OutputStream out, ArchiveEntryResultDto result) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(result));
+        out.write('\n');
+    }
+
+    private Counter outcome(String outcome) {
+        return Counter.builder("storage.archive.entries")
+                .description("Archive entries by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static boolean isGzip(InputStream in) throws IOException {
+        in.mark(2);
+        byte[] signature = in.readNBytes(2);
+        in.reset();
+        return GzipCompressorInputStream.matches(signature, signature.length);
+    }
+
+    private static void closeAll(List<PendingEntry> entries) {
+        for (PendingEntry entry : entries) {
+            closeQuietly(entry.content());
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Error closing archive resource", e);
+        }
+    }
+
+    private record PendingEntry(String name, SpooledContent content, byte[] digest, String hash, String error) {
+        static PendingEntry rejected(String name, String error) {
+            return new PendingEntry(name, null, null, null, error);
+        }
+    }
+
+    private static final class EntryTooLargeException extends IOException {
+    }
+
+    private static final class CorruptArchiveException extends IOException {
+        private final String name;
+
+        CorruptArchiveException(String name, IOException cause) {
+            super(cause);
+            this.name = name;
+        }
+    }
+
+    /**
+     * Fails the read once more than {@code limit} bytes have been read, without closing the archive.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new EntryTooLargeException();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0 && (remaining -= read) < 0) {
+                throw new EntryTooLargeException();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package hse.antiplagiat.storage.service;
+
+import hse.antiplagiat.storage.blob.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Keeps blobs in step with the transaction that changes their metadata. A blob store outside the database
+ * cannot take part in that transaction, so a blob written by a transaction that rolls back is removed
+ * again, and a blob is only removed after the deletion of its row has committed. Until then readers of the
+ * committed row still find the content.
+ * <p>
+ * This relies on every row having a blob of its own (see {@link BlobStore}): removing the blob of one row
+ * never takes content away from a concurrent upload or a re-upload of the same content.
+ * <p>
+ * Both methods have to be called inside a transaction. Failures to remove a blob are logged and leave an
+ * unreferenced blob behind. It is never read again, as no other row uses its file ID.
+ */
+@Component
+public class BlobCleanup {
+    private final BlobStore blobStore;
+
+    private static final Logger log = LoggerFactory.getLogger(BlobCleanup.class);
+
+    public BlobCleanup(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * Removes the blob just written for a new row if the transaction that inserted the row rolls back.
+     */
+    public void deleteOnRollback(UUID fileId, String hash) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    delete(fileId, hash);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the blob of a deleted row once the deletion has committed.
+     */
+    public void deleteAfterCommit(UUID fileId, String hash) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                delete(fileId, hash);
+            }
+        });
+    }
+
+    private void delete(UUID fileId, String hash) {
+        try {
+            blobStore.delete(fileId, hash);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not delete the content of file {}", fileId, e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package hse.antiplagiat.storage.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory set of the SHA-256 digests of stored files, used to skip the database lookup for uploads
+ * that are certainly new.
+ * <p>
+ * Only the first 8 bytes of each digest are kept, in an open-addressing table with linear probing and a
+ * counter per key so that deleting one of two files sharing a prefix keeps the other. A hit therefore
+ * means "possibly stored" and is confirmed with a query; a miss is definite. Every deviation from the
+ * exact contents of the {@code files} table (a file inserted by another instance, a race with the
+ * startup load) is handled by making the filter answer "possibly stored" or by the insert itself
+ * skipping duplicates, so the filter never causes a duplicate file.
+ * <p>
+ * Until the table has been loaded at startup every digest is reported as possibly stored.
+ */
+@Component
+public class DigestFilter {
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int size;
+    private volatile boolean loaded;
+
+    private static final Logger log = LoggerFactory.getLogger(DigestFilter.class);
+
+    public DigestFilter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(10_000);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        jdbcTemplate.query("SELECT substring(hash FROM 1 FOR 8) FROM files",
+                (RowCallbackHandler) rs -> add(rs.getBytes(1)));
+        loaded = true;
+        log.info("Loaded {} file digests into the upload dedup filter", size());
+    }
+
+    public boolean mightContain(byte[] digest) {
+        if (!loaded) {
+            return true;
+        }
+
+        long key = key(digest);
+        lock.readLock().lock();
+        try {
+            return counts[find(keys, counts, key)] > 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(byte[] digest) {
+        long key = key(digest);
+        lock.writeLock().lock();
+        try {
+            if ((size + 1) * 4L > keys.length * 3L) {
+                resize();
+            }
+            int slot = find(keys, counts, key);
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(byte[] digest) {
+        long key = key(digest);
+        lock.writeLock().lock();
+        try {
+            int slot = find(keys, counts, key);
+            if (counts[slot] == 0 || --counts[slot] > 0) {
+                return;
+            }
+            size--;
+            shiftBack(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long key(byte[] digest) {
+        long key = 0;
+        for (int i = 0; i < 8; i++) {
+            key = (key << 8) | (digest[i] & 0xff);
+        }
+        return key;
+    }
+
+    // Returns the slot holding the key, or the empty slot where it would be inserted.
+    private static int find(long[] keys, int[] counts, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (counts[slot] > 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion: moves later entries of the probe run into the freed slot so that
+    // lookups never have to step over deleted entries.
+    private void shiftBack(int free) {
+        int mask = keys.length - 1;
+        counts[free] = 0;
+        int slot = (free + 1) & mask;
+        while (counts[slot] > 0) {
+            long key = keys[slot];
+            int home = (int) (key ^ (key >>> 32)) & mask;
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keys[free] = key;
+                counts[free] = counts[slot];
+                counts[slot] = 0;
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize() {
+        long[] newKeys = new long[keys.length * 2];
+        int[] newCounts = new int[counts.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] > 0) {
+                int slot = find(newKeys, newCounts, keys[i]);
+                newKeys[slot] = keys[i];
+                newCounts[slot] = counts[i];
+            }
+        }
+        keys = newKeys;
+        counts = newCounts;
+    }
+}
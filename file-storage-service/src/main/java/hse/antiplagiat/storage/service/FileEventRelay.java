@@ -0,0 +1,186 @@
+package hse.antiplagiat.storage.service;
+
+import hse.antiplagiat.storage.dto.FileEventDto;
+import hse.antiplagiat.storage.repository.FileEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Delivers the {@code file_events} outbox to file-analysis-service. The relay listens on the
+ * {@code file_events} channel over its own connection, outside the pool, and drains the outbox
+ * whenever a notification arrives or the poll interval passes. A batch is deleted in the same
+ * transaction that locked it and only after the analysis service accepted it, so an event is
+ * delivered at least once; the analysis service discards repeats by event ID.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.events.enabled", havingValue = "true", matchIfMissing = true)
+public class FileEventRelay {
+    private static final String CHANNEL = "file_events";
+    private static final long MAX_RECONNECT_DELAY_MS = 30_000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final FileEventRepository fileEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final RestClient loadBalancedRestClient;
+    private final String analysisUrl;
+    private final int batchSize;
+    private final int pollIntervalMs;
+    private final long retryDelayMs;
+    private final Counter relayed;
+    private final Counter failures;
+
+    private volatile boolean running;
+    private volatile Connection listener;
+    private Thread thread;
+
+    private static final Logger log = LoggerFactory.getLogger(FileEventRelay.class);
+
+    public FileEventRelay(
+            DataSourceProperties dataSourceProperties,
+            FileEventRepository fileEventRepository,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("loadBalancedRestClientBuilder") RestClient.Builder loadBalancedBuilder,
+            MeterRegistry meterRegistry,
+            @Value("${storage.events.analysis-url:http://FILE-ANALYSIS-SERVICE/api/analysis/events}") String analysisUrl,
+            @Value("${storage.events.batch-size:100}") int batchSize,
+            @Value("${storage.events.poll-interval-ms:5000}") int pollIntervalMs,
+            @Value("${storage.events.retry-delay-ms:1000}") long retryDelayMs) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.fileEventRepository = fileEventRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.loadBalancedRestClient = loadBalancedBuilder.build();
+        this.analysisUrl = analysisUrl;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retryDelayMs = retryDelayMs;
+        this.relayed = Counter.builder("storage.events.relayed")
+                .description("File events delivered to file-analysis-service")
+                .register(meterRegistry);
+        this.failures = Counter.builder("storage.events.relay.failures")
+                .description("Batches of file events that file-analysis-service did not accept")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("file-event-relay").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        Connection connection = listener;
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Error closing the file event listener connection", e);
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(pollIntervalMs);
+        }
+    }
+
+    private void run() {
+        long reconnectDelayMs = retryDelayMs;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                listener = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                reconnectDelayMs = retryDelayMs;
+                relay(connection.unwrap(PGConnection.class));
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("File event listener connection failed, reconnecting in {} ms", reconnectDelayMs, e);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                Thread.sleep(reconnectDelayMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reconnectDelayMs = Math.min(reconnectDelayMs * 2, MAX_RECONNECT_DELAY_MS);
+        }
+    }
+
+    private void relay(PGConnection connection) throws SQLException, InterruptedException {
+        while (running) {
+            if (!drain()) {
+                // Notifications that arrive meanwhile are consumed below instead of triggering a retry each.
+                Thread.sleep(retryDelayMs);
+            }
+            connection.getNotifications(pollIntervalMs);
+        }
+    }
+
+    /**
+     * Delivers batches until the outbox is empty. Returns {@code false} if a batch was not accepted;
+     * it stays in the outbox and is retried first on the next drain.
+     */
+    private boolean drain() {
+        try {
+            int delivered;
+            do {
+                delivered = transactionTemplate.execute(status -> {
+                    List<FileEventDto> events = fileEventRepository.lockOldest(batchSize);
+                    if (events.isEmpty()) {
+                        return 0;
+                    }
+                    publish(events);
+                    fileEventRepository.deleteAll(events);
+                    return events.size();
+                });
+                relayed.increment(delivered);
+            } while (running && delivered == batchSize);
+            return true;
+        } catch (RestClientException e) {
+            failures.increment();
+            log.warn("File-analysis-service did not accept file events: {}", e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error("Error relaying file events", e);
+            return false;
+        }
+    }
+
+    private void publish(List<FileEventDto> events) {
+        loadBalancedRestClient.post()
+                .uri(analysisUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(events)
+                .retrieve()
+                .toBodilessEntity();
+    }
+}
@@ -1,24 +1,74 @@
 package hse.antiplagiat.storage.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hse.antiplagiat.storage.blob.BlobStore;
+import hse.antiplagiat.storage.compression.CompressionService;
+import hse.antiplagiat.storage.compression.CompressionService.EncodedContent;
+import hse.antiplagiat.storage.dto.FileMetadataDto;
+import hse.antiplagiat.storage.dto.FilePageDto;
 import hse.antiplagiat.storage.dto.UploadResponseDto;
 import hse.antiplagiat.storage.exception.FileNotFoundException;
 import hse.antiplagiat.storage.exception.FileStorageException;
-import hse.antiplagiat.storage.model.FileEntity;
+import hse.antiplagiat.storage.exception.InvalidRequestException;
+import hse.antiplagiat.storage.model.FileEventType;
+import hse.antiplagiat.storage.model.FileMetadata;
+import hse.antiplagiat.storage.model.ListCursor;
+import hse.antiplagiat.storage.repository.FileEventRepository;
 import hse.antiplagiat.storage.repository.FileRepository;
+import hse.antiplagiat.storage.util.HexUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class FileStorageService {
     private final FileRepository fileRepository;
+    private final FileEventRepository fileEventRepository;
+    private final BlobStore blobStore;
+    private final DigestFilter digestFilter;
+    private final BlobCleanup blobCleanup;
+    private final CompressionService compressionService;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
 
+    @Value("${storage.upload.memory-threshold-bytes:1048576}")
+    private int memoryThreshold;
+
+    @Value("${storage.upload.spool-directory:${java.io.tmpdir}}")
+    private Path spoolDirectory;
+
+    @Value("${storage.bulk.max-files:1000}")
+    private int bulkMaxFiles;
+
+    @Value("${storage.listing.max-limit:1000}")
+    private int listingMaxLimit;
+
+    @Value("${storage.listing.export-batch-size:1000}")
+    private int exportBatchSize;
+
+    @Transactional
     public UploadResponseDto storeFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new FileStorageException("Cannot store empty file.");
@@ -32,31 +82,48 @@ public class FileStorageService {
             fileName = "untitled_file_" + System.currentTimeMillis() + ".txt";
         }
 
-        try {
-            byte[] content = file.getBytes();
-            String hash = calculateHash(content);
-
-            if (fileRepository.existsByHash(hash)) {
-                FileEntity existingFile = fileRepository.findByHash(hash)
-                        .orElseThrow(() -> new FileStorageException("Existing file not found by hash after check."));
+        Timer.Sample hashing = Timer.start(meterRegistry);
+        try (InputStream source = file.getInputStream();
+             SpooledContent content = SpooledContent.spool(source, memoryThreshold, spoolDirectory)) {
+            byte[] digest = content.getDigest();
+            String hash = HexUtils.toHex(digest);
+            hashing.stop(stageTimer("hash"));
+            uploadSize().record(content.getSize());
 
-                return UploadResponseDto.builder()
-                        .id(existingFile.getId())
-                        .existed(true)
-                        .build();
+            if (digestFilter.mightContain(digest)) {
+                Timer.Sample lookup = Timer.start(meterRegistry);
+                Optional<FileMetadata> existingFile = fileRepository.findMetadataByHash(hash);
+                lookup.stop(stageTimer("lookup"));
+                if (existingFile.isPresent()) {
+                    return existed(existingFile.get());
+                }
             }
 
-            FileEntity newFile = FileEntity.builder()
-                    .id(UUID.randomUUID())
-                    .name(fileName)
-                    .content(content)
-                    .hash(hash)
-                    .build();
+            UUID id = UUID.randomUUID();
+            try (EncodedContent stored = compressionService.encode(content, memoryThreshold, spoolDirectory)) {
+                Timer.Sample metadata = Timer.start(meterRegistry);
+                boolean inserted = fileRepository.insertMetadata(id, fileName, digest, content.getSize(),
+                        stored.encoding(), stored.dictionary(), stored.content().getSize());
+                metadata.stop(stageTimer("metadata"));
+                if (!inserted) {
+                    // Stored meanwhile by a concurrent upload, possibly on another instance.
+                    digestFilter.add(digest);
+                    return existed(fileRepository.findMetadataByHash(hash)
+                            .orElseThrow(() -> new FileStorageException("File with hash " + hash + " disappeared during upload")));
+                }
 
-            fileRepository.save(newFile);
+                Timer.Sample blob = Timer.start(meterRegistry);
+                try (InputStream stream = stored.content().openStream()) {
+                    blobStore.write(id, hash, stream, stored.content().getSize());
+                }
+                blobCleanup.deleteOnRollback(id, hash);
+                blob.stop(stageTimer("blob"));
+            }
+            fileEventRepository.append(id, FileEventType.STORED);
+            digestFilter.add(digest);
 
             return UploadResponseDto.builder()
-                    .id(newFile.getId())
+                    .id(id)
                     .existed(false)
                     .build();
         } catch (NoSuchAlgorithmException e) {
@@ -66,32 +133,204 @@ public class FileStorageService {
         }
     }
 
-    public FileEntity getFileById(UUID id) {
-        return fileRepository.findById(id)
+    public FileMetadata getFileById(UUID id) {
+        return fileRepository.findMetadataById(id)
                 .orElseThrow(() -> new FileNotFoundException("File not found with ID: " + id));
     }
 
-    public FileEntity getFileByHash(String hash) {
-        return fileRepository.findByHash(hash)
+    public FileMetadata getFileByHash(String hash) {
+        if (!HexUtils.isHex(hash)) {
+            throw new FileNotFoundException("File not found with hash: " + hash);
+        }
+        return fileRepository.findMetadataByHash(hash.toLowerCase())
                 .orElseThrow(() -> new FileNotFoundException("File not found with hash: " + hash));
     }
 
-    public void deleteFile(UUID id) {
-        FileEntity file = getFileById(id);
-        fileRepository.delete(file);
+    /**
+     * Writes the original content of the file, decompressing it if it is stored compressed.
+     */
+    public void transferContent(FileMetadata file, OutputStream out) throws IOException {
+        if (CompressionService.IDENTITY.equals(file.getEncoding())) {
+            blobStore.transferTo(file.getId(), file.getHash(), out);
+            return;
+        }
+
+        try (InputStream in = compressionService.decode(
+                blobStore.openStream(file.getId(), file.getHash()), file.getEncoding(), file.getDictionary())) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Writes {@code length} bytes of the original content starting at {@code start}. Uncompressed content
+     * is read from the requested position directly; compressed content has to be decompressed from the start.
+     */
+    public void transferContentRange(FileMetadata file, long start, long length, OutputStream out) throws IOException {
+        if (CompressionService.IDENTITY.equals(file.getEncoding())) {
+            blobStore.transferRangeTo(file.getId(), file.getHash(), start, length, out);
+            return;
+        }
+
+        try (InputStream in = compressionService.decode(
+                blobStore.openStream(file.getId(), file.getHash()), file.getEncoding(), file.getDictionary())) {
+            StreamUtils.copyRange(in, out, start, start + length - 1);
+        }
+    }
+
+    /**
+     * Writes the content exactly as stored, i.e. still compressed with {@link FileMetadata#getEncoding()}.
+     */
+    public void transferStoredContent(FileMetadata file, OutputStream out) throws IOException {
+        blobStore.transferTo(file.getId(), file.getHash(), out);
+    }
+
+    /**
+     * Writes the contents of the requested files as one length-prefixed stream. Every requested ID,
+     * in request order, is followed by the content length as a big-endian long and the content itself;
+     * IDs that are not stored get length {@code -1} and no content.
+     */
+    public void transferContents(List<UUID> ids, OutputStream out) throws IOException {
+        Map<UUID, FileMetadata> files = new HashMap<>();
+        for (FileMetadata file : fileRepository.findMetadataByIdIn(ids)) {
+            files.put(file.getId(), file);
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        for (UUID id : ids) {
+            FileMetadata file = files.get(id);
+            data.writeLong(id.getMostSignificantBits());
+            data.writeLong(id.getLeastSignificantBits());
+            if (file == null) {
+                data.writeLong(-1);
+                continue;
+            }
+            data.writeLong(file.getSize());
+            transferContent(file, data);
+        }
+        data.flush();
+    }
+
+    public void validateBulkRequest(List<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new FileStorageException("No file IDs requested.");
+        }
+        if (ids.size() > bulkMaxFiles) {
+            throw new FileStorageException("Too many file IDs requested: " + ids.size() + ", maximum is " + bulkMaxFiles);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} files after the cursor, oldest first, without their content. The next
+     * cursor is null on the last page.
+     */
+    public FilePageDto listFiles(String cursor, int limit) {
+        if (limit < 1 || limit > listingMaxLimit) {
+            throw new InvalidRequestException("Limit must be between 1 and " + listingMaxLimit + ": " + limit);
+        }
+        List<FileMetadata> page = findPage(parseCursor(cursor), limit);
+
+        return FilePageDto.builder()
+                .files(page.stream().map(FileStorageService::toDto).toList())
+                .nextCursor(page.size() < limit ? null : cursor(page.get(page.size() - 1)).encode())
+                .build();
+    }
+
+    /**
+     * Returns null for a missing cursor, i.e. the start of the listing.
+     */
+    public ListCursor parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        ListCursor parsed = ListCursor.decode(cursor);
+        if (parsed == null) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+        return parsed;
     }
 
-    private String calculateHash(byte[] content) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = digest.digest(content);
+    /**
+     * Writes every file after the cursor as one JSON line, oldest first. The files are read page by page
+     * and every page is flushed before the next one is read, so memory use does not grow with the table.
+     */
+    public void exportFiles(ListCursor after, OutputStream out) throws IOException {
+        while (true) {
+            List<FileMetadata> page = findPage(after, exportBatchSize);
+            for (FileMetadata file : page) {
+                out.write(objectMapper.writeValueAsBytes(toDto(file)));
+                out.write('\n');
+            }
+            out.flush();
+            if (page.size() < exportBatchSize) {
+                return;
+            }
+            after = cursor(page.get(page.size() - 1));
+        }
+    }
 
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hashBytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+    @Transactional
+    public void deleteFile(UUID id) {
+        FileMetadata file = getFileById(id);
+        if (fileRepository.deleteMetadataById(id) == 0) {
+            throw new FileNotFoundException("File not found with ID: " + id);
         }
+        fileEventRepository.append(id, FileEventType.DELETED);
+
+        byte[] digest = HexUtils.fromHex(file.getHash());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                digestFilter.remove(digest);
+            }
+        });
+        blobCleanup.deleteAfterCommit(file.getId(), file.getHash());
+    }
+
+    private List<FileMetadata> findPage(ListCursor after, int limit) {
+        return after == null
+                ? fileRepository.findMetadataPage(PageRequest.of(0, limit))
+                : fileRepository.findMetadataPageAfter(after.createdAt(), after.id(), PageRequest.of(0, limit));
+    }
+
+    private static ListCursor cursor(FileMetadata file) {
+        return new ListCursor(file.getCreatedAt(), file.getId());
+    }
+
+    private static FileMetadataDto toDto(FileMetadata file) {
+        return FileMetadataDto.builder()
+                .id(file.getId())
+                .name(file.getName())
+                .hash(file.getHash())
+                .size(file.getSize())
+                .encoding(file.getEncoding())
+                .storedSize(file.getStoredSize())
+                .createdAt(file.getCreatedAt())
+                .build();
+    }
+
+    private static UploadResponseDto existed(FileMetadata file) {
+        return UploadResponseDto.builder()
+                .id(file.getId())
+                .existed(true)
+                .build();
+    }
+
+    /**
+     * Stages of an upload: {@code hash} covers reading and spooling the upload, {@code lookup} the
+     * duplicate check, {@code metadata} the insert and {@code blob} writing the content. Compression is
+     * timed separately as {@code storage.compression.time}.
+     */
+    private Timer stageTimer(String stage) {
+        return Timer.builder("storage.upload.stage")
+                .description("Time spent in a stage of a file upload")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
 
-        return hexString.toString();
+    private DistributionSummary uploadSize() {
+        return DistributionSummary.builder("storage.upload.size")
+                .description("Size of uploaded files before compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
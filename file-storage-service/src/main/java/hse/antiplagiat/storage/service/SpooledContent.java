@@ -0,0 +1,135 @@
+package hse.antiplagiat.storage.service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Upload content read exactly once from its source stream. The SHA-256 digest is computed while
+ * reading; the bytes are kept in memory up to a threshold and spooled to a temporary file beyond it,
+ * so heap usage per upload never exceeds the threshold.
+ */
+public final class SpooledContent implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] memory;
+    private final Path file;
+    private final long size;
+    private final byte[] digest;
+
+    private SpooledContent(byte[] memory, Path file, long size, byte[] digest) {
+        this.memory = memory;
+        this.file = file;
+        this.size = size;
+        this.digest = digest;
+    }
+
+    public static SpooledContent spool(InputStream source, int memoryThreshold, Path spoolDirectory)
+            throws IOException, NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        SpooledContent content = capture(
+                out -> new DigestInputStream(source, messageDigest).transferTo(out), memoryThreshold, spoolDirectory);
+        return new SpooledContent(content.memory, content.file, content.size, messageDigest.digest());
+    }
+
+    /**
+     * Spools whatever the writer produces, e.g. a compressed copy of other content. No digest is computed.
+     */
+    public static SpooledContent capture(Writer writer, int memoryThreshold, Path spoolDirectory) throws IOException {
+        SpoolOutputStream out = new SpoolOutputStream(memoryThreshold, spoolDirectory);
+        try {
+            writer.writeTo(out);
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+        return new SpooledContent(out.file == null ? Arrays.copyOf(out.memory, out.memorySize) : null,
+                out.file, out.size, null);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public byte[] getDigest() {
+        return digest == null ? null : digest.clone();
+    }
+
+    public InputStream openStream() throws IOException {
+        return memory != null ? new ByteArrayInputStream(memory) : Files.newInputStream(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final class SpoolOutputStream extends OutputStream {
+        private final int memoryThreshold;
+        private final Path spoolDirectory;
+        private byte[] memory;
+        private int memorySize;
+        private long size;
+        private Path file;
+        private OutputStream fileOut;
+
+        SpoolOutputStream(int memoryThreshold, Path spoolDirectory) {
+            this.memoryThreshold = memoryThreshold;
+            this.spoolDirectory = spoolDirectory;
+            this.memory = new byte[Math.min(memoryThreshold, BUFFER_SIZE)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            size += length;
+
+            if (fileOut == null && memorySize + length <= memoryThreshold) {
+                if (memorySize + length > memory.length) {
+                    memory = Arrays.copyOf(memory, Math.min(memoryThreshold, Math.max(memory.length * 2, memorySize + length)));
+                }
+                System.arraycopy(buffer, offset, memory, memorySize, length);
+                memorySize += length;
+                return;
+            }
+
+            if (fileOut == null) {
+                file = Files.createTempFile(spoolDirectory, "upload-", ".spool");
+                fileOut = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+                fileOut.write(memory, 0, memorySize);
+                memory = null;
+            }
+            fileOut.write(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+
+        void discard() throws IOException {
+            close();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
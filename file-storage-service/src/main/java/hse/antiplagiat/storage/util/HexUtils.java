@@ -0,0 +1,41 @@
+package hse.antiplagiat.storage.util;
+
+public final class HexUtils {
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private HexUtils() {
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    public static byte[] fromHex(String hex) {
+        if (!isHex(hex)) {
+            throw new IllegalArgumentException("Not a hex string: " + hex);
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+
+    public static boolean isHex(String value) {
+        if (value == null || value.length() % 2 != 0) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
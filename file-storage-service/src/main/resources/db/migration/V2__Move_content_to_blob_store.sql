@@ -0,0 +1,5 @@
+ALTER TABLE files ADD COLUMN size BIGINT;
+UPDATE files SET size = length(content);
+ALTER TABLE files ALTER COLUMN size SET NOT NULL;
+
+ALTER TABLE files ALTER COLUMN content DROP NOT NULL;
@@ -0,0 +1 @@
+ALTER TABLE files ALTER COLUMN hash TYPE BYTEA USING decode(hash, 'hex');
@@ -0,0 +1,7 @@
+ALTER TABLE files ADD COLUMN encoding VARCHAR(16) NOT NULL DEFAULT 'identity';
+ALTER TABLE files ADD COLUMN dictionary VARCHAR(64);
+ALTER TABLE files ADD COLUMN stored_size BIGINT;
+
+UPDATE files SET stored_size = size;
+
+ALTER TABLE files ALTER COLUMN stored_size SET NOT NULL;
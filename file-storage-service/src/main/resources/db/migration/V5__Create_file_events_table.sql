@@ -0,0 +1,17 @@
+CREATE TABLE file_events (
+    id BIGSERIAL PRIMARY KEY,
+    file_id UUID NOT NULL,
+    event_type VARCHAR(16) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE FUNCTION notify_file_events() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('file_events', '');
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER file_events_notify
+    AFTER INSERT ON file_events
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_file_events();
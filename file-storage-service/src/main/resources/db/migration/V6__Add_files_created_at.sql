@@ -0,0 +1,3 @@
+ALTER TABLE files ADD COLUMN created_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+CREATE INDEX files_created_at_id_idx ON files (created_at, id);
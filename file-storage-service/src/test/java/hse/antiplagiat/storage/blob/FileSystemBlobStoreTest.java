@@ -0,0 +1,79 @@
+package hse.antiplagiat.storage.blob;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class FileSystemBlobStoreTest {
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @TempDir
+    private Path root;
+
+    @Test
+    void rowsWithTheSameHashKeepTheirOwnBlobs() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root, mock(DatabaseBlobStore.class));
+        UUID deflated = UUID.randomUUID();
+        UUID identity = UUID.randomUUID();
+
+        // The same content stored by two rows with different encodings, e.g. a re-upload racing a delete.
+        write(store, deflated, "deflated bytes");
+        write(store, identity, "identity bytes");
+        assertThat(read(store, deflated)).isEqualTo("deflated bytes");
+        assertThat(read(store, identity)).isEqualTo("identity bytes");
+
+        store.delete(deflated, HASH);
+        assertThat(store.contains(deflated)).isFalse();
+        assertThat(read(store, identity)).isEqualTo("identity bytes");
+    }
+
+    @Test
+    void writeReplacesAnExistingBlob() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root, mock(DatabaseBlobStore.class));
+        UUID fileId = UUID.randomUUID();
+
+        write(store, fileId, "first");
+        write(store, fileId, "second");
+
+        assertThat(read(store, fileId)).isEqualTo("second");
+    }
+
+    @Test
+    void blobsStoredByHashAreStillRead() throws IOException {
+        FileSystemBlobStore store = new FileSystemBlobStore(root, mock(DatabaseBlobStore.class));
+        Path legacy = root.resolve(HASH.substring(0, 2)).resolve(HASH.substring(2, 4)).resolve(HASH);
+        Files.createDirectories(legacy.getParent());
+        Files.writeString(legacy, "legacy bytes");
+        UUID fileId = UUID.randomUUID();
+
+        assertThat(read(store, fileId)).isEqualTo("legacy bytes");
+
+        store.delete(fileId, HASH);
+        assertThat(legacy).doesNotExist();
+    }
+
+    private static void write(FileSystemBlobStore store, UUID fileId, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        store.write(fileId, HASH, new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static String read(FileSystemBlobStore store, UUID fileId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.transferTo(fileId, HASH, out);
+        try (InputStream in = store.openStream(fileId, HASH)) {
+            assertThat(in.readAllBytes()).isEqualTo(out.toByteArray());
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
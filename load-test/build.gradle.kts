@@ -0,0 +1,61 @@
+plugins {
+    id("io.spring.dependency-management") version "1.1.5"
+    java
+}
+
+repositories {
+    mavenCentral()
+}
+
+// Runtime classpaths of the services under test. Every service is started in its own class loader,
+// because all of them ship an application.yml and the two backends share classpath:db/migration.
+val storageService by configurations.creating
+val analysisService by configurations.creating
+val apiGateway by configurations.creating
+
+dependencies {
+    implementation("io.zonky.test:embedded-postgres:2.0.7")
+    implementation(enforcedPlatform("io.zonky.test.postgres:embedded-postgres-binaries-bom:16.2.0"))
+    implementation("org.postgresql:postgresql")
+    implementation("com.fasterxml.jackson.core:jackson-databind")
+    implementation("org.slf4j:slf4j-simple:2.0.13")
+
+    storageService(project(":file-storage-service"))
+    analysisService(project(":file-analysis-service"))
+    apiGateway(project(":api-gateway"))
+}
+
+dependencyManagement {
+    imports {
+        mavenBom("org.springframework.boot:spring-boot-dependencies:3.2.5")
+        mavenBom("org.springframework.cloud:spring-cloud-dependencies:2023.0.2")
+    }
+}
+
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
+// ./gradlew :load-test:loadTest -Ploadtest.files=500 -Ploadtest.concurrency=32 -Ploadtest.quickchart-latency-ms=150
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs the services in-process against embedded Postgres and reports upload and analysis latency."
+    mainClass.set("hse.antiplagiat.loadtest.LoadTestRunner")
+    classpath = sourceSets.main.get().runtimeClasspath
+    javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) })
+    maxHeapSize = "2g"
+    systemProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn")
+
+    inputs.files(storageService, analysisService, apiGateway)
+    systemProperty("loadtest.report", layout.buildDirectory.file("reports/load-test/report.json").get().asFile.path)
+    doFirst {
+        systemProperty("loadtest.classpath.storage", storageService.asPath)
+        systemProperty("loadtest.classpath.analysis", analysisService.asPath)
+        systemProperty("loadtest.classpath.gateway", apiGateway.asPath)
+    }
+    project.properties
+        .filterKeys { it.startsWith("loadtest.") }
+        .forEach { (key, value) -> systemProperty(key, value.toString()) }
+}
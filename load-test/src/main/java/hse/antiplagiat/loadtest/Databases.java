@@ -0,0 +1,72 @@
+package hse.antiplagiat.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A Postgres server with one empty database per backend. The server is either embedded, started from the
+ * binaries bundled with the harness, or an existing local server, in which case the databases are dropped
+ * and recreated for every run.
+ */
+public final class Databases implements AutoCloseable {
+    static final String STORAGE_DATABASE = "loadtest_storage";
+    static final String ANALYSIS_DATABASE = "loadtest_analysis";
+
+    private final EmbeddedPostgres embedded;
+    private final String serverUrl;
+    private final String user;
+    private final String password;
+
+    private Databases(EmbeddedPostgres embedded, String serverUrl, String user, String password) {
+        this.embedded = embedded;
+        this.serverUrl = serverUrl.endsWith("/") ? serverUrl : serverUrl + "/";
+        this.user = user;
+        this.password = password;
+    }
+
+    public static Databases start(LoadTestSettings settings) throws IOException, SQLException {
+        Databases databases;
+        if (settings.embeddedPostgres()) {
+            EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+            databases = new Databases(postgres, "jdbc:postgresql://localhost:" + postgres.getPort() + "/", "postgres", "postgres");
+        } else {
+            databases = new Databases(null, settings.postgresUrl(), settings.postgresUser(), settings.postgresPassword());
+        }
+
+        databases.recreate(STORAGE_DATABASE);
+        databases.recreate(ANALYSIS_DATABASE);
+        return databases;
+    }
+
+    public String url(String database) {
+        return serverUrl + database;
+    }
+
+    public String user() {
+        return user;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    private void recreate(String database) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(serverUrl + "postgres", user, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP DATABASE IF EXISTS " + database + " WITH (FORCE)");
+            statement.execute("CREATE DATABASE " + database);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+}
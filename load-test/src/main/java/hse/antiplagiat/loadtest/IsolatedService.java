@@ -0,0 +1,91 @@
+package hse.antiplagiat.loadtest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Spring Boot service running in this JVM in a class loader of its own, so that its configuration,
+ * migrations and dependencies are exactly those of the service jar.
+ */
+public final class IsolatedService implements AutoCloseable {
+    private final String name;
+    private final URLClassLoader classLoader;
+    private final Closeable context;
+
+    private IsolatedService(String name, URLClassLoader classLoader, Closeable context) {
+        this.name = name;
+        this.classLoader = classLoader;
+        this.context = context;
+    }
+
+    /**
+     * Runs {@code SpringApplication.run(mainClass, args)} and returns once the application has started.
+     */
+    public static IsolatedService start(String name, String classpath, String mainClass, List<String> args) throws Exception {
+        if (classpath == null || classpath.isBlank()) {
+            throw new IllegalStateException("Classpath of " + name + " is not set, run the harness with the loadTest Gradle task");
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(name, toUrls(classpath), ClassLoader.getPlatformClassLoader());
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            disableTomcatUrlHandlers(classLoader);
+            Class<?> application = classLoader.loadClass("org.springframework.boot.SpringApplication");
+            Object context = application.getMethod("run", Class.class, String[].class)
+                    .invoke(null, classLoader.loadClass(mainClass), args.toArray(String[]::new));
+            return new IsolatedService(name, classLoader, (Closeable) context);
+        } catch (InvocationTargetException e) {
+            classLoader.close();
+            throw new IllegalStateException("Failed to start " + name, e.getCause());
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * Every embedded Tomcat installs a JVM-wide URL stream handler factory, which only one of them can do.
+     * The services do not serve war resources, so none of them needs it.
+     */
+    private static void disableTomcatUrlHandlers(ClassLoader classLoader) throws ReflectiveOperationException {
+        try {
+            classLoader.loadClass("org.apache.catalina.webresources.TomcatURLStreamHandlerFactory")
+                    .getMethod("disable")
+                    .invoke(null);
+        } catch (ClassNotFoundException e) {
+            // Not a servlet application.
+        }
+    }
+
+    private static URL[] toUrls(String classpath) throws MalformedURLException {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isBlank()) {
+                urls.add(new File(entry).toURI().toURL());
+            }
+        }
+        return urls.toArray(URL[]::new);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            context.close();
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,74 @@
+package hse.antiplagiat.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and failures of one kind of request. All samples are kept, which is fine for the few
+ * thousand requests of a run and gives exact percentiles.
+ */
+public final class LatencyRecorder {
+    private final String operation;
+    private final LongAdder errors = new LongAdder();
+    private long[] samples = new long[1024];
+    private int count;
+
+    public LatencyRecorder(String operation) {
+        this.operation = operation;
+    }
+
+    public synchronized void success(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    public void failure() {
+        errors.increment();
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        errors.reset();
+    }
+
+    public synchronized OperationReport report(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long failed = errors.sum();
+        long total = count + failed;
+
+        return new OperationReport(
+                operation,
+                total,
+                failed,
+                total == 0 ? 0 : (double) failed / total,
+                seconds > 0 ? count / seconds : 0,
+                millis(percentile(sorted, 0.50)),
+                millis(percentile(sorted, 0.99)),
+                millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    public record OperationReport(
+            String operation,
+            long requests,
+            long errors,
+            double errorRate,
+            double throughputPerSecond,
+            double p50Millis,
+            double p99Millis,
+            double maxMillis) {
+    }
+}
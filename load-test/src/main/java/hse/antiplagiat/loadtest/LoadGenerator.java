@@ -0,0 +1,142 @@
+package hse.antiplagiat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives the corpus through the gateway: each of {@code concurrency} clients repeatedly uploads the next
+ * document and then requests its analysis, like a user submitting a paper and waiting for the report.
+ */
+public final class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    private final URI gateway;
+    private final LoadTestSettings settings;
+    private final SyntheticCorpus corpus;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyRecorder uploads = new LatencyRecorder("upload");
+    private final LatencyRecorder analyses = new LatencyRecorder("analysis");
+
+    public LoadGenerator(URI gateway, LoadTestSettings settings) {
+        this.gateway = gateway;
+        this.settings = settings;
+        this.corpus = new SyntheticCorpus(settings.documentSizeBytes());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public LoadReport run() throws InterruptedException {
+        // Documents of the warm-up come after the measured ones, so they are never deduplicated against them.
+        drive(settings.files(), settings.files() + settings.warmupFiles());
+        uploads.reset();
+        analyses.reset();
+
+        long start = System.nanoTime();
+        drive(0, settings.files());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return new LoadReport(
+                settings.files(),
+                settings.concurrency(),
+                settings.documentSizeBytes(),
+                settings.quickChartLatency().toMillis(),
+                settings.virtualThreads(),
+                seconds,
+                settings.files() / seconds,
+                List.of(uploads.report(seconds), analyses.report(seconds)));
+    }
+
+    private void drive(int from, int to) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger(from);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.concurrency(); i++) {
+                clients.execute(() -> {
+                    for (int index = next.getAndIncrement(); index < to; index = next.getAndIncrement()) {
+                        UUID fileId = upload(index);
+                        if (fileId != null) {
+                            analyze(fileId);
+                        }
+                    }
+                });
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private UUID upload(int index) {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        HttpRequest request = HttpRequest.newBuilder(gateway.resolve("/api/files/upload"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, corpus.fileName(index), corpus.document(index))))
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                uploads.failure();
+                return null;
+            }
+            uploads.success(System.nanoTime() - start);
+            JsonNode body = objectMapper.readTree(response.body());
+            return UUID.fromString(body.get("id").asText());
+        } catch (IOException | RuntimeException e) {
+            uploads.failure();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void analyze(UUID fileId) {
+        HttpRequest request = HttpRequest.newBuilder(gateway.resolve("/api/analysis/" + fileId))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                analyses.success(System.nanoTime() - start);
+            } else {
+                analyses.failure();
+            }
+        } catch (IOException | RuntimeException e) {
+            analyses.failure();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] multipart(String boundary, String fileName, byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package hse.antiplagiat.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import hse.antiplagiat.loadtest.LatencyRecorder.OperationReport;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+public record LoadReport(
+        int files,
+        int concurrency,
+        int documentSizeBytes,
+        long quickChartLatencyMillis,
+        boolean virtualThreads,
+        double durationSeconds,
+        double filesPerSecond,
+        List<OperationReport> operations) {
+
+    public void print(PrintStream out) {
+        out.printf(Locale.ROOT, "%n%d files, %d concurrent clients, %d byte documents, QuickChart latency %d ms, %s threads%n",
+                files, concurrency, documentSizeBytes, quickChartLatencyMillis, virtualThreads ? "virtual" : "platform");
+        out.printf(Locale.ROOT, "%.1f s, %.1f files/s%n%n", durationSeconds, filesPerSecond);
+        out.printf(Locale.ROOT, "%-10s %9s %8s %8s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "error %", "req/s", "p50 ms", "p99 ms", "max ms");
+        for (OperationReport operation : operations) {
+            out.printf(Locale.ROOT, "%-10s %9d %8d %8.2f %10.1f %10.1f %10.1f %10.1f%n",
+                    operation.operation(), operation.requests(), operation.errors(), operation.errorRate() * 100,
+                    operation.throughputPerSecond(), operation.p50Millis(), operation.p99Millis(), operation.maxMillis());
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+    }
+}
@@ -0,0 +1,25 @@
+package hse.antiplagiat.loadtest;
+
+/**
+ * Starts Postgres, the QuickChart stub and the three services in this JVM, runs the load and prints
+ * throughput, latency percentiles and error rates per operation. The report is also written as JSON.
+ */
+public final class LoadTestRunner {
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+        try (Databases databases = Databases.start(settings);
+             QuickChartStub quickChart = QuickChartStub.start(settings.quickChartLatency());
+             ServiceCluster cluster = ServiceCluster.start(databases, quickChart, settings.virtualThreads())) {
+            LoadReport report = new LoadGenerator(cluster.gatewayUri(), settings).run();
+            report.print(System.out);
+            report.write(settings.reportFile());
+            System.out.println("\nReport written to " + settings.reportFile().toAbsolutePath());
+        }
+        // Scheduler and client threads of the stopped services may still be winding down.
+        System.exit(0);
+    }
+}
@@ -0,0 +1,42 @@
+package hse.antiplagiat.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of a load test run, read from {@code loadtest.*} system properties. The Gradle task forwards
+ * every {@code -Ploadtest.*} project property.
+ */
+public record LoadTestSettings(
+        int files,
+        int warmupFiles,
+        int concurrency,
+        int documentSizeBytes,
+        Duration quickChartLatency,
+        boolean virtualThreads,
+        String postgresUrl,
+        String postgresUser,
+        String postgresPassword,
+        Path reportFile) {
+
+    public static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.files", 200),
+                Integer.getInteger("loadtest.warmup-files", 20),
+                Integer.getInteger("loadtest.concurrency", 16),
+                Integer.getInteger("loadtest.document-size-bytes", 16384),
+                Duration.ofMillis(Long.getLong("loadtest.quickchart-latency-ms", 100)),
+                Boolean.getBoolean("loadtest.virtual-threads"),
+                System.getProperty("loadtest.postgres-url"),
+                System.getProperty("loadtest.postgres-user", "postgres"),
+                System.getProperty("loadtest.postgres-password", "postgres"),
+                Path.of(System.getProperty("loadtest.report", "load-test-report.json")));
+    }
+
+    /**
+     * Without {@code loadtest.postgres-url} an embedded Postgres is started for the run.
+     */
+    public boolean embeddedPostgres() {
+        return postgresUrl == null || postgresUrl.isBlank();
+    }
+}
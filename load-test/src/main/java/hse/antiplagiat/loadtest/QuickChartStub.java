@@ -0,0 +1,58 @@
+package hse.antiplagiat.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * Stands in for quickchart.io: answers every {@code POST /wordcloud} with a fixed SVG after the configured
+ * latency, so the remote word cloud engine can be measured without network access.
+ */
+public final class QuickChartStub implements AutoCloseable {
+    private static final byte[] SVG = ("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"600\" height=\"600\">"
+            + "<text x=\"300\" y=\"300\" text-anchor=\"middle\">stub</text></svg>").getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+
+    private QuickChartStub(HttpServer server) {
+        this.server = server;
+    }
+
+    public static QuickChartStub start(Duration latency) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/wordcloud", exchange -> respond(exchange, latency));
+        server.start();
+        return new QuickChartStub(server);
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/wordcloud";
+    }
+
+    private static void respond(HttpExchange exchange, Duration latency) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+            Thread.sleep(latency);
+
+            exchange.getResponseHeaders().set("Content-Type", "image/svg+xml");
+            exchange.sendResponseHeaders(200, SVG.length);
+            exchange.getResponseBody().write(SVG);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
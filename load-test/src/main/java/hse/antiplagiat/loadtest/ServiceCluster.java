@@ -0,0 +1,127 @@
+package hse.antiplagiat.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * file-storage-service, file-analysis-service and api-gateway wired to each other with static discovery
+ * instead of Eureka, and to the QuickChart stub instead of quickchart.io.
+ */
+public final class ServiceCluster implements AutoCloseable {
+    private final List<IsolatedService> services = new ArrayList<>();
+    private int gatewayPort;
+    private Path searchIndex;
+
+    private ServiceCluster() {
+    }
+
+    /**
+     * With {@code virtualThreads} the services handle requests and make outbound calls on virtual threads.
+     */
+    public static ServiceCluster start(Databases databases, QuickChartStub quickChart, boolean virtualThreads)
+            throws Exception {
+        ServiceCluster cluster = new ServiceCluster();
+        try {
+            int storagePort = freePort();
+            int analysisPort = freePort();
+            cluster.gatewayPort = freePort();
+
+            List<String> storageArgs = commonArgs(storagePort, virtualThreads);
+            storageArgs.addAll(datasourceArgs(databases, Databases.STORAGE_DATABASE));
+            // The file event relay addresses the analysis service by its upper-case Eureka name.
+            storageArgs.add(instance("FILE-ANALYSIS-SERVICE", analysisPort));
+            cluster.services.add(IsolatedService.start("file-storage-service",
+                    System.getProperty("loadtest.classpath.storage"), "hse.antiplagiat.storage.StorageServiceApplication", storageArgs));
+
+            List<String> analysisArgs = commonArgs(analysisPort, virtualThreads);
+            analysisArgs.addAll(datasourceArgs(databases, Databases.ANALYSIS_DATABASE));
+            // FileAnalysisService addresses the storage service by its upper-case Eureka name.
+            analysisArgs.add(instance("FILE-STORAGE-SERVICE", storagePort));
+            analysisArgs.add("--analysis.word-cloud.engine=remote");
+            analysisArgs.add("--analysis.word-cloud.remote-url=" + quickChart.url());
+            // The stub takes any number of calls; the default bulkhead would cap the load at the word cloud.
+            analysisArgs.add("--analysis.http-client.word-cloud.max-concurrent-calls=1000");
+            cluster.searchIndex = Files.createTempDirectory("loadtest-search-");
+            analysisArgs.add("--analysis.search.index-dir=" + cluster.searchIndex);
+            cluster.services.add(IsolatedService.start("file-analysis-service",
+                    System.getProperty("loadtest.classpath.analysis"), "hse.antiplagiat.analysis.AnalysisServiceApplication", analysisArgs));
+
+            List<String> gatewayArgs = commonArgs(cluster.gatewayPort, virtualThreads);
+            gatewayArgs.add(instance("file-storage-service", storagePort));
+            gatewayArgs.add(instance("file-analysis-service", analysisPort));
+            gatewayArgs.add("--logging.level.org.springframework.cloud.gateway=WARN");
+            cluster.services.add(IsolatedService.start("api-gateway",
+                    System.getProperty("loadtest.classpath.gateway"), "hse.antiplagiat.gateway.GatewayApplication", gatewayArgs));
+
+            return cluster;
+        } catch (Exception e) {
+            cluster.close();
+            throw e;
+        }
+    }
+
+    public URI gatewayUri() {
+        return URI.create("http://localhost:" + gatewayPort);
+    }
+
+    private static List<String> commonArgs(int port, boolean virtualThreads) {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=" + port);
+        args.add("--spring.threads.virtual.enabled=" + virtualThreads);
+        args.add("--eureka.client.enabled=false");
+        args.add("--spring.main.banner-mode=off");
+        args.add("--spring.jpa.show-sql=false");
+        args.add("--logging.level.root=WARN");
+        // Threads of shared client pools outlive the web application, which Tomcat reports at shutdown.
+        args.add("--logging.level.org.apache.catalina.loader=ERROR");
+        return args;
+    }
+
+    private static List<String> datasourceArgs(Databases databases, String database) {
+        return List.of(
+                "--spring.datasource.url=" + databases.url(database),
+                "--spring.datasource.username=" + databases.user(),
+                "--spring.datasource.password=" + databases.password());
+    }
+
+    private static String instance(String serviceId, int port) {
+        return "--spring.cloud.discovery.client.simple.instances[" + serviceId + "][0].uri=http://localhost:" + port;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int i = services.size() - 1; i >= 0; i--) {
+            try {
+                services.get(i).close();
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = new IOException("Failed to stop " + services.get(i), e);
+                }
+            }
+        }
+        if (searchIndex != null) {
+            try (Stream<Path> files = Files.walk(searchIndex)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package hse.antiplagiat.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Reproducible documents of roughly the requested size. Even documents are Russian, odd ones English, and
+ * every document starts with its number, so no two of them are deduplicated by the storage service.
+ */
+public final class SyntheticCorpus {
+    private static final String[] RUSSIAN = {
+            "и", "в", "не", "на", "что", "с", "по", "как", "это", "для", "анализ", "документ", "студент",
+            "исследование", "результаты", "метод", "система", "модель", "данные", "алгоритм", "язык", "история",
+            "развитие", "теория", "процесс", "университет", "эксперимент", "подход", "информация", "оценка"};
+    private static final String[] ENGLISH = {
+            "the", "of", "and", "to", "in", "is", "that", "for", "it", "as", "analysis", "document", "student",
+            "research", "results", "method", "system", "model", "data", "algorithm", "language", "history",
+            "development", "theory", "process", "university", "experiment", "approach", "information", "evaluation"};
+
+    private final int sizeBytes;
+
+    public SyntheticCorpus(int sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public byte[] document(int index) {
+        String[] vocabulary = index % 2 == 0 ? RUSSIAN : ENGLISH;
+        Random random = new Random(index);
+        StringBuilder text = new StringBuilder(sizeBytes).append("Document ").append(index).append(".\n");
+
+        int words = 0;
+        while (text.length() * (index % 2 == 0 ? 2 : 1) < sizeBytes) {
+            text.append(vocabulary[random.nextInt(vocabulary.length)]);
+            words++;
+            if (words % 15 == 0) {
+                text.append(words % 90 == 0 ? ".\n\n" : ". ");
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String fileName(int index) {
+        return "document-" + index + ".txt";
+    }
+}
@@ -6,3 +6,5 @@ include(
     ":file-analysis-service"
 )
 include("eureka-server")
+include("benchmarks")
+include("load-test")